@@ -0,0 +1,45 @@
+package io.bank.api.transactions.benchmarks;
+
+import io.bank.api.transactions.utils.KeysUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis key generation, which is done a few times for every request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeysBenchmark {
+    private String accountId = "2b69ffa4";
+    
+    @Benchmark
+    public String accountKey() {
+        return KeysUtils.getAccountKey(accountId);
+    }
+    
+    @Benchmark
+    public String accountTransactionsKey() {
+        return KeysUtils.getAccountTransactionsKey(accountId);
+    }
+    
+    /**
+     * Baseline for key generation with plain concatenation
+     */
+    @Benchmark
+    public String concatenatedKey() {
+        return "account:" + accountId;
+    }
+}
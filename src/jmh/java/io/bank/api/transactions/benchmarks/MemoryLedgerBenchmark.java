@@ -0,0 +1,89 @@
+package io.bank.api.transactions.benchmarks;
+
+import io.bank.api.transactions.dao.ReadConsistency;
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.model.dto.CreateAccountRequest;
+import io.bank.api.transactions.model.dto.CreateTransactionRequest;
+import io.bank.api.transactions.storage.memory.MemoryLedger;
+import io.bank.api.transactions.storage.memory.MemoryLedgerOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Same workload as {@link RedisDaoBenchmark} against in-memory ledger, latency of a single blocking transfer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class MemoryLedgerBenchmark {
+    private static final String CURRENCY = "USD";
+    
+    @Param({"hot", "uniform"})
+    private String distribution;
+    
+    @Param({"1000"})
+    private int accountsCount;
+    
+    private MemoryLedger ledger;
+    private List<String> accountIds;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        ledger = new MemoryLedger(new MemoryLedgerOptions());
+        
+        // Balances are big enough to never run out of funds during the benchmark
+        CreateAccountRequest accountRequest = new CreateAccountRequest().setBalance(Long.MAX_VALUE / 2).setCurrencyCode(CURRENCY);
+        accountIds = IntStream.range(0, accountsCount)
+                .mapToObj(i -> ledger.createAccount(Account.fromRequest(accountRequest)).toBlocking().value().getId())
+                .collect(toList());
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ledger.close();
+    }
+    
+    @Benchmark
+    public Transaction createTransaction() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sender = "hot".equals(distribution) ? 0 : random.nextInt(accountsCount);
+        int recipient = (sender + 1 + random.nextInt(accountsCount - 1)) % accountsCount;
+        
+        CreateTransactionRequest request = new CreateTransactionRequest()
+                .setAmount(1)
+                .setCurrencyCode(CURRENCY)
+                .setSenderAccountId(accountIds.get(sender))
+                .setRecipientAccountId(accountIds.get(recipient));
+        return ledger.createTransaction(Transaction.fromRequest(request), null).toBlocking().value();
+    }
+    
+    @Benchmark
+    public Account getAccount() {
+        String accountId = accountIds.get(ThreadLocalRandom.current().nextInt(accountsCount));
+        return ledger.getAccount(accountId, ReadConsistency.STRONG).toBlocking().value();
+    }
+}
@@ -0,0 +1,118 @@
+package io.bank.api.transactions.benchmarks;
+
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.model.TransactionRecord;
+import io.bank.api.transactions.model.dto.AccountDTO;
+import io.bank.api.transactions.model.dto.TransactionDTO;
+import org.javamoney.moneta.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.money.Monetary;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.bank.api.transactions.utils.KeysUtils.*;
+
+/**
+ * Mapping of a single Redis hash to model and DTO. Run with "gc" profiler to compare allocation rate per record
+ * of the primitive-backed model with the former Moneta and LocalDateTime based one ("legacy*" benchmarks)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelMappingBenchmark {
+    private Map<String, String> accountHash;
+    private Map<String, String> transactionHash;
+    private Map<String, String> legacyAccountHash;
+    private byte[] transactionRecord;
+    
+    @Setup
+    public void setup() {
+        long created = System.currentTimeMillis();
+        
+        accountHash = new HashMap<>();
+        accountHash.put(ID, "2b69ffa4");
+        accountHash.put(CREATED, String.valueOf(created));
+        accountHash.put(BALANCE, "10000000");
+        accountHash.put(CURRENCY, "USD");
+        
+        transactionHash = new HashMap<>();
+        transactionHash.put(ID, "a4c1e0b2");
+        transactionHash.put(CREATED, String.valueOf(created));
+        transactionHash.put(AMOUNT, "100000");
+        transactionHash.put(CURRENCY, "USD");
+        transactionHash.put(SENDER_ID, "2b69ffa4");
+        transactionHash.put(RECIPIENT_ID, "473dc600");
+        
+        legacyAccountHash = new HashMap<>(accountHash);
+        legacyAccountHash.put(CREATED, LocalDateTime.now().toString());
+        
+        transactionRecord = TransactionRecord.encode(Transaction.fromHash(transactionHash));
+    }
+    
+    @Benchmark
+    public Account accountFromHash() {
+        return Account.fromHash(accountHash);
+    }
+    
+    @Benchmark
+    public AccountDTO accountDTOFromHash() {
+        return AccountDTO.fromAccount(Account.fromHash(accountHash));
+    }
+    
+    @Benchmark
+    public TransactionDTO transactionDTOFromHash() {
+        return TransactionDTO.fromTransaction(Transaction.fromHash(transactionHash));
+    }
+    
+    @Benchmark
+    public Transaction transactionFromHash() {
+        return Transaction.fromHash(transactionHash);
+    }
+    
+    /**
+     * Binary record of the same transaction, see {@link io.bank.api.transactions.dao.RecordFormat}
+     */
+    @Benchmark
+    public Transaction transactionFromRecord() {
+        return TransactionRecord.decode(transactionRecord);
+    }
+    
+    /**
+     * Dual-read path for records written before epoch millis timestamps
+     */
+    @Benchmark
+    public Account accountFromLegacyHash() {
+        return Account.fromHash(legacyAccountHash);
+    }
+    
+    /**
+     * Baseline: the way account hash was mapped before, with Money and LocalDateTime
+     */
+    @Benchmark
+    public AccountDTO legacyAccountDTOFromHash() {
+        LocalDateTime created = LocalDateTime.parse(legacyAccountHash.get(CREATED));
+        Money balance = Money.of(Long.valueOf(legacyAccountHash.get(BALANCE)), Monetary.getCurrency(legacyAccountHash.get(CURRENCY)));
+        return AccountDTO.builder()
+                .id(legacyAccountHash.get(ID))
+                .created(created.toString())
+                .currency(balance.getCurrency().getCurrencyCode())
+                .balance(balance.getNumber().longValueExact())
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package io.bank.api.transactions.benchmarks;
+
+import com.lambdaworks.redis.RedisURI;
+import io.bank.api.transactions.dao.RedisDao;
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.model.dto.CreateAccountRequest;
+import io.bank.api.transactions.model.dto.CreateTransactionRequest;
+import io.bank.api.transactions.verticles.EmbeddedRedisVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static io.bank.api.transactions.utils.KeysUtils.getAccountKey;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * End-to-end DAO throughput against embedded Redis started by {@link EmbeddedRedisVerticle}.
+ * "hot" distribution sends every transfer from the same account, "uniform" picks both accounts randomly
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class RedisDaoBenchmark {
+    private static final String CURRENCY = "USD";
+    private static final String REDIS_HOST = "localhost";
+    private static final int REDIS_PORT = 6379;
+    
+    @Param({"hot", "uniform"})
+    private String distribution;
+    
+    @Param({"1000"})
+    private int accountsCount;
+    
+    private Vertx vertx;
+    private RedisDao redisDao;
+    private List<String> accountIds;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        CompletableFuture<String> deployment = new CompletableFuture<>();
+        vertx.deployVerticle(EmbeddedRedisVerticle.class.getName(), new DeploymentOptions().setWorker(true), result -> {
+            if (result.succeeded()) {
+                deployment.complete(result.result());
+            } else {
+                deployment.completeExceptionally(result.cause());
+            }
+        });
+        deployment.get(30, TimeUnit.SECONDS);
+        
+        redisDao = new RedisDao(RedisURI.create(REDIS_HOST, REDIS_PORT));
+        redisDao.flushAll();
+        
+        // Balances are big enough to never run out of funds during the benchmark
+        CreateAccountRequest accountRequest = new CreateAccountRequest().setBalance(Long.MAX_VALUE / 2).setCurrencyCode(CURRENCY);
+        accountIds = IntStream.range(0, accountsCount)
+                .mapToObj(i -> redisDao.createAccount(Account.fromRequest(accountRequest)).toBlocking().value().getId())
+                .collect(toList());
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        redisDao.flushAll();
+        redisDao.close();
+        // Embedded Redis is stopped by undeploying it's verticle, next trial starts a new one on the same port
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(result -> {
+            if (result.succeeded()) {
+                closed.complete(null);
+            } else {
+                closed.completeExceptionally(result.cause());
+            }
+        });
+        closed.get(30, TimeUnit.SECONDS);
+    }
+    
+    @Benchmark
+    public Transaction createTransaction() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sender = "hot".equals(distribution) ? 0 : random.nextInt(accountsCount);
+        int recipient = (sender + 1 + random.nextInt(accountsCount - 1)) % accountsCount;
+        
+        CreateTransactionRequest request = new CreateTransactionRequest()
+                .setAmount(1)
+                .setCurrencyCode(CURRENCY)
+                .setSenderAccountId(accountIds.get(sender))
+                .setRecipientAccountId(accountIds.get(recipient));
+        return redisDao.createTransaction(Transaction.fromRequest(request)).toBlocking().value();
+    }
+    
+    @Benchmark
+    public Map<String, String> getAccount() {
+        String accountId = accountIds.get(ThreadLocalRandom.current().nextInt(accountsCount));
+        return redisDao.getHash(getAccountKey(accountId)).toBlocking().value();
+    }
+}
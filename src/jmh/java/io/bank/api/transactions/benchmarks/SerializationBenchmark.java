@@ -0,0 +1,71 @@
+package io.bank.api.transactions.benchmarks;
+
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.dto.AccountDTO;
+import io.bank.api.transactions.model.dto.CreateAccountRequest;
+import io.bank.api.transactions.model.dto.CreateTransactionRequest;
+import io.bank.api.transactions.utils.Converter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * JSON conversion of a single DTO, of a list response and parsing of a request body
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"100"})
+    private int listSize;
+    
+    private AccountDTO account;
+    private List<AccountDTO> accounts;
+    private String transactionRequest;
+    
+    @Setup
+    public void setup() {
+        CreateAccountRequest accountRequest = new CreateAccountRequest().setBalance(10000000).setCurrencyCode("USD");
+        account = AccountDTO.fromAccount(Account.fromRequest(accountRequest));
+        accounts = IntStream.range(0, listSize)
+                .mapToObj(i -> AccountDTO.fromAccount(Account.fromRequest(accountRequest)))
+                .collect(toList());
+        transactionRequest = Converter.convertToJson(new CreateTransactionRequest()
+                .setAmount(100000)
+                .setCurrencyCode("USD")
+                .setSenderAccountId("2b69ffa4")
+                .setRecipientAccountId("473dc600"));
+    }
+    
+    @Benchmark
+    public String accountToJson() {
+        return Converter.convertToJson(account);
+    }
+    
+    @Benchmark
+    public String accountListToJson() {
+        return Converter.convertToJson(accounts);
+    }
+    
+    @Benchmark
+    public CreateTransactionRequest transactionRequestFromJson() {
+        return Converter.convertFromJson(transactionRequest, CreateTransactionRequest.class);
+    }
+}
@@ -0,0 +1,207 @@
+package io.bank.api.transactions.load;
+
+import io.bank.api.transactions.model.dto.CreateTransactionRequest;
+import io.bank.api.transactions.model.dto.TransactionDTO;
+import io.bank.api.transactions.utils.Converter;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.util.EntityUtils;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/**
+ * Open-model workload: a single thread starts requests at their scheduled times, responses are handled
+ * by HTTP client threads. Latency is counted from the scheduled time, so it includes generator lag and queueing
+ */
+class LoadGenerator {
+    private static final int RECENT_TRANSACTIONS = 4096;
+    private static final long MAX_AMOUNT = 100;
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    
+    private final LoadTestOptions options;
+    private final CloseableHttpAsyncClient httpClient;
+    private final List<String> accountIds;
+    private final ZipfDistribution accountRanks;
+    private final Operation[] mix;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Ids of executed transfers, read back by GET_TRANSACTION
+    private final AtomicReferenceArray<String> recentTransactions = new AtomicReferenceArray<>(RECENT_TRANSACTIONS);
+    private final AtomicLong executedTransfers = new AtomicLong();
+    
+    /**
+     * Account ids are expected to be shuffled, so hot ranks don't correlate with creation order
+     */
+    LoadGenerator(LoadTestOptions options, CloseableHttpAsyncClient httpClient, List<String> accountIds) {
+        this.options = options;
+        this.httpClient = httpClient;
+        this.accountIds = accountIds;
+        this.accountRanks = new ZipfDistribution(accountIds.size(), options.getZipfExponent());
+        this.mix = buildMix(options);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+    
+    Map<Operation, OperationStats> getStats() {
+        return stats;
+    }
+    
+    void resetStats() {
+        stats.values().forEach(OperationStats::reset);
+    }
+    
+    /**
+     * Blocks for the given time and then until in-flight requests complete. Returns time in nanos
+     * from the first scheduled request till the last response
+     */
+    long run(long durationNanos) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.getRate();
+        long start = System.nanoTime();
+        for (long i = 0; i * intervalNanos < durationNanos; i++) {
+            long scheduled = start + i * intervalNanos;
+            long delay = scheduled - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            Operation operation = mix[ThreadLocalRandom.current().nextInt(mix.length)];
+            if (operation == Operation.GET_TRANSACTION && executedTransfers.get() == 0) {
+                operation = Operation.GET_ACCOUNT;
+            }
+            if (inFlight.incrementAndGet() > options.getMaxInFlight()) {
+                inFlight.decrementAndGet();
+                stats.get(operation).recordDropped();
+                continue;
+            }
+            send(operation, scheduled);
+        }
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private void send(Operation operation, long scheduled) {
+        OperationStats operationStats = stats.get(operation);
+        httpClient.execute(createRequest(operation), new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    long latency = System.nanoTime() - scheduled;
+                    int status = response.getStatusLine().getStatusCode();
+                    String body = response.getEntity() == null ? null : EntityUtils.toString(response.getEntity());
+                    if (status != HTTP_OK) {
+                        operationStats.recordError("status_" + status, latency);
+                        return;
+                    }
+                    operationStats.recordSuccess(latency);
+                    if (operation == Operation.TRANSFER) {
+                        rememberTransaction(Converter.convertFromJson(body, TransactionDTO.class).getId());
+                    }
+                } catch (Exception e) {
+                    operationStats.recordError(e.getClass().getSimpleName(), System.nanoTime() - scheduled);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+            
+            @Override
+            public void failed(Exception error) {
+                operationStats.recordError(error.getClass().getSimpleName(), System.nanoTime() - scheduled);
+                inFlight.decrementAndGet();
+            }
+            
+            @Override
+            public void cancelled() {
+                operationStats.recordError("cancelled", System.nanoTime() - scheduled);
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+    
+    private HttpUriRequest createRequest(Operation operation) {
+        String baseUrl = options.baseUrl();
+        switch (operation) {
+            case TRANSFER:
+                return createTransfer(baseUrl);
+            case GET_TRANSACTION:
+                return new HttpGet(baseUrl + "/transactions/" + recentTransaction());
+            case LIST_TRANSACTIONS:
+                return new HttpGet(baseUrl + "/accounts/" + nextAccount() + "/transactions?limit=" + options.getListLimit());
+            default:
+                return new HttpGet(baseUrl + "/accounts/" + nextAccount());
+        }
+    }
+    
+    private HttpUriRequest createTransfer(String baseUrl) {
+        String sender = nextAccount();
+        String recipient = nextAccount();
+        while (recipient.equals(sender) && accountIds.size() > 1) {
+            recipient = nextAccount();
+        }
+        CreateTransactionRequest request = new CreateTransactionRequest()
+                .setSenderAccountId(sender)
+                .setRecipientAccountId(recipient)
+                .setCurrencyCode(options.getCurrency())
+                .setAmount(1 + ThreadLocalRandom.current().nextLong(MAX_AMOUNT));
+        HttpPost post = new HttpPost(baseUrl + "/transactions");
+        post.setEntity(new StringEntity(Converter.convertToJson(request), ContentType.APPLICATION_JSON));
+        return post;
+    }
+    
+    private String nextAccount() {
+        return accountIds.get(accountRanks.next());
+    }
+    
+    private void rememberTransaction(String transactionId) {
+        long index = executedTransfers.getAndIncrement();
+        recentTransactions.set((int) (index % RECENT_TRANSACTIONS), transactionId);
+    }
+    
+    private String recentTransaction() {
+        int stored = (int) Math.min(executedTransfers.get(), RECENT_TRANSACTIONS);
+        String transactionId = recentTransactions.get(ThreadLocalRandom.current().nextInt(stored));
+        // Slot may be claimed but not written yet
+        return transactionId != null ? transactionId : recentTransactions.get(0);
+    }
+    
+    /**
+     * Operations repeated by their weights, so picking a random element follows the mix
+     */
+    private static Operation[] buildMix(LoadTestOptions options) {
+        int[] weights = {options.getTransferWeight(), options.getAccountReadWeight(), options.getTransactionReadWeight(), options.getListWeight()};
+        Operation[] operations = {Operation.TRANSFER, Operation.GET_ACCOUNT, Operation.GET_TRANSACTION, Operation.LIST_TRANSACTIONS};
+        int total = 0;
+        for (int weight : weights) {
+            total += Math.max(weight, 0);
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one operation must have positive weight");
+        }
+        Operation[] mix = new Operation[total];
+        int index = 0;
+        for (int i = 0; i < operations.length; i++) {
+            for (int j = 0; j < weights[i]; j++) {
+                mix[index++] = operations[i];
+            }
+        }
+        return mix;
+    }
+}
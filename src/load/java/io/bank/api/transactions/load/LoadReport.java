@@ -0,0 +1,43 @@
+package io.bank.api.transactions.load;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a measured run, written as JSON. Rates are requests per second, latencies are in milliseconds.
+ * Requests, errors and rates count sent requests only, requests dropped over the in-flight limit are reported apart
+ */
+@Data
+@Builder
+public class LoadReport {
+    private int targetRate;
+    private double achievedRate;
+    private int durationSeconds;
+    private int accounts;
+    private double zipfExponent;
+    private long requests;
+    private long errors;
+    private double errorRate;
+    private long dropped;
+    private Map<String, OperationReport> operations;
+    private boolean passed;
+    private List<String> violations;
+    
+    @Data
+    @Builder
+    public static class OperationReport {
+        private long requests;
+        private long succeeded;
+        private Map<String, Long> errors;
+        private long dropped;
+        private double rate;
+        private double meanMillis;
+        private double p50Millis;
+        private double p99Millis;
+        private double p999Millis;
+        private double maxMillis;
+    }
+}
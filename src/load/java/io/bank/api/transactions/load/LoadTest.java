@@ -0,0 +1,279 @@
+package io.bank.api.transactions.load;
+
+import io.bank.api.transactions.config.ApplicationConfig;
+import io.bank.api.transactions.model.dto.AccountDTO;
+import io.bank.api.transactions.model.dto.CreateAccountRequest;
+import io.bank.api.transactions.utils.Converter;
+import io.bank.api.transactions.verticles.MainVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import lombok.SneakyThrows;
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.util.EntityUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/**
+ * Load and soak test: starts the API with embedded Redis (unless "load.target.url" points to a running one),
+ * seeds accounts, warms up and runs the workload mix at the target rate, then writes JSON report and logs a summary.
+ * Exits with code 1 if any of the configured thresholds is violated, so it can gate CI runs.
+ * Usage: ./gradlew loadTest -Dload.rate=2000 -Dload.duration.seconds=600 -Dload.threshold.p99.millis=50
+ */
+public class LoadTest {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTest.class);
+    private static final int SEED_BATCH_SIZE = 100;
+    private static final int REQUEST_TIMEOUT_MILLIS = 10_000;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+    
+    public static void main(String[] args) {
+        LoadTestOptions options = LoadTestOptions.fromConfig(new ApplicationConfig(systemProperties()));
+        if (options.getRate() <= 0 || options.getAccounts() < 2) {
+            throw new IllegalArgumentException("Rate must be positive and there must be at least 2 accounts");
+        }
+        Vertx vertx = options.getTargetUrl() == null ? startApplication(options) : null;
+        CloseableHttpAsyncClient httpClient = createHttpClient(options);
+        httpClient.start();
+        boolean passed;
+        try {
+            List<String> accountIds = seedAccounts(options, httpClient);
+            LoadGenerator generator = new LoadGenerator(options, httpClient, accountIds);
+            
+            LOG.info("Warming up for " + options.getWarmUpSeconds() + " s at " + options.getRate() + " requests/s");
+            generator.run(TimeUnit.SECONDS.toNanos(options.getWarmUpSeconds()));
+            generator.resetStats();
+            
+            LOG.info("Running for " + options.getDurationSeconds() + " s at " + options.getRate() + " requests/s");
+            long elapsedNanos = generator.run(TimeUnit.SECONDS.toNanos(options.getDurationSeconds()));
+            
+            LoadReport report = buildReport(options, generator.getStats(), elapsedNanos);
+            writeReport(report, Paths.get(options.getReportFile()));
+            LOG.info("Load test report (" + options.getReportFile() + "):\n" + summary(report));
+            passed = report.isPassed();
+        } finally {
+            close(httpClient);
+            if (vertx != null) {
+                close(vertx);
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+    
+    @SneakyThrows
+    private static Vertx startApplication(LoadTestOptions options) {
+        Vertx vertx = Vertx.vertx();
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        // Storage and Redis options are taken by the application from system properties, same as in production
+        vertx.deployVerticle(MainVerticle.class.getName(),
+                             new DeploymentOptions().setConfig(new JsonObject().put(ApplicationConfig.HTTP_PORT, options.getHttpPort())),
+                             result -> {
+                                 if (result.succeeded()) {
+                                     deployed.complete(result.result());
+                                 } else {
+                                     deployed.completeExceptionally(result.cause());
+                                 }
+                             });
+        deployed.get();
+        return vertx;
+    }
+    
+    private static CloseableHttpAsyncClient createHttpClient(LoadTestOptions options) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setSocketTimeout(REQUEST_TIMEOUT_MILLIS)
+                .setConnectTimeout(REQUEST_TIMEOUT_MILLIS)
+                .build();
+        return HttpAsyncClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnTotal(options.getMaxConnections())
+                .setMaxConnPerRoute(options.getMaxConnections())
+                .build();
+    }
+    
+    /**
+     * Creates accounts through the API in concurrent batches and returns their ids shuffled
+     */
+    @SneakyThrows
+    private static List<String> seedAccounts(LoadTestOptions options, CloseableHttpAsyncClient httpClient) {
+        CreateAccountRequest request = new CreateAccountRequest()
+                .setBalance(options.getInitialBalance())
+                .setCurrencyCode(options.getCurrency());
+        String body = Converter.convertToJson(request);
+        List<String> accountIds = new ArrayList<>(options.getAccounts());
+        while (accountIds.size() < options.getAccounts()) {
+            List<Future<HttpResponse>> batch = new ArrayList<>();
+            for (int i = accountIds.size(); i < Math.min(accountIds.size() + SEED_BATCH_SIZE, options.getAccounts()); i++) {
+                HttpPost post = new HttpPost(options.baseUrl() + "/accounts");
+                post.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+                batch.add(httpClient.execute(post, null));
+            }
+            for (Future<HttpResponse> future : batch) {
+                HttpResponse response = future.get();
+                String responseBody = response.getEntity() == null ? null : EntityUtils.toString(response.getEntity());
+                int status = response.getStatusLine().getStatusCode();
+                if (status != HTTP_OK) {
+                    throw new IllegalStateException("Failed to create account, status " + status + ": " + responseBody);
+                }
+                accountIds.add(Converter.convertFromJson(responseBody, AccountDTO.class).getId());
+            }
+        }
+        Collections.shuffle(accountIds);
+        LOG.info("Created " + accountIds.size() + " accounts");
+        return accountIds;
+    }
+    
+    /**
+     * Achieved rate and error rate are computed from sent requests, so dropped requests lower the achieved rate
+     * instead of being hidden in it, and aren't mixed with HTTP and exception errors
+     */
+    private static LoadReport buildReport(LoadTestOptions options, Map<Operation, OperationStats> stats, long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        Map<String, LoadReport.OperationReport> operations = new LinkedHashMap<>();
+        long requests = 0;
+        long errors = 0;
+        long dropped = 0;
+        Histogram total = null;
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            Histogram histogram = entry.getValue().histogram();
+            Map<String, Long> operationErrors = entry.getValue().getErrors();
+            long failed = operationErrors.values().stream().mapToLong(Long::longValue).sum();
+            LoadReport.OperationReport operation = operationReport(histogram, entry.getValue().getSucceeded() + failed, entry.getValue().getSucceeded(),
+                                                                   operationErrors, entry.getValue().getDropped(), elapsedSeconds);
+            operations.put(entry.getKey().name().toLowerCase(), operation);
+            requests += operation.getRequests();
+            errors += failed;
+            dropped += operation.getDropped();
+            if (total == null) {
+                total = histogram.copy();
+            } else {
+                total.add(histogram);
+            }
+        }
+        LoadReport.OperationReport overall = operationReport(total, requests, requests - errors, Collections.emptyMap(), dropped, elapsedSeconds);
+        operations.put("total", overall);
+        
+        double errorRate = requests == 0 ? 0 : (double) errors / requests;
+        double achievedRate = overall.getRate();
+        List<String> violations = new ArrayList<>();
+        if (options.getMaxP99Millis() > 0 && overall.getP99Millis() > options.getMaxP99Millis()) {
+            violations.add("p99 " + overall.getP99Millis() + " ms > " + options.getMaxP99Millis() + " ms");
+        }
+        if (options.getMaxP999Millis() > 0 && overall.getP999Millis() > options.getMaxP999Millis()) {
+            violations.add("p99.9 " + overall.getP999Millis() + " ms > " + options.getMaxP999Millis() + " ms");
+        }
+        if (options.getMaxErrorRate() > 0 && errorRate > options.getMaxErrorRate()) {
+            violations.add("error rate " + errorRate + " > " + options.getMaxErrorRate());
+        }
+        if (options.getMinRateRatio() > 0 && achievedRate < options.getRate() * options.getMinRateRatio()) {
+            violations.add("achieved rate " + achievedRate + " < " + options.getRate() * options.getMinRateRatio() + " (" + dropped + " dropped)");
+        }
+        return LoadReport.builder()
+                .targetRate(options.getRate())
+                .achievedRate(achievedRate)
+                .durationSeconds(options.getDurationSeconds())
+                .accounts(options.getAccounts())
+                .zipfExponent(options.getZipfExponent())
+                .requests(requests)
+                .errors(errors)
+                .errorRate(errorRate)
+                .dropped(dropped)
+                .operations(operations)
+                .passed(violations.isEmpty())
+                .violations(violations)
+                .build();
+    }
+    
+    private static LoadReport.OperationReport operationReport(Histogram histogram, long requests, long succeeded, Map<String, Long> errors,
+                                                              long dropped, double elapsedSeconds) {
+        return LoadReport.OperationReport.builder()
+                .requests(requests)
+                .succeeded(succeeded)
+                .errors(errors)
+                .dropped(dropped)
+                .rate(requests / elapsedSeconds)
+                .meanMillis(histogram.getMean() / NANOS_PER_MILLI)
+                .p50Millis(histogram.getValueAtPercentile(50) / NANOS_PER_MILLI)
+                .p99Millis(histogram.getValueAtPercentile(99) / NANOS_PER_MILLI)
+                .p999Millis(histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI)
+                .maxMillis(histogram.getMaxValue() / NANOS_PER_MILLI)
+                .build();
+    }
+    
+    @SneakyThrows
+    private static void writeReport(LoadReport report, Path file) {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, Converter.convertToJson(report).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String summary(LoadReport report) {
+        StringBuilder table = new StringBuilder(String.format("%-18s %10s %10s %10s %10s %10s %10s %10s %10s%n", "operation", "requests",
+                                                              "errors", "dropped", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        report.getOperations().forEach((name, operation) -> table.append(String.format(
+                "%-18s %10d %10d %10d %10.1f %10.2f %10.2f %10.2f %10.2f%n", name, operation.getRequests(),
+                operation.getRequests() - operation.getSucceeded(), operation.getDropped(), operation.getRate(), operation.getP50Millis(),
+                operation.getP99Millis(), operation.getP999Millis(), operation.getMaxMillis())));
+        report.getOperations().forEach((name, operation) -> operation.getErrors()
+                .forEach((cause, count) -> table.append(String.format("  %s %s: %d%n", name, cause, count))));
+        table.append(String.format("target %d req/s, achieved %.1f req/s, error rate %.4f, dropped %d - %s%n", report.getTargetRate(),
+                                   report.getAchievedRate(), report.getErrorRate(), report.getDropped(), report.isPassed() ? "PASSED" : "FAILED"));
+        report.getViolations().forEach(violation -> table.append("  ").append(violation).append(String.format("%n")));
+        return table.toString();
+    }
+    
+    private static JsonObject systemProperties() {
+        JsonObject config = new JsonObject();
+        System.getProperties().stringPropertyNames().forEach(name -> config.put(name, System.getProperty(name)));
+        return config;
+    }
+    
+    private static void close(CloseableHttpAsyncClient httpClient) {
+        try {
+            httpClient.close();
+        } catch (Exception e) {
+            LOG.warn("Failed to close HTTP client", e);
+        }
+    }
+    
+    /**
+     * Waits for Vert.x to close, so embedded Redis is stopped by undeploying it's verticle before the JVM exits
+     */
+    private static void close(Vertx vertx) {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(result -> {
+            if (result.succeeded()) {
+                closed.complete(null);
+            } else {
+                closed.completeExceptionally(result.cause());
+            }
+        });
+        try {
+            closed.get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            LOG.warn("Failed to close Vert.x", e);
+        }
+    }
+}
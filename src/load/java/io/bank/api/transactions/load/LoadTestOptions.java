@@ -0,0 +1,99 @@
+package io.bank.api.transactions.load;
+
+import io.bank.api.transactions.config.ApplicationConfig;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * Options are read from "load.*" system properties or environment variables, see {@link ApplicationConfig}
+ */
+@Data
+@Accessors(chain = true)
+public class LoadTestOptions {
+    /**
+     * Base URL of a running API, e.g. "http://10.0.0.3:8080". If it's not set, the whole stack is started in-process
+     * with embedded Redis (or in-memory storage with "-Dstorage.engine=memory") on "httpPort"
+     */
+    private String targetUrl;
+    private int httpPort = 8080;
+    
+    /**
+     * Accounts created before the run, each with the same initial balance
+     */
+    private int accounts = 1000;
+    private long initialBalance = 100_000_000;
+    private String currency = "USD";
+    
+    /**
+     * Open model: requests are started at a fixed rate regardless of responses. Latency is measured from the time
+     * a request was scheduled to be sent, so stalls of the server are not hidden by the generator waiting for it
+     */
+    private int rate = 500;
+    private int durationSeconds = 30;
+    private int warmUpSeconds = 5;
+    
+    /**
+     * Requests which can't be started because this many are already in flight are counted as dropped
+     */
+    private int maxInFlight = 2000;
+    private int maxConnections = 256;
+    
+    /**
+     * Accounts are picked by Zipf distribution over their ranks, 0 means uniform.
+     * With exponent 1 and 1000 accounts the hottest one takes about 13% of requests
+     */
+    private double zipfExponent = 1.0;
+    
+    /**
+     * Relative weights of operations in the mix
+     */
+    private int transferWeight = 50;
+    private int accountReadWeight = 30;
+    private int transactionReadWeight = 10;
+    private int listWeight = 10;
+    private int listLimit = 100;
+    
+    private String reportFile = "build/reports/load/report.json";
+    
+    /**
+     * Pass/fail thresholds, non-positive values disable them. Failed run exits with code 1
+     */
+    private double maxP99Millis = 0;
+    private double maxP999Millis = 0;
+    private double maxErrorRate = 0;
+    private double minRateRatio = 0;
+    
+    public static LoadTestOptions fromConfig(ApplicationConfig config) {
+        LoadTestOptions defaults = new LoadTestOptions();
+        return new LoadTestOptions()
+                .setTargetUrl(config.getString("load.target.url", null))
+                .setHttpPort(config.getInteger("load.http.port", defaults.getHttpPort()))
+                .setAccounts(config.getInteger("load.accounts", defaults.getAccounts()))
+                .setInitialBalance(config.getLong("load.initial.balance", defaults.getInitialBalance()))
+                .setCurrency(config.getString("load.currency", defaults.getCurrency()))
+                .setRate(config.getInteger("load.rate", defaults.getRate()))
+                .setDurationSeconds(config.getInteger("load.duration.seconds", defaults.getDurationSeconds()))
+                .setWarmUpSeconds(config.getInteger("load.warm.up.seconds", defaults.getWarmUpSeconds()))
+                .setMaxInFlight(config.getInteger("load.max.in.flight", defaults.getMaxInFlight()))
+                .setMaxConnections(config.getInteger("load.max.connections", defaults.getMaxConnections()))
+                .setZipfExponent(getDouble(config, "load.zipf.exponent", defaults.getZipfExponent()))
+                .setTransferWeight(config.getInteger("load.weight.transfer", defaults.getTransferWeight()))
+                .setAccountReadWeight(config.getInteger("load.weight.account.read", defaults.getAccountReadWeight()))
+                .setTransactionReadWeight(config.getInteger("load.weight.transaction.read", defaults.getTransactionReadWeight()))
+                .setListWeight(config.getInteger("load.weight.list", defaults.getListWeight()))
+                .setListLimit(config.getInteger("load.list.limit", defaults.getListLimit()))
+                .setReportFile(config.getString("load.report.file", defaults.getReportFile()))
+                .setMaxP99Millis(getDouble(config, "load.threshold.p99.millis", defaults.getMaxP99Millis()))
+                .setMaxP999Millis(getDouble(config, "load.threshold.p999.millis", defaults.getMaxP999Millis()))
+                .setMaxErrorRate(getDouble(config, "load.threshold.error.rate", defaults.getMaxErrorRate()))
+                .setMinRateRatio(getDouble(config, "load.threshold.rate.ratio", defaults.getMinRateRatio()));
+    }
+    
+    public String baseUrl() {
+        return targetUrl != null ? targetUrl : "http://localhost:" + httpPort;
+    }
+    
+    private static double getDouble(ApplicationConfig config, String key, double defaultValue) {
+        return Double.parseDouble(config.getString(key, String.valueOf(defaultValue)));
+    }
+}
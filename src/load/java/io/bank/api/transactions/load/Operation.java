@@ -0,0 +1,26 @@
+package io.bank.api.transactions.load;
+
+/**
+ * Requests of the workload mix
+ */
+enum Operation {
+    /**
+     * POST /transactions between two accounts picked by Zipf distribution
+     */
+    TRANSFER,
+    
+    /**
+     * GET /accounts/:accountId
+     */
+    GET_ACCOUNT,
+    
+    /**
+     * GET /transactions/:transactionId of one of the recently executed transfers
+     */
+    GET_TRANSACTION,
+    
+    /**
+     * GET /accounts/:accountId/transactions with a limit
+     */
+    LIST_TRANSACTIONS
+}
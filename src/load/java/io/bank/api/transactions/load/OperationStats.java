@@ -0,0 +1,70 @@
+package io.bank.api.transactions.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcomes of a single operation, recorded from HTTP client threads without locking.
+ * Same as server-side metrics, histogram is taken as an interval, so warm-up results can be discarded
+ */
+class OperationStats {
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    
+    private final Recorder recorder = new Recorder(MAX_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final LongAdder succeeded = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    
+    void recordSuccess(long latencyNanos) {
+        recorder.recordValue(Math.min(Math.max(latencyNanos, 0), MAX_TRACKABLE_NANOS));
+        succeeded.increment();
+    }
+    
+    /**
+     * Failed requests are timed too, as slow failures are as visible to clients as slow successes
+     */
+    void recordError(String cause, long latencyNanos) {
+        recorder.recordValue(Math.min(Math.max(latencyNanos, 0), MAX_TRACKABLE_NANOS));
+        errors.computeIfAbsent(cause, key -> new LongAdder()).increment();
+    }
+    
+    /**
+     * Requests which haven't been sent at all are not timed and are counted apart from errors of sent requests
+     */
+    void recordDropped() {
+        dropped.increment();
+    }
+    
+    void reset() {
+        recorder.reset();
+        succeeded.reset();
+        errors.clear();
+        dropped.reset();
+    }
+    
+    Histogram histogram() {
+        return recorder.getIntervalHistogram();
+    }
+    
+    long getSucceeded() {
+        return succeeded.sum();
+    }
+    
+    long getDropped() {
+        return dropped.sum();
+    }
+    
+    Map<String, Long> getErrors() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((cause, count) -> counts.put(cause, count.sum()));
+        return counts;
+    }
+}
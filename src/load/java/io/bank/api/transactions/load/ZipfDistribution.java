@@ -0,0 +1,30 @@
+package io.bank.api.transactions.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks ranks 0..n-1 with probability proportional to 1 / (rank + 1)^exponent by binary search over
+ * precomputed cumulative probabilities. Exponent 0 gives uniform distribution
+ */
+class ZipfDistribution {
+    private final double[] cumulative;
+    
+    ZipfDistribution(int size, double exponent) {
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+    
+    int next() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        // Not found index is encoded as -(insertion point) - 1
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,239 @@
+package io.bank.api.transactions.config;
+
+import io.bank.api.transactions.dao.RecordFormat;
+import io.bank.api.transactions.dao.RedisDaoOptions;
+import io.bank.api.transactions.dao.TransferMode;
+import io.bank.api.transactions.storage.memory.MemoryLedgerOptions;
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed view over merged configuration. Keys are dotted, e.g. "http.port", and can also be given
+ * as environment variables in upper snake case, e.g. "HTTP_PORT"
+ */
+public class ApplicationConfig {
+    public static final String CONFIG_PATH = "config.path";
+    public static final String CONFIG_SCAN_PERIOD_MILLIS = "config.scan.period.millis";
+    
+    public static final String HTTP_PORT = "http.port";
+    public static final String HTTP_INSTANCES = "http.instances";
+    public static final String HTTP_TCP_NO_DELAY = "http.tcp.no.delay";
+    public static final String HTTP_COMPRESSION = "http.compression";
+    public static final String HTTP_COMPRESSION_LEVEL = "http.compression.level";
+    public static final String HTTP_IDLE_TIMEOUT_SECONDS = "http.idle.timeout.seconds";
+    public static final String HTTP_SCHEDULER = "http.scheduler";
+    
+    public static final String STORAGE_ENGINE = "storage.engine";
+    public static final String MEMORY_SHARDS = "storage.memory.shards";
+    public static final String MEMORY_SNAPSHOT_DIRECTORY = "storage.memory.snapshot.directory";
+    public static final String MEMORY_SNAPSHOT_INTERVAL_MILLIS = "storage.memory.snapshot.interval.millis";
+    
+    public static final String REDIS_HOST = "redis.host";
+    public static final String REDIS_PORT = "redis.port";
+    public static final String REDIS_EMBEDDED = "redis.embedded";
+    public static final String REDIS_READINESS_TIMEOUT_MILLIS = "redis.readiness.timeout.millis";
+    public static final String REDIS_CLUSTER = "redis.cluster";
+    public static final String REDIS_REPLICAS = "redis.replicas";
+    public static final String REDIS_SENTINEL = "redis.sentinel";
+    public static final String REDIS_SHARED_CONNECTIONS = "redis.shared.connections";
+    public static final String REDIS_POOL_MAX_TOTAL = "redis.pool.max.total";
+    public static final String REDIS_POOL_MAX_IDLE = "redis.pool.max.idle";
+    public static final String REDIS_POOL_MIN_IDLE = "redis.pool.min.idle";
+    public static final String REDIS_POOL_MAX_WAIT_MILLIS = "redis.pool.max.wait.millis";
+    public static final String REDIS_PIPELINE_BATCH_SIZE = "redis.pipeline.batch.size";
+    public static final String REDIS_PIPELINE_MAX_CONCURRENT_BATCHES = "redis.pipeline.max.concurrent.batches";
+    public static final String REDIS_TRANSFER_MAX_RETRIES = "redis.transfer.max.retries";
+    public static final String REDIS_TRANSACTION_TTL_SECONDS = "redis.transaction.ttl.seconds";
+    public static final String REDIS_RECORD_FORMAT = "redis.record.format";
+    public static final String REDIS_FEED_ENABLED = "redis.feed.enabled";
+    public static final String REDIS_FEED_MAX_LENGTH = "redis.feed.max.length";
+    public static final String REDIS_ACCOUNT_CACHE_ENABLED = "redis.account.cache.enabled";
+    public static final String REDIS_ACCOUNT_CACHE_SIZE = "redis.account.cache.size";
+    public static final String REDIS_ACCOUNT_CACHE_TTL_MILLIS = "redis.account.cache.ttl.millis";
+    public static final String REDIS_TRANSFER_MODE = "redis.transfer.mode";
+    public static final String REDIS_IDEMPOTENCY_KEY_TTL_SECONDS = "redis.idempotency.key.ttl.seconds";
+    
+    public static final String JOURNAL_DIRECTORY = "journal.directory";
+    
+    private static final String DEFAULT_CONFIG_PATH = "conf/config.json";
+    private static final long DEFAULT_SCAN_PERIOD_MILLIS = 5000;
+    private static final String DEFAULT_REDIS_HOST = "localhost";
+    private static final int DEFAULT_REDIS_PORT = 6379;
+    private static final int DEFAULT_HTTP_PORT = 8080;
+    private static final long DEFAULT_REDIS_READINESS_TIMEOUT_MILLIS = 10_000;
+    
+    private final JsonObject config;
+    
+    public ApplicationConfig(JsonObject config) {
+        this.config = config;
+    }
+    
+    /**
+     * Later stores override earlier ones: optional config file, launcher "-conf" options, environment variables
+     * and system properties. File is scanned for changes, so tunable options can be changed without restart
+     */
+    public static ConfigRetriever createRetriever(Vertx vertx, JsonObject launcherConfig) {
+        ApplicationConfig bootstrap = new ApplicationConfig(launcherConfig);
+        ConfigStoreOptions file = new ConfigStoreOptions()
+                .setType("file")
+                .setOptional(true)
+                .setConfig(new JsonObject().put("path", bootstrap.getString(CONFIG_PATH, DEFAULT_CONFIG_PATH)));
+        return ConfigRetriever.create(vertx, new ConfigRetrieverOptions()
+                .setScanPeriod(bootstrap.getLong(CONFIG_SCAN_PERIOD_MILLIS, DEFAULT_SCAN_PERIOD_MILLIS))
+                .addStore(file)
+                .addStore(new ConfigStoreOptions().setType("json").setConfig(launcherConfig))
+                .addStore(new ConfigStoreOptions().setType("env"))
+                .addStore(new ConfigStoreOptions().setType("sys")));
+    }
+    
+    public JsonObject toJson() {
+        return config;
+    }
+    
+    /**
+     * Compression is negotiated with clients by "Accept-Encoding", so it's enabled by default
+     */
+    public HttpServerOptions httpServerOptions() {
+        return new HttpServerOptions()
+                .setPort(getInteger(HTTP_PORT, DEFAULT_HTTP_PORT))
+                .setTcpNoDelay(getBoolean(HTTP_TCP_NO_DELAY, true))
+                .setCompressionSupported(getBoolean(HTTP_COMPRESSION, true))
+                .setCompressionLevel(getInteger(HTTP_COMPRESSION_LEVEL, HttpServerOptions.DEFAULT_COMPRESSION_LEVEL))
+                .setIdleTimeout(getInteger(HTTP_IDLE_TIMEOUT_SECONDS, HttpServerOptions.DEFAULT_IDLE_TIMEOUT));
+    }
+    
+    public int httpInstances() {
+        return getInteger(HTTP_INSTANCES, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public ResponseScheduler responseScheduler() {
+        return ResponseScheduler.valueOf(getString(HTTP_SCHEDULER, ResponseScheduler.EVENT_LOOP.name()).toUpperCase());
+    }
+    
+    public StorageEngine storageEngine() {
+        return StorageEngine.valueOf(getString(STORAGE_ENGINE, StorageEngine.REDIS.name()).toUpperCase());
+    }
+    
+    public MemoryLedgerOptions memoryLedgerOptions() {
+        MemoryLedgerOptions defaults = new MemoryLedgerOptions();
+        return new MemoryLedgerOptions()
+                .setShards(getInteger(MEMORY_SHARDS, defaults.getShards()))
+                .setSnapshotDirectory(getString(MEMORY_SNAPSHOT_DIRECTORY, null))
+                .setSnapshotIntervalMillis(getLong(MEMORY_SNAPSHOT_INTERVAL_MILLIS, defaults.getSnapshotIntervalMillis()));
+    }
+    
+    public String redisHost() {
+        return getString(REDIS_HOST, DEFAULT_REDIS_HOST);
+    }
+    
+    public int redisPort() {
+        return getInteger(REDIS_PORT, DEFAULT_REDIS_PORT);
+    }
+    
+    /**
+     * Embedded server is started by default only for a local standalone Redis, e.g. in development and tests,
+     * and never for in-memory storage
+     */
+    public boolean isRedisEmbedded() {
+        if (storageEngine() != StorageEngine.REDIS) {
+            return false;
+        }
+        boolean local = "localhost".equals(redisHost()) || "127.0.0.1".equals(redisHost());
+        return getBoolean(REDIS_EMBEDDED, local && !getBoolean(REDIS_CLUSTER, false));
+    }
+    
+    public long redisReadinessTimeoutMillis() {
+        return getLong(REDIS_READINESS_TIMEOUT_MILLIS, DEFAULT_REDIS_READINESS_TIMEOUT_MILLIS);
+    }
+    
+    public String journalDirectory() {
+        return getString(JOURNAL_DIRECTORY, null);
+    }
+    
+    /**
+     * Options missing from configuration keep {@link RedisDaoOptions} defaults.
+     * Reads are routed to replicas when they are listed, discovered by Sentinel or, in cluster mode, always
+     */
+    public RedisDaoOptions redisDaoOptions() {
+        RedisDaoOptions defaults = new RedisDaoOptions();
+        RedisDaoOptions options = new RedisDaoOptions()
+                .setCluster(getBoolean(REDIS_CLUSTER, defaults.isCluster()))
+                .setSharedConnections(getInteger(REDIS_SHARED_CONNECTIONS, defaults.getSharedConnections()))
+                .setTransactionTtlSeconds(getLong(REDIS_TRANSACTION_TTL_SECONDS, defaults.getTransactionTtlSeconds()))
+                .setRecordFormat(RecordFormat.valueOf(getString(REDIS_RECORD_FORMAT, defaults.getRecordFormat().name()).toUpperCase()))
+                .setTransactionFeedEnabled(getBoolean(REDIS_FEED_ENABLED, defaults.isTransactionFeedEnabled()))
+                .setTransactionFeedMaxLength(getLong(REDIS_FEED_MAX_LENGTH, defaults.getTransactionFeedMaxLength()))
+                .setAccountCacheEnabled(getBoolean(REDIS_ACCOUNT_CACHE_ENABLED, defaults.isAccountCacheEnabled()))
+                .setAccountCacheSize(getLong(REDIS_ACCOUNT_CACHE_SIZE, defaults.getAccountCacheSize()))
+                .setAccountCacheTtlMillis(getLong(REDIS_ACCOUNT_CACHE_TTL_MILLIS, defaults.getAccountCacheTtlMillis()))
+                .setTransferMode(TransferMode.valueOf(getString(REDIS_TRANSFER_MODE, defaults.getTransferMode().name()).toUpperCase()))
+                .setIdempotencyKeyTtlSeconds(getLong(REDIS_IDEMPOTENCY_KEY_TTL_SECONDS, defaults.getIdempotencyKeyTtlSeconds()))
+                .setReplicaUris(getStringList(REDIS_REPLICAS))
+                .setSentinelUri(getString(REDIS_SENTINEL, null));
+        options.setReadFromReplicas(options.isCluster() || !options.getReplicaUris().isEmpty() || options.getSentinelUri() != null);
+        return applyTunables(options);
+    }
+    
+    /**
+     * Applies the subset of options which can be changed on a running {@link io.bank.api.transactions.dao.RedisDao}
+     */
+    public RedisDaoOptions applyTunables(RedisDaoOptions options) {
+        return options
+                .setPoolMaxTotal(getInteger(REDIS_POOL_MAX_TOTAL, options.getPoolMaxTotal()))
+                .setPoolMaxIdle(getInteger(REDIS_POOL_MAX_IDLE, options.getPoolMaxIdle()))
+                .setPoolMinIdle(getInteger(REDIS_POOL_MIN_IDLE, options.getPoolMinIdle()))
+                .setPoolMaxWaitMillis(getLong(REDIS_POOL_MAX_WAIT_MILLIS, options.getPoolMaxWaitMillis()))
+                .setPipelineBatchSize(getInteger(REDIS_PIPELINE_BATCH_SIZE, options.getPipelineBatchSize()))
+                .setMaxConcurrentBatches(getInteger(REDIS_PIPELINE_MAX_CONCURRENT_BATCHES, options.getMaxConcurrentBatches()))
+                .setTransferMaxRetries(getInteger(REDIS_TRANSFER_MAX_RETRIES, options.getTransferMaxRetries()));
+    }
+    
+    public String getString(String key, String defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : String.valueOf(value);
+    }
+    
+    public int getInteger(String key, int defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+    }
+    
+    public long getLong(String key, long defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+    
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString());
+    }
+    
+    /**
+     * Lists are given as JSON arrays or, in environment variables and system properties, as comma-separated values
+     */
+    public List<String> getStringList(String key) {
+        Object value = get(key);
+        List<String> values = new ArrayList<>();
+        if (value instanceof JsonArray) {
+            ((JsonArray) value).forEach(item -> values.add(String.valueOf(item)));
+        } else if (value != null && !value.toString().trim().isEmpty()) {
+            for (String item : value.toString().split(",")) {
+                values.add(item.trim());
+            }
+        }
+        return values;
+    }
+    
+    private Object get(String key) {
+        Object value = config.getValue(key);
+        return value != null ? value : config.getValue(key.toUpperCase().replace('.', '_'));
+    }
+}
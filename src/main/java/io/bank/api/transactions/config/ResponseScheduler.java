@@ -0,0 +1,37 @@
+package io.bank.api.transactions.config;
+
+import io.vertx.rxjava.core.RxHelper;
+import io.vertx.rxjava.core.Vertx;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Where HTTP handlers process Redis replies and write responses
+ */
+public enum ResponseScheduler {
+    /**
+     * Event loop of the HTTP verticle instance, no locking on response writes
+     */
+    EVENT_LOOP,
+    
+    /**
+     * Vert.x worker pool, for handlers doing heavy mapping of large responses
+     */
+    WORKER,
+    
+    /**
+     * Shared RxJava computation pool, sized by CPU cores
+     */
+    COMPUTATION;
+    
+    public Scheduler create(Vertx vertx) {
+        switch (this) {
+            case WORKER:
+                return RxHelper.blockingScheduler(vertx);
+            case COMPUTATION:
+                return Schedulers.computation();
+            default:
+                return RxHelper.scheduler(vertx);
+        }
+    }
+}
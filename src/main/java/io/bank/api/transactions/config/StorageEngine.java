@@ -0,0 +1,16 @@
+package io.bank.api.transactions.config;
+
+/**
+ * Where accounts and transactions are kept, see {@link io.bank.api.transactions.storage.LedgerStorage}
+ */
+public enum StorageEngine {
+    /**
+     * Redis hashes, shared by all instances of the application
+     */
+    REDIS,
+    
+    /**
+     * Sharded in-process ledger, optionally snapshotted to disk. Not shared between instances
+     */
+    MEMORY
+}
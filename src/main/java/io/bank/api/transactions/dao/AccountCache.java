@@ -0,0 +1,162 @@
+package io.bank.api.transactions.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.lambdaworks.redis.RedisChannelHandler;
+import com.lambdaworks.redis.RedisConnectionStateListener;
+import com.lambdaworks.redis.RedisException;
+import com.lambdaworks.redis.pubsub.RedisPubSubAdapter;
+import com.lambdaworks.redis.pubsub.StatefulRedisPubSubConnection;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Size and TTL bounded in-process cache of account hashes. Entries are invalidated by Redis keyspace notifications,
+ * so balance changes made by any API instance are visible immediately. TTL only limits staleness when notifications are lost
+ */
+class AccountCache implements RedisConnectionStateListener {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountCache.class);
+    private static final String NOTIFY_KEYSPACE_EVENTS = "notify-keyspace-events";
+    // K - keyspace channel, g - generic commands like DEL, h - hash commands, x - expiration
+    private static final String REQUIRED_EVENTS = "Kghx";
+    private static final String ALL_EVENTS = "A";
+    private static final String KEYSPACE_CHANNEL_PATTERN = "__keyspace@*__:%s";
+    private static final String KEYSPACE_CHANNEL_SEPARATOR = "__:";
+    // Power of two, so a stripe is picked by masking the key's hash
+    private static final int INVALIDATION_STRIPES = 4096;
+    
+    private final Cache<String, Map<String, String>> cache;
+    /**
+     * Invalidations are counted per stripe of keys, so a load is dropped only if it's own key (or a rare neighbour
+     * of the same stripe) has been invalidated meanwhile, not by writes to any account
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+    private StatefulRedisPubSubConnection<String, String> notifications;
+    
+    AccountCache(RedisDaoOptions options) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(options.getAccountCacheSize())
+                .expireAfterWrite(options.getAccountCacheTtlMillis(), MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Enables keyspace notifications on Redis side (keeping already enabled events) and subscribes to changes of keys matching the pattern.
+     * Returns false if notifications can't be enabled, e.g. CONFIG commands are disabled by managed Redis
+     * and required events haven't been preconfigured, the cache can't be kept consistent then
+     */
+    boolean subscribe(RedisConnections<?> connections, String keyPattern) {
+        notifications = connections.connectPubSub();
+        try {
+            enableNotifications();
+        } catch (RedisException e) {
+            LOG.warn("Account cache is disabled, keyspace notifications \"" + REQUIRED_EVENTS + "\" can't be enabled: " + e.getMessage());
+            close();
+            return false;
+        }
+        
+        notifications.addListener(new RedisPubSubAdapter<String, String>() {
+            @Override
+            public void message(String pattern, String channel, String message) {
+                invalidate(channel.substring(channel.indexOf(KEYSPACE_CHANNEL_SEPARATOR) + KEYSPACE_CHANNEL_SEPARATOR.length()));
+            }
+        });
+        notifications.sync().psubscribe(String.format(KEYSPACE_CHANNEL_PATTERN, keyPattern));
+        LOG.info("Account cache subscribed to keyspace notifications of " + keyPattern);
+        return true;
+    }
+    
+    Map<String, String> get(String key) {
+        return cache.getIfPresent(key);
+    }
+    
+    /**
+     * Returned value has to be passed to {@link #put}, so the hash read before a concurrent invalidation is not cached
+     */
+    long version(String key) {
+        return invalidations.get(stripe(key));
+    }
+    
+    void put(String key, Map<String, String> hash, long version) {
+        if (invalidations.get(stripe(key)) == version) {
+            cache.put(key, Collections.unmodifiableMap(hash));
+        }
+    }
+    
+    void invalidate(String key) {
+        invalidations.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+    }
+    
+    CacheStats stats() {
+        return cache.stats();
+    }
+    
+    void close() {
+        if (notifications != null) {
+            notifications.close();
+        }
+        cache.invalidateAll();
+    }
+    
+    /**
+     * Notifications published while connection was down are lost, so nothing cached before can be trusted
+     */
+    @Override
+    public void onRedisConnected(RedisChannelHandler<?, ?> connection) {
+        invalidateAll();
+    }
+    
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+        invalidateAll();
+    }
+    
+    @Override
+    public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+    }
+    
+    /**
+     * Required events may be preconfigured, CONFIG SET is sent only if some of them are missing
+     */
+    private void enableNotifications() {
+        List<String> config = notifications.sync().configGet(NOTIFY_KEYSPACE_EVENTS);
+        String events = config.size() > 1 ? config.get(1) : "";
+        String merged = mergeEvents(events);
+        if (!merged.equals(events)) {
+            notifications.sync().configSet(NOTIFY_KEYSPACE_EVENTS, merged);
+        }
+    }
+    
+    private void invalidateAll() {
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+    
+    private static int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (INVALIDATION_STRIPES - 1);
+    }
+    
+    private static String mergeEvents(String events) {
+        StringBuilder merged = new StringBuilder(events);
+        for (char event : REQUIRED_EVENTS.toCharArray()) {
+            boolean coveredByAll = event != 'K' && events.contains(ALL_EVENTS);
+            if (!coveredByAll && events.indexOf(event) < 0) {
+                merged.append(event);
+            }
+        }
+        return merged.toString();
+    }
+}
@@ -0,0 +1,145 @@
+package io.bank.api.transactions.dao;
+
+import com.lambdaworks.redis.ReadFrom;
+import com.lambdaworks.redis.RedisConnectionStateListener;
+import com.lambdaworks.redis.RedisURI;
+import com.lambdaworks.redis.ScanArgs;
+import com.lambdaworks.redis.api.StatefulRedisConnection;
+import com.lambdaworks.redis.cluster.RedisClusterClient;
+import com.lambdaworks.redis.cluster.api.StatefulRedisClusterConnection;
+import com.lambdaworks.redis.cluster.api.async.RedisClusterAsyncCommands;
+import com.lambdaworks.redis.cluster.api.rx.RedisClusterReactiveCommands;
+import com.lambdaworks.redis.cluster.models.partitions.RedisClusterNode;
+import com.lambdaworks.redis.pubsub.StatefulRedisPubSubConnection;
+import io.bank.api.transactions.model.Page;
+import rx.Observable;
+import rx.Single;
+import rx.functions.Func1;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Connections to Redis Cluster, commands are routed to nodes by slots of their keys.
+ * Connection state can't span nodes, so dedicated standalone connections (MULTI/WATCH) and Pub/Sub are not supported
+ */
+class ClusterRedisConnections extends RedisConnections<StatefulRedisClusterConnection<String, String>> {
+    private static final String JMX_NAME_PREFIX = "redis-cluster-pool";
+    private static final String NODE_CURSOR_SEPARATOR = ":";
+    // Node index and unsigned 64-bit cursor of the node
+    private static final Pattern NODE_CURSOR_PATTERN = Pattern.compile("\\d{1,9}:\\d{1,20}");
+    
+    private final RedisClusterClient clusterClient;
+    private final StatefulRedisClusterConnection<String, byte[]> binaryConnection;
+    private final StatefulRedisClusterConnection<String, byte[]> binaryReadConnection;
+    
+    ClusterRedisConnections(RedisURI seedURI, RedisDaoOptions options) {
+        this(RedisClusterClient.create(seedURI), options);
+    }
+    
+    private ClusterRedisConnections(RedisClusterClient clusterClient, RedisDaoOptions options) {
+        super(clusterClient::connect, () -> {
+            StatefulRedisClusterConnection<String, String> connection = clusterClient.connect();
+            connection.setReadFrom(ReadFrom.SLAVE_PREFERRED);
+            return connection;
+        }, options, JMX_NAME_PREFIX);
+        this.clusterClient = clusterClient;
+        this.binaryConnection = clusterClient.connect(new StringByteArrayCodec());
+        if (options.isReadFromReplicas()) {
+            this.binaryReadConnection = clusterClient.connect(new StringByteArrayCodec());
+            binaryReadConnection.setReadFrom(ReadFrom.SLAVE_PREFERRED);
+        } else {
+            this.binaryReadConnection = null;
+        }
+    }
+    
+    @Override
+    <T> Observable<T> executeDedicated(Func1<StatefulRedisConnection<String, String>, Observable<T>> commands) {
+        return Observable.error(new UnsupportedOperationException("Dedicated connections are not supported in cluster mode"));
+    }
+    
+    /**
+     * Master nodes are scanned one after another, so cursor is prefixed by the index of the node being scanned,
+     * e.g. "2:1536". Cursors are valid only as long as cluster topology doesn't change.
+     * Scans are always executed by masters, as cursor of a master is not valid for it's replicas.
+     * Malformed cursors and cursors of nodes which are gone fail with {@link IllegalArgumentException}
+     */
+    @Override
+    Single<Page<String>> scan(String pattern, String cursor, int limit, ReadConsistency consistency) {
+        if (!INITIAL_CURSOR.equals(cursor) && !NODE_CURSOR_PATTERN.matcher(cursor).matches()) {
+            return Single.error(new IllegalArgumentException("Invalid cursor: " + cursor));
+        }
+        int separator = cursor.indexOf(NODE_CURSOR_SEPARATOR);
+        int node = separator < 0 ? 0 : Integer.parseInt(cursor.substring(0, separator));
+        String nodeCursor = separator < 0 ? INITIAL_CURSOR : cursor.substring(separator + 1);
+        return withConnection(connection -> {
+            List<String> masters = getMasterNodeIds(connection);
+            if (node >= masters.size()) {
+                return Observable.<Page<String>>error(new IllegalArgumentException("Invalid cursor: " + cursor));
+            }
+            return connection.getConnection(masters.get(node)).reactive()
+                    .scan(scanCursor(nodeCursor), ScanArgs.Builder.matches(pattern).limit(limit))
+                    .map(scan -> {
+                        String next = null;
+                        if (!scan.isFinished()) {
+                            next = node + NODE_CURSOR_SEPARATOR + scan.getCursor();
+                        } else if (node + 1 < masters.size()) {
+                            next = (node + 1) + NODE_CURSOR_SEPARATOR + INITIAL_CURSOR;
+                        }
+                        return new Page<>(scan.getKeys(), next);
+                    });
+        }).toSingle();
+    }
+    
+    @Override
+    boolean isCluster() {
+        return true;
+    }
+    
+    @Override
+    StatefulRedisPubSubConnection<String, String> connectPubSub() {
+        throw new UnsupportedOperationException("Keyspace notifications are not supported in cluster mode");
+    }
+    
+    @Override
+    void addConnectionListener(RedisConnectionStateListener listener) {
+        clusterClient.addListener(listener);
+    }
+    
+    @Override
+    RedisClusterReactiveCommands<String, String> reactive(StatefulRedisClusterConnection<String, String> connection) {
+        return connection.reactive();
+    }
+    
+    @Override
+    RedisClusterAsyncCommands<String, String> async(StatefulRedisClusterConnection<String, String> connection) {
+        return connection.async();
+    }
+    
+    /**
+     * Multi-key commands, e.g. MGET, are split by slots and routed to their nodes by Lettuce
+     */
+    @Override
+    RedisClusterAsyncCommands<String, byte[]> binary(ReadConsistency consistency) {
+        return isReadFromReplica(consistency) ? binaryReadConnection.async() : binaryConnection.async();
+    }
+    
+    @Override
+    void shutdownClient() {
+        binaryConnection.close();
+        if (binaryReadConnection != null) {
+            binaryReadConnection.close();
+        }
+        clusterClient.shutdown();
+    }
+    
+    private static List<String> getMasterNodeIds(StatefulRedisClusterConnection<String, String> connection) {
+        return connection.getPartitions().getPartitions().stream()
+                .filter(node -> node.getFlags().contains(RedisClusterNode.NodeFlag.MASTER))
+                .map(RedisClusterNode::getNodeId)
+                .sorted()
+                .collect(toList());
+    }
+}
@@ -0,0 +1,40 @@
+package io.bank.api.transactions.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts optimistic transfer conflicts per account, so hot accounts can be found and sharded.
+ * Amount of tracked accounts is bounded, rarely contended ones are evicted first
+ */
+class ContentionStats {
+    private final Cache<String, LongAdder> conflicts;
+    
+    ContentionStats(long maxAccounts) {
+        this.conflicts = Caffeine.newBuilder()
+                .maximumSize(maxAccounts)
+                .build();
+    }
+    
+    void recordConflict(String accountId) {
+        conflicts.get(accountId, id -> new LongAdder()).increment();
+    }
+    
+    /**
+     * Returns most contended accounts with their conflicts count, in descending order
+     */
+    Map<String, Long> top(int limit) {
+        Map<String, Long> top = new LinkedHashMap<>();
+        conflicts.asMap().entrySet().stream()
+                .map(entry -> new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+}
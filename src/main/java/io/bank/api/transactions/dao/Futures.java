@@ -0,0 +1,20 @@
+package io.bank.api.transactions.dao;
+
+import rx.Single;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Adapts Lettuce async replies to RxJava
+ */
+class Futures {
+    static <T> Single<T> toSingle(CompletionStage<T> future) {
+        return Single.create(subscriber -> future.whenComplete((value, error) -> {
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onSuccess(value);
+            }
+        }));
+    }
+}
@@ -0,0 +1,49 @@
+package io.bank.api.transactions.dao;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Lua script loaded from classpath together with it's SHA1 digest, which is used for EVALSHA calls
+ */
+@Getter
+public class LuaScript {
+    private final String name;
+    private final String body;
+    private final String digest;
+    
+    private LuaScript(String name, String body) {
+        this.name = name;
+        this.body = body;
+        this.digest = sha1Hex(body);
+    }
+    
+    @SneakyThrows
+    public static LuaScript fromResource(String path) {
+        InputStream stream = LuaScript.class.getClassLoader().getResourceAsStream(path);
+        if (stream == null) {
+            throw new IllegalArgumentException("Script not found on classpath: " + path);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return new LuaScript(path, reader.lines().collect(joining("\n")));
+        }
+    }
+    
+    @SneakyThrows
+    private static String sha1Hex(String body) {
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest(body.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
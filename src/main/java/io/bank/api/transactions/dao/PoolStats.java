@@ -0,0 +1,23 @@
+package io.bank.api.transactions.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of dedicated connections pool state
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PoolStats {
+    private int sharedConnections;
+    private int active;
+    private int idle;
+    private int waiters;
+    private long borrowed;
+    private long meanBorrowWaitMillis;
+    private long maxBorrowWaitMillis;
+}
@@ -0,0 +1,17 @@
+package io.bank.api.transactions.dao;
+
+/**
+ * Where read-only {@link RedisDao} operations are executed
+ */
+public enum ReadConsistency {
+    /**
+     * Primary node, reads always observe the latest writes
+     */
+    STRONG,
+    
+    /**
+     * Replica nodes when replica reads are enabled, otherwise primary. Replicas are updated asynchronously,
+     * so recently executed transfers may not be visible yet
+     */
+    EVENTUAL
+}
@@ -0,0 +1,17 @@
+package io.bank.api.transactions.dao;
+
+/**
+ * How transaction records are stored in Redis. Both formats are always readable, so the format can be switched
+ * on a running system and old records converted later, see {@link RedisDao#migrateTransactionRecords}
+ */
+public enum RecordFormat {
+    /**
+     * Hash of string fields, readable with redis-cli
+     */
+    HASH,
+    
+    /**
+     * Single string value in {@link io.bank.api.transactions.model.TransactionRecord} layout, several times smaller
+     */
+    BINARY
+}
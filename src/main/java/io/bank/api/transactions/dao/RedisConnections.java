@@ -0,0 +1,228 @@
+package io.bank.api.transactions.dao;
+
+import com.lambdaworks.redis.RedisConnectionStateListener;
+import com.lambdaworks.redis.RedisFuture;
+import com.lambdaworks.redis.RedisURI;
+import com.lambdaworks.redis.ScanCursor;
+import com.lambdaworks.redis.api.StatefulConnection;
+import com.lambdaworks.redis.api.StatefulRedisConnection;
+import com.lambdaworks.redis.cluster.api.async.RedisClusterAsyncCommands;
+import com.lambdaworks.redis.cluster.api.rx.RedisClusterReactiveCommands;
+import com.lambdaworks.redis.pubsub.StatefulRedisPubSubConnection;
+import com.lambdaworks.redis.support.ConnectionPoolSupport;
+import io.bank.api.transactions.metrics.Metrics;
+import io.bank.api.transactions.metrics.Timer;
+import io.bank.api.transactions.model.Page;
+import lombok.SneakyThrows;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import rx.Observable;
+import rx.Single;
+import rx.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static io.bank.api.transactions.dao.Futures.toSingle;
+
+/**
+ * Lettuce connections are thread-safe and multiplex commands, so single-command operations are executed
+ * over a few long-lived shared connections picked round-robin. Pooled dedicated connections are used only
+ * when connection state matters: MULTI/WATCH and manually flushed pipelines.
+ * Optional replica connections route read-only commands to replicas, see {@link ReadConsistency}.
+ * Binary records are read over separate long-lived connections with raw byte array values, see {@link RecordFormat}.
+ * Commands are exposed through cluster command interfaces, which are implemented by both standalone and cluster connections
+ */
+abstract class RedisConnections<C extends StatefulConnection<String, String>> {
+    static final String INITIAL_CURSOR = "0";
+    
+    private static final Timer BORROW_TIMER = Metrics.REGISTRY.timer("redis_pool_borrow_wait_seconds",
+                                                                     "Time spent waiting for a pooled Redis connection");
+    
+    private final List<C> sharedConnections = new ArrayList<>();
+    private final AtomicInteger nextShared = new AtomicInteger();
+    private final List<C> readConnections = new ArrayList<>();
+    private final AtomicInteger nextRead = new AtomicInteger();
+    private final GenericObjectPool<C> connectionPool;
+    private final List<Runnable> metricRegistrations = new ArrayList<>();
+    
+    /**
+     * Replica connections are opened only when replica reads are enabled, so "connectReads" may be null
+     */
+    RedisConnections(Supplier<C> connect, Supplier<C> connectReads, RedisDaoOptions options, String jmxNamePrefix) {
+        for (int i = 0; i < options.getSharedConnections(); i++) {
+            sharedConnections.add(connect.get());
+        }
+        if (options.isReadFromReplicas()) {
+            for (int i = 0; i < options.getReplicaReadConnections(); i++) {
+                readConnections.add(connectReads.get());
+            }
+        }
+        this.connectionPool = ConnectionPoolSupport.createGenericObjectPool(connect, createPoolConfig(options, jmxNamePrefix));
+        registerPoolMetrics();
+    }
+    
+    static RedisConnections<?> create(RedisURI redisURI, RedisDaoOptions options) {
+        return options.isCluster()
+                ? new ClusterRedisConnections(redisURI, options)
+                : new StandaloneRedisConnections(redisURI, options);
+    }
+    
+    /**
+     * Executes commands over a shared connection or over a pooled one, if shared connections are disabled.
+     * Pooled connection is borrowed on subscription and returned right after termination
+     */
+    <T> Observable<T> execute(Func1<RedisClusterReactiveCommands<String, String>, Observable<T>> commands) {
+        return withConnection(connection -> commands.call(reactive(connection)));
+    }
+    
+    /**
+     * Executes read-only commands over a replica connection, unless strong consistency is requested
+     * or replica reads are disabled. Replica connections are shared, so they are never borrowed from pool
+     */
+    <T> Observable<T> executeRead(Func1<RedisClusterReactiveCommands<String, String>, Observable<T>> commands, ReadConsistency consistency) {
+        if (!isReadFromReplica(consistency)) {
+            return execute(commands);
+        }
+        int index = (nextRead.getAndIncrement() & Integer.MAX_VALUE) % readConnections.size();
+        return commands.call(reactive(readConnections.get(index)));
+    }
+    
+    boolean isReadFromReplica(ReadConsistency consistency) {
+        return consistency == ReadConsistency.EVENTUAL && !readConnections.isEmpty();
+    }
+    
+    /**
+     * Writes all commands to a dedicated connection and flushes them at once, replies are emitted in the same order
+     */
+    <T> Observable<T> executePipelined(Func1<RedisClusterAsyncCommands<String, String>, List<RedisFuture<T>>> commands) {
+        return Observable.using(this::borrow, connection -> {
+            List<RedisFuture<T>> replies;
+            connection.setAutoFlushCommands(false);
+            try {
+                replies = commands.call(async(connection));
+            } finally {
+                connection.flushCommands();
+                connection.setAutoFlushCommands(true);
+            }
+            return Observable.from(replies).concatMap(reply -> toSingle(reply).toObservable());
+        }, StatefulConnection::close, true);
+    }
+    
+    /**
+     * Executes commands over a standalone connection which is not used by anybody else until returned observable terminates
+     */
+    abstract <T> Observable<T> executeDedicated(Func1<StatefulRedisConnection<String, String>, Observable<T>> commands);
+    
+    /**
+     * Returns a single SCAN page, cursor is null on the last one
+     */
+    abstract Single<Page<String>> scan(String pattern, String cursor, int limit, ReadConsistency consistency);
+    
+    abstract boolean isCluster();
+    
+    /**
+     * Pub/Sub connection can't execute regular commands after subscription, so it's never shared
+     */
+    abstract StatefulRedisPubSubConnection<String, String> connectPubSub();
+    
+    abstract void addConnectionListener(RedisConnectionStateListener listener);
+    
+    abstract RedisClusterReactiveCommands<String, String> reactive(C connection);
+    
+    abstract RedisClusterAsyncCommands<String, String> async(C connection);
+    
+    /**
+     * Commands with byte array values over a long-lived connection, to a replica if it's allowed by consistency
+     */
+    abstract RedisClusterAsyncCommands<String, byte[]> binary(ReadConsistency consistency);
+    
+    abstract void shutdownClient();
+    
+    /**
+     * Pool limits can be changed at runtime, connections above the new limits are closed when they are returned
+     */
+    void configurePool(RedisDaoOptions options) {
+        connectionPool.setMaxTotal(options.getPoolMaxTotal());
+        connectionPool.setMaxIdle(options.getPoolMaxIdle());
+        connectionPool.setMinIdle(options.getPoolMinIdle());
+        connectionPool.setMaxWaitMillis(options.getPoolMaxWaitMillis());
+    }
+    
+    /**
+     * Opens pooled connections up to the pool's min idle, blocks until they are connected
+     */
+    @SneakyThrows
+    void preparePool() {
+        connectionPool.preparePool();
+    }
+    
+    PoolStats getPoolStats() {
+        return PoolStats.builder()
+                .sharedConnections(sharedConnections.size())
+                .active(connectionPool.getNumActive())
+                .idle(connectionPool.getNumIdle())
+                .waiters(connectionPool.getNumWaiters())
+                .borrowed(connectionPool.getBorrowedCount())
+                .meanBorrowWaitMillis(connectionPool.getMeanBorrowWaitTimeMillis())
+                .maxBorrowWaitMillis(connectionPool.getMaxBorrowWaitTimeMillis())
+                .build();
+    }
+    
+    void close() {
+        metricRegistrations.forEach(Runnable::run);
+        sharedConnections.forEach(StatefulConnection::close);
+        readConnections.forEach(StatefulConnection::close);
+        connectionPool.close();
+        shutdownClient();
+    }
+    
+    <T> Observable<T> withConnection(Func1<C, Observable<T>> commands) {
+        if (sharedConnections.isEmpty()) {
+            return Observable.using(this::borrow, commands, StatefulConnection::close, true);
+        }
+        int index = (nextShared.getAndIncrement() & Integer.MAX_VALUE) % sharedConnections.size();
+        return commands.call(sharedConnections.get(index));
+    }
+    
+    @SneakyThrows
+    C borrow() {
+        long start = System.nanoTime();
+        try {
+            return connectionPool.borrowObject();
+        } finally {
+            BORROW_TIMER.recordSince(start);
+        }
+    }
+    
+    static ScanCursor scanCursor(String cursor) {
+        ScanCursor scanCursor = new ScanCursor();
+        scanCursor.setCursor(cursor);
+        return scanCursor;
+    }
+    
+    /**
+     * Gauges report the latest created connections until they are closed
+     */
+    private void registerPoolMetrics() {
+        metricRegistrations.add(Metrics.REGISTRY.gauge("redis_pool_connections", "Dedicated Redis connections by state", connectionPool::getNumActive, "state", "active"));
+        metricRegistrations.add(Metrics.REGISTRY.gauge("redis_pool_connections", "Dedicated Redis connections by state", connectionPool::getNumIdle, "state", "idle"));
+        metricRegistrations.add(Metrics.REGISTRY.gauge("redis_pool_waiters", "Threads waiting for a pooled Redis connection", connectionPool::getNumWaiters));
+        metricRegistrations.add(Metrics.REGISTRY.gauge("redis_shared_connections", "Long-lived shared Redis connections", sharedConnections::size));
+        metricRegistrations.add(Metrics.REGISTRY.gauge("redis_replica_read_connections", "Long-lived Redis connections routing reads to replicas", readConnections::size));
+    }
+    
+    private static GenericObjectPoolConfig createPoolConfig(RedisDaoOptions options, String jmxNamePrefix) {
+        GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setMaxTotal(options.getPoolMaxTotal());
+        config.setMaxIdle(options.getPoolMaxIdle());
+        config.setMinIdle(options.getPoolMinIdle());
+        config.setMaxWaitMillis(options.getPoolMaxWaitMillis());
+        // Pool state is published as JMX MBean, e.g. "org.apache.commons.pool2:type=GenericObjectPool,name=redis-pool"
+        config.setJmxEnabled(true);
+        config.setJmxNamePrefix(jmxNamePrefix);
+        return config;
+    }
+}
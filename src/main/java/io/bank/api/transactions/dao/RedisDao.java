@@ -1,138 +1,951 @@
 package io.bank.api.transactions.dao;
 
-import com.lambdaworks.redis.RedisClient;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.lambdaworks.redis.RedisCommandExecutionException;
+import com.lambdaworks.redis.RedisFuture;
 import com.lambdaworks.redis.RedisURI;
+import com.lambdaworks.redis.ScriptOutputType;
 import com.lambdaworks.redis.api.StatefulRedisConnection;
-import com.lambdaworks.redis.api.rx.RedisReactiveCommands;
-import com.lambdaworks.redis.support.ConnectionPoolSupport;
+import com.lambdaworks.redis.api.async.RedisAsyncCommands;
+import com.lambdaworks.redis.cluster.SlotHash;
+import com.lambdaworks.redis.cluster.api.rx.RedisClusterReactiveCommands;
+import io.bank.api.transactions.metrics.Counter;
+import io.bank.api.transactions.metrics.Metrics;
+import io.bank.api.transactions.metrics.Timer;
 import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.IdempotencyKeyReusedException;
+import io.bank.api.transactions.model.Page;
 import io.bank.api.transactions.model.Transaction;
-import lombok.SneakyThrows;
-import org.apache.commons.pool2.impl.GenericObjectPool;
-import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import io.bank.api.transactions.model.TransactionRecord;
+import io.bank.api.transactions.model.TransferInProgressException;
+import io.bank.api.transactions.model.TransferResult;
+import io.bank.api.transactions.model.TransferStatus;
+import io.bank.api.transactions.storage.TransactionFeed;
+import io.bank.api.transactions.utils.KeysUtils;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.Shareable;
 import rx.Observable;
 import rx.Single;
+import rx.Subscription;
 import rx.schedulers.Schedulers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
+import static io.bank.api.transactions.dao.Futures.toSingle;
 import static io.bank.api.transactions.utils.KeysUtils.*;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
-public class RedisDao {
-    private final GenericObjectPool<StatefulRedisConnection<String, String>> connectionPool;
+/**
+ * Thread-safe, so a single instance is shared by all HTTP verticle instances through local shared data
+ */
+public class RedisDao implements Shareable {
+    private static final Logger LOG = LoggerFactory.getLogger(RedisDao.class);
+    private static final LuaScript TRANSFER_SCRIPT = LuaScript.fromResource("scripts/transfer.lua");
+    private static final LuaScript CREATE_ACCOUNT_SCRIPT = LuaScript.fromResource("scripts/create_account.lua");
+    private static final LuaScript DEBIT_SCRIPT = LuaScript.fromResource("scripts/debit.lua");
+    private static final LuaScript CREDIT_SCRIPT = LuaScript.fromResource("scripts/credit.lua");
+    private static final LuaScript COMPLETE_SCRIPT = LuaScript.fromResource("scripts/complete.lua");
+    private static final LuaScript MIGRATE_TRANSACTION_SCRIPT = LuaScript.fromResource("scripts/migrate_transaction.lua");
+    private static final List<LuaScript> SCRIPTS = Arrays.asList(TRANSFER_SCRIPT, CREATE_ACCOUNT_SCRIPT, DEBIT_SCRIPT, CREDIT_SCRIPT,
+                                                                 COMPLETE_SCRIPT, MIGRATE_TRANSACTION_SCRIPT);
+    private static final String NO_SCRIPT_ERROR = "NOSCRIPT";
+    private static final String WRONG_TYPE_ERROR = "WRONGTYPE";
+    private static final String INITIAL_CURSOR = "0";
+    private static final int SCAN_BATCH_SIZE = 500;
+    private static final int BACKFILL_CONCURRENCY = 16;
+    // Position of optional idempotency key in transfer keys, see "transfer.lua"
+    private static final int IDEMPOTENCY_KEY_INDEX = 5;
+    
+    private static final String COMMAND_DURATION = "redis_command_duration_seconds";
+    private static final String COMMAND_DURATION_HELP = "Redis command latency, pipelines are timed per batch";
+    private static final Timer SCAN_TIMER = commandTimer("scan");
+    private static final Timer HGETALL_TIMER = commandTimer("hgetall");
+    private static final Timer HGETALL_PIPELINE_TIMER = commandTimer("hgetall_pipeline");
+    private static final Timer GET_TIMER = commandTimer("get");
+    private static final Timer MGET_TIMER = commandTimer("mget");
+    private static final Timer MIGRATE_TRANSACTION_TIMER = commandTimer("migrate_transaction");
+    private static final Timer ZRANGEBYSCORE_TIMER = commandTimer("zrangebyscore");
+    private static final Timer HDEL_TIMER = commandTimer("hdel");
+    private static final Timer CREATE_ACCOUNT_TIMER = commandTimer("create_account");
+    private static final Timer TRANSFER_TIMER = commandTimer("transfer");
+    private static final Timer TRANSFER_PIPELINE_TIMER = commandTimer("transfer_pipeline");
+    private static final Counter[] TRANSFER_COUNTERS = transferCounters();
+    private static final Counter TRANSFER_ERRORS = Metrics.REGISTRY.counter("transfers_total", "Executed transfers by result", "status", "error");
+    private static final Counter TRANSFER_CONFLICTS = Metrics.REGISTRY.counter("transfer_conflicts_total", "Aborted optimistic transfer attempts");
+    private static final Counter TRANSFER_RETRIES = Metrics.REGISTRY.counter("transfer_retries_total", "Retried optimistic transfer attempts");
+    
+    private final RedisDaoOptions options;
+    private final AccountCache accountCache;
+    private final ContentionStats contentionStats;
+    private final List<TransactionListener> transactionListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> metricRegistrations = new ArrayList<>();
+    private final Subscription pendingTransfersRecovery;
+    private final RedisConnections<?> connections;
+    private final RedisTransactionFeed transactionFeed;
     
     public RedisDao(RedisURI redisURI) {
-        RedisClient redisClient = RedisClient.create(redisURI);
-        this.connectionPool = ConnectionPoolSupport.createGenericObjectPool(redisClient::connect, new GenericObjectPoolConfig());
+        this(redisURI, new RedisDaoOptions());
     }
     
-    public Observable<String> getKeys(String pattern) {
-        RedisReactiveCommands<String, String> connection = borrowConnection().reactive();
-        return connection.keys(pattern)
-                .subscribeOn(Schedulers.io())
-                .doAfterTerminate(connection::close);
+    /**
+     * In cluster mode the URI is a seed node, the rest of cluster topology is discovered from it
+     */
+    public RedisDao(RedisURI redisURI, RedisDaoOptions options) {
+        if (options.isCluster() && options.getTransferMode() == TransferMode.OPTIMISTIC) {
+            throw new IllegalArgumentException("Optimistic transfers can't WATCH keys of different cluster nodes, use script transfers");
+        }
+        if (options.getRecordFormat() == RecordFormat.BINARY && options.getTransferMode() == TransferMode.OPTIMISTIC) {
+            throw new IllegalArgumentException("Optimistic transfers write transaction hashes, use script transfers for binary records");
+        }
+        if (options.isTransactionFeedEnabled() && (options.isCluster() || options.getTransferMode() == TransferMode.OPTIMISTIC)) {
+            throw new IllegalArgumentException("Transaction feed is appended by the transfer script, it's not supported by optimistic transfers and in cluster mode");
+        }
+        // Key layout is process-wide, as keys are built by static utils
+        KeysUtils.setHashTagged(options.isCluster());
+        this.options = options;
+        this.connections = RedisConnections.create(redisURI, options);
+        this.contentionStats = new ContentionStats(options.getContentionStatsSize());
+        // Keyspace notifications are published by each cluster node separately, so cache can't be kept consistent
+        AccountCache cache = options.isAccountCacheEnabled() && !connections.isCluster() ? new AccountCache(options) : null;
+        if (cache != null && cache.subscribe(connections, ACCOUNT_KEY_PATTERN)) {
+            this.accountCache = cache;
+            connections.addConnectionListener(accountCache);
+            registerAccountCacheMetrics(accountCache, metricRegistrations);
+        } else {
+            this.accountCache = null;
+        }
+        if (options.isTransactionFeedEnabled()) {
+            this.transactionFeed = new RedisTransactionFeed(this, connections);
+            connections.addConnectionListener(transactionFeed);
+            transactionFeed.subscribe();
+        } else {
+            this.transactionFeed = null;
+        }
+        this.pendingTransfersRecovery = connections.isCluster()
+                ? Observable.interval(options.getPendingTransferRecoveryMillis(), options.getPendingTransferRecoveryMillis(), MILLISECONDS)
+                        .onBackpressureDrop()
+                        .concatMap(tick -> recoverPendingTransfers(options.getPendingTransferRecoveryMillis()).toObservable()
+                                .onErrorResumeNext(error -> {
+                                    LOG.error("Pending transfers recovery failed", error);
+                                    return Observable.empty();
+                                }))
+                        .subscribe()
+                : null;
+    }
+    
+    /**
+     * Iterates over all keys matching the pattern with SCAN, next page is requested only after previous one is consumed
+     */
+    public Observable<String> scanKeys(String pattern) {
+        return scanKeys(pattern, ReadConsistency.STRONG);
+    }
+    
+    public Observable<String> scanKeys(String pattern, ReadConsistency consistency) {
+        return scanKeysFrom(pattern, INITIAL_CURSOR, consistency);
+    }
+    
+    /**
+     * Returns a single SCAN page. Note that limit is only a hint for Redis, so page may contain more or less keys
+     */
+    public Single<Page<String>> scanKeys(String pattern, String cursor, int limit) {
+        return scanKeys(pattern, cursor, limit, ReadConsistency.STRONG);
+    }
+    
+    public Single<Page<String>> scanKeys(String pattern, String cursor, int limit, ReadConsistency consistency) {
+        return timed(SCAN_TIMER, connections.scan(pattern, cursor, limit, consistency).toObservable())
+                .toSingle();
     }
     
     public Single<Map<String, String>> getHash(String hashKey) {
-        RedisReactiveCommands<String, String> connection = borrowConnection().reactive();
-        return connection.hgetall(hashKey)
-                .toSingle()
-                .subscribeOn(Schedulers.io())
-                .doAfterTerminate(connection::close);
+        return getHash(hashKey, ReadConsistency.STRONG);
+    }
+    
+    public Single<Map<String, String>> getHash(String hashKey, ReadConsistency consistency) {
+        return timed(HGETALL_TIMER, connections.executeRead(commands -> commands.hgetall(hashKey), consistency))
+                .toSingle();
+    }
+    
+    public Single<Map<String, String>> getAccountHash(String accountId) {
+        return getAccountHash(accountId, ReadConsistency.STRONG);
+    }
+    
+    /**
+     * Same as {@link #getHash} for account key, but served from in-process cache when possible.
+     * Cache is invalidated by the primary, so it's always loaded from the primary too
+     */
+    public Single<Map<String, String>> getAccountHash(String accountId, ReadConsistency consistency) {
+        String accountKey = getAccountKey(accountId);
+        if (accountCache == null) {
+            return getHash(accountKey, consistency);
+        }
+        return Single.defer(() -> {
+            Map<String, String> cached = accountCache.get(accountKey);
+            if (cached != null) {
+                return Single.just(cached);
+            }
+            long version = accountCache.version(accountKey);
+            return getHash(accountKey).doOnSuccess(hash -> {
+                if (!hash.isEmpty()) {
+                    accountCache.put(accountKey, hash, version);
+                }
+            });
+        });
+    }
+    
+    public Observable<Map<String, String>> getHashes(Collection<String> hashKeys) {
+        return getHashes(Observable.from(hashKeys));
+    }
+    
+    public Observable<Map<String, String>> getHashes(Collection<String> hashKeys, ReadConsistency consistency) {
+        return getHashes(Observable.from(hashKeys), consistency);
+    }
+    
+    public Observable<Map<String, String>> getHashes(Observable<String> hashKeys) {
+        return getHashes(hashKeys, ReadConsistency.STRONG);
+    }
+    
+    /**
+     * Reads hashes in the same order as keys are emitted. Keys are grouped into batches,
+     * each batch is pipelined over a single connection and flushed to Redis at once.
+     * Shared replica connections can't be flushed manually, so replica reads are just issued concurrently
+     * and Lettuce writes them to the connection together
+     */
+    public Observable<Map<String, String>> getHashes(Observable<String> hashKeys, ReadConsistency consistency) {
+        if (connections.isReadFromReplica(consistency)) {
+            int maxConcurrent = options.getPipelineBatchSize() * options.getMaxConcurrentBatches();
+            return hashKeys.concatMapEager(hashKey -> getHash(hashKey, consistency).toObservable(), maxConcurrent, maxConcurrent);
+        }
+        return hashKeys
+                .buffer(options.getPipelineBatchSize())
+                .concatMapEager(this::getHashesPipelined, options.getMaxConcurrentBatches(), options.getMaxConcurrentBatches());
+    }
+    
+    public Single<Transaction> getTransaction(String transactionId) {
+        return getTransaction(transactionId, ReadConsistency.STRONG);
+    }
+    
+    /**
+     * Reads transaction record of either {@link RecordFormat}, fails if the transaction doesn't exist
+     */
+    public Single<Transaction> getTransaction(String transactionId, ReadConsistency consistency) {
+        return readTransaction(getTransactionKey(transactionId), consistency)
+                .switchIfEmpty(Observable.error(new IllegalStateException("Transaction does not exist")))
+                .toSingle();
+    }
+    
+    public Observable<Transaction> getTransactions(Collection<String> transactionKeys, ReadConsistency consistency) {
+        return getTransactions(Observable.from(transactionKeys), consistency);
+    }
+    
+    /**
+     * Reads transactions in the same order as keys are emitted, skipping missing (e.g. expired) ones.
+     * Binary records are read with one MGET per batch, hashes are pipelined same as in {@link #getHashes}.
+     * Records of the other format are read key by key, so they should be migrated after the format is switched
+     */
+    public Observable<Transaction> getTransactions(Observable<String> transactionKeys, ReadConsistency consistency) {
+        int maxConcurrent = options.getMaxConcurrentBatches();
+        Observable<List<String>> batches = transactionKeys.buffer(options.getPipelineBatchSize());
+        if (options.getRecordFormat() == RecordFormat.BINARY) {
+            return batches.concatMapEager(batch -> getTransactionRecords(batch, consistency), maxConcurrent, maxConcurrent);
+        }
+        return batches.concatMapEager(batch -> getHashes(batch, consistency)
+                .filter(hash -> !hash.isEmpty())
+                .map(Transaction::fromHash)
+                .toList()
+                .onErrorResumeNext(error -> isRedisError(error, WRONG_TYPE_ERROR)
+                        ? Observable.from(batch).concatMap(transactionKey -> readTransaction(transactionKey, consistency)).toList()
+                        : Observable.error(error))
+                .concatMap(Observable::from), maxConcurrent, maxConcurrent);
+    }
+    
+    /**
+     * Converts transaction hashes into binary records, keeping their expiration. Safe to run on a live system
+     * and multiple times, returns amount of converted transactions
+     */
+    public Single<Integer> migrateTransactionRecords() {
+        return scanKeys(TRANSACTION_KEY_PATTERN)
+                .flatMap(transactionKey -> timed(MIGRATE_TRANSACTION_TIMER, connections.execute(commands -> this.<Long>evalScript(
+                        commands, MIGRATE_TRANSACTION_SCRIPT, ScriptOutputType.INTEGER, new String[]{transactionKey})))
+                        .doOnNext(converted -> {
+                            if (converted < 0) {
+                                LOG.warn("Transaction " + transactionKey + " has non-numeric creation time, it's kept as hash");
+                            }
+                        }), BACKFILL_CONCURRENCY)
+                .filter(converted -> converted == 1)
+                .count()
+                .toSingle();
+    }
+    
+    /**
+     * Returns keys of account's transactions created in the given time range (epoch millis, inclusive), oldest first.
+     * Negative limit means no limit
+     */
+    public Observable<String> getAccountTransactionKeys(String accountId, long from, long to, long limit) {
+        return getAccountTransactionKeys(accountId, from, to, limit, ReadConsistency.STRONG);
+    }
+    
+    public Observable<String> getAccountTransactionKeys(String accountId, long from, long to, long limit, ReadConsistency consistency) {
+        String indexKey = getAccountTransactionsKey(accountId);
+        return timed(ZRANGEBYSCORE_TIMER, connections.executeRead(commands -> commands.zrangebyscore(indexKey, from, to, 0, limit), consistency))
+                .map(KeysUtils::getTransactionKey);
+    }
+    
+    /**
+     * Builds account transactions indexes for transactions created before the indexes were introduced.
+     * Pending cross-slot transfers are skipped, they are added to the recipient's index once credited.
+     * Safe to run multiple times, returns amount of processed transactions
+     */
+    public Single<Integer> backfillAccountTransactionIndexes() {
+        return getTransactions(scanKeys(TRANSACTION_KEY_PATTERN), ReadConsistency.STRONG)
+                .flatMap(transaction -> connections.execute(commands -> commands
+                        .zscore(getPendingTransfersKey(transaction.getSenderId()), transaction.getId())
+                        .isEmpty()
+                        .filter(notPending -> notPending)
+                        .concatMap(notPending -> Observable.merge(
+                                commands.zadd(getAccountTransactionsKey(transaction.getSenderId()), transaction.getCreated(), transaction.getId()),
+                                commands.zadd(getAccountTransactionsKey(transaction.getRecipientId()), transaction.getCreated(), transaction.getId()))
+                                .count())), BACKFILL_CONCURRENCY)
+                .count()
+                .toSingle();
     }
     
     public Single<Boolean> deleteAccount(String hashKey) {
-        RedisReactiveCommands<String, String> connection = borrowConnection().reactive();
         // If response is not 0 - hash has been deleted
-        return connection.hdel(hashKey, ID, CREATED, BALANCE)
+        return timed(HDEL_TIMER, connections.execute(commands -> commands.hdel(hashKey, ID, CREATED, BALANCE, VERSION)))
                 .toSingle()
-                .subscribeOn(Schedulers.io())
-                .doAfterTerminate(connection::close)
+                .doOnSuccess(response -> {
+                    if (accountCache != null) {
+                        accountCache.invalidate(hashKey);
+                    }
+                })
                 .map(response -> response != 0);
     }
     
+    /**
+     * Creates account only if it's id is not taken yet, so colliding ids never overwrite existing accounts
+     */
     public Single<Account> createAccount(Account account) {
-        RedisReactiveCommands<String, String> connection = borrowConnection().reactive();
-        return connection.multi()
+        String[] keys = {getAccountKey(account.getId())};
+        String[] args = {account.getId(), String.valueOf(account.getBalance()), account.getCurrency(), String.valueOf(account.getCreated()),
+                String.valueOf(account.getVersion())};
+        return timed(CREATE_ACCOUNT_TIMER, connections.execute(commands -> this.<Long>evalScript(commands, CREATE_ACCOUNT_SCRIPT, ScriptOutputType.INTEGER, keys, args)))
                 .toSingle()
+                .map(created -> {
+                    if (created == 0) {
+                        throw new IllegalStateException("Account with the same id already exists");
+                    }
+                    return account;
+                });
+    }
+    
+    public Single<Transaction> createTransaction(Transaction transaction) {
+        return createTransaction(transaction, null);
+    }
+    
+    /**
+     * Executes transfer at most once per sender and idempotency key: the key is stored atomically with the transfer
+     * and repeated requests return the transaction executed first. Failed transfers don't store the key,
+     * so they can be retried. Null key disables the check
+     */
+    public Single<Transaction> createTransaction(Transaction transaction, String idempotencyKey) {
+        return transfer(transaction, idempotencyKey).flatMap(status -> {
+            if (status == TransferStatus.DUPLICATE) {
+                return getIdempotentTransaction(transaction, idempotencyKey);
+            }
+            if (status == TransferStatus.IN_PROGRESS) {
+                throw new TransferInProgressException();
+            }
+            if (status != TransferStatus.OK) {
+                throw new IllegalStateException(status.getMessage());
+            }
+            invalidateCachedAccounts(transaction);
+            notifyCommitted(transaction);
+            return Single.just(transaction);
+        });
+    }
+    
+    /**
+     * Executes transfers in the given order, pipelining transfer scripts over a single connection.
+     * Redis executes commands of one connection sequentially, so transfers of the same account are applied in submission order.
+     * Failure of a transfer doesn't affect the others, each one gets it's own result
+     */
+    public Observable<TransferResult> createTransactions(List<Transaction> transactions) {
+        Observable<TransferResult> results;
+        // Transfers of a cluster can't be pipelined over a single connection, as their keys belong to different nodes
+        if (options.getTransferMode() == TransferMode.OPTIMISTIC || connections.isCluster()) {
+            results = Observable.from(transactions)
+                    .concatMap(transaction -> transfer(transaction, null)
+                            .map(status -> new TransferResult(transaction, status, null))
+                            .onErrorReturn(error -> new TransferResult(transaction, null, error.getMessage()))
+                            .toObservable());
+        } else {
+            results = connections.executeDedicated(connection -> connection.reactive()
+                    // Script must be cached before pipelining EVALSHA, there is no way to fall back to EVAL in the middle of the batch
+                    .scriptLoad(TRANSFER_SCRIPT.getBody())
+                    .concatMap(digest -> Observable.from(transactions)
+                            .buffer(options.getPipelineBatchSize())
+                            .concatMap(batch -> createTransactionsPipelined(connection, batch))));
+        }
+        return results.doOnNext(result -> {
+            if (result.isSucceeded()) {
+                invalidateCachedAccounts(result.getTransaction());
+                notifyCommitted(result.getTransaction());
+            }
+        });
+    }
+    
+    /**
+     * Listener is notified about transactions committed by this DAO after it has been added
+     */
+    public void addTransactionListener(TransactionListener listener) {
+        transactionListeners.add(listener);
+    }
+    
+    public void flushAll() {
+        connections.execute(commands -> commands.flushall()).toBlocking().single();
+    }
+    
+    /**
+     * Returns accounts with the most optimistic transfer conflicts, empty in script transfer mode
+     */
+    public Map<String, Long> getContendedAccounts(int limit) {
+        return contentionStats.top(limit);
+    }
+    
+    /**
+     * Returns feed of committed transfers or null if it's disabled, see {@link RedisDaoOptions#isTransactionFeedEnabled}
+     */
+    public TransactionFeed getTransactionFeed() {
+        return transactionFeed;
+    }
+    
+    public PoolStats getPoolStats() {
+        return connections.getPoolStats();
+    }
+    
+    /**
+     * Returns hit, miss and eviction counters of account cache or empty stats if cache is disabled
+     */
+    /**
+     * Transactions expire this long after creation, 0 if they are kept forever
+     */
+    public long getTransactionTtlMillis() {
+        return SECONDS.toMillis(options.getTransactionTtlSeconds());
+    }
+    
+    public CacheStats getAccountCacheStats() {
+        return accountCache == null ? CacheStats.empty() : accountCache.stats();
+    }
+    
+    public void close() {
+        metricRegistrations.forEach(Runnable::run);
+        if (accountCache != null) {
+            accountCache.close();
+        }
+        if (pendingTransfersRecovery != null) {
+            pendingTransfersRecovery.unsubscribe();
+        }
+        if (transactionFeed != null) {
+            transactionFeed.close();
+        }
+        connections.close();
+    }
+    
+    /**
+     * Prepares for the first requests: opens pooled connections up to pool's min idle and loads scripts
+     * into Redis script cache, so first transfers don't fall back from EVALSHA to EVAL.
+     * Cluster nodes cache scripts separately, so they are loaded lazily there. Returns amount of loaded scripts
+     */
+    public Single<Integer> warmUp() {
+        Observable<String> scripts = connections.isCluster()
+                ? Observable.empty()
+                : connections.execute(commands -> Observable.from(SCRIPTS).concatMap(script -> commands.scriptLoad(script.getBody())));
+        return Observable.fromCallable(() -> {
+                    connections.preparePool();
+                    return true;
+                })
                 .subscribeOn(Schedulers.io())
-                .doAfterTerminate(connection::close)
-                .flatMap(multi -> {
-                    String accountKey = getAccountKey(account.getId());
-                    //Mapping Account fields to Redis Hash
-                    connection.hset(accountKey, ID, account.getId()).subscribe();
-                    connection.hset(accountKey, BALANCE, String.valueOf(account.getBalance().getNumber().longValueExact())).subscribe();
-                    connection.hset(accountKey, CURRENCY, account.getBalance().getCurrency().getCurrencyCode()).subscribe();
-                    connection.hset(accountKey, CREATED, String.valueOf(account.getCreated())).subscribe();
-                    connection.exec().subscribe();
-                    return connection.hgetall(accountKey)
+                .concatMap(prepared -> scripts)
+                .count()
+                .toSingle();
+    }
+    
+    /**
+     * Changes options of a running DAO. Only volatile options take effect: pool limits, pipelining and transfer retries,
+     * the rest are fixed at creation
+     */
+    public void reconfigure(Consumer<RedisDaoOptions> update) {
+        update.accept(options);
+        connections.configurePool(options);
+    }
+    
+    /**
+     * Completes cross-slot transfers which have been pending for longer than the given time, e.g. because
+     * API instance has died between debit and credit. Runs periodically in cluster mode, returns amount of completed transfers
+     */
+    public Single<Integer> recoverPendingTransfers(long olderThanMillis) {
+        long createdBefore = System.currentTimeMillis() - olderThanMillis;
+        return scanKeys(PENDING_TRANSFERS_KEY_PATTERN)
+                .concatMap(pendingKey -> connections.execute(commands -> commands.zrangebyscore(pendingKey, 0, createdBefore))
+                        .concatMap(transactionId -> readTransaction(getTransactionKey(transactionId), ReadConsistency.STRONG)
+                                .concatMap(transaction -> connections.execute(commands -> commands
+                                        .hget(getPendingIdempotencyKeysKey(transaction.getSenderId()), transactionId)
+                                        .defaultIfEmpty(null)
+                                        .concatMap(storedIdempotencyKey -> creditAndComplete(commands, transaction, storedIdempotencyKey)))
+                                        .doOnNext(status -> {
+                                            // Listeners, like the journal, see transfers completed by recovery same as the rest
+                                            invalidateCachedAccounts(transaction);
+                                            if (status == TransferStatus.OK) {
+                                                notifyCommitted(transaction);
+                                            }
+                                        }))
+                                .switchIfEmpty(Observable.defer(() -> {
+                                    // Pending records don't expire, so it has been removed outside of the API and can't be refunded
+                                    LOG.error("Pending transaction " + transactionId + " is not found, sender can't be refunded");
+                                    return connections.execute(commands -> commands.zrem(pendingKey, transactionId))
+                                            .ignoreElements()
+                                            .map(removed -> (TransferStatus) null);
+                                }))))
+                .count()
+                .toSingle()
+                .doOnSuccess(recovered -> {
+                    if (recovered > 0) {
+                        LOG.info("Recovered " + recovered + " pending transfers");
+                    }
+                });
+    }
+    
+    private Single<TransferStatus> transfer(Transaction transaction, String idempotencyKey) {
+        if (options.getTransferMode() == TransferMode.OPTIMISTIC) {
+            return transferOptimistically(transaction, idempotencyKey);
+        }
+        if (connections.isCluster() && !isSameSlot(transaction)) {
+            return transferTwoPhase(transaction, idempotencyKey);
+        }
+        return transferWithScript(transaction, idempotencyKey);
+    }
+    
+    private Single<TransferStatus> transferWithScript(Transaction transaction, String idempotencyKey) {
+        // Balance checks, debit, credit and transaction hash are executed by the script in one round trip
+        String[] keys = transferScriptKeys(transferKeys(transaction, idempotencyKey));
+        String[] args = transferArgs(transaction);
+        return timed(TRANSFER_TIMER, connections.execute(commands -> this.<Long>evalScript(commands, TRANSFER_SCRIPT, ScriptOutputType.INTEGER, keys, args)))
+                .toSingle()
+                .doOnError(error -> TRANSFER_ERRORS.increment())
+                .map(code -> countTransfer(TransferStatus.fromCode(code)));
+    }
+    
+    /**
+     * Cross-slot transfer: sender is debited and the transfer is registered as pending by one script, then recipient
+     * is credited and the pending transfer is completed, refunding the sender if the recipient can't be credited.
+     * Credit is idempotent, so transfers interrupted between the phases are safely completed by recovery
+     */
+    private Single<TransferStatus> transferTwoPhase(Transaction transaction, String idempotencyKey) {
+        String storedIdempotencyKey = idempotencyKey == null ? null : getIdempotencyKey(transaction.getSenderId(), idempotencyKey);
+        return timed(TRANSFER_TIMER, connections.execute(commands -> debit(commands, transaction, idempotencyKey)
+                .concatMap(status -> status == TransferStatus.OK
+                        ? creditAndComplete(commands, transaction, storedIdempotencyKey)
+                        : Observable.just(status))))
+                .toSingle()
+                .doOnError(error -> TRANSFER_ERRORS.increment())
+                .map(RedisDao::countTransfer);
+    }
+    
+    private Observable<TransferStatus> debit(RedisClusterReactiveCommands<String, String> commands, Transaction transaction, String idempotencyKey) {
+        return this.<Long>evalScript(commands, DEBIT_SCRIPT, ScriptOutputType.INTEGER, debitKeys(transaction, idempotencyKey), transferArgs(transaction))
+                .map(TransferStatus::fromCode);
+    }
+    
+    /**
+     * Stored idempotency key is the Redis key the transfer has been debited with, it's released if the transfer is refunded
+     */
+    private Observable<TransferStatus> creditAndComplete(RedisClusterReactiveCommands<String, String> commands, Transaction transaction,
+                                                        String storedIdempotencyKey) {
+        String[] creditKeys = {
+                getAccountKey(transaction.getRecipientId()),
+                getAccountTransactionsKey(transaction.getRecipientId()),
+                getCreditedTransfersKey(transaction.getRecipientId())
+        };
+        String[] creditArgs = {
+                String.valueOf(transaction.getAmount()),
+                transaction.getCurrency(),
+                transaction.getId(),
+                String.valueOf(transaction.getCreated()),
+                String.valueOf(options.getTransactionTtlSeconds())
+        };
+        List<String> completeKeys = new ArrayList<>(Arrays.asList(
+                getAccountKey(transaction.getSenderId()),
+                getTransactionKey(transaction.getId()),
+                getAccountTransactionsKey(transaction.getSenderId()),
+                getPendingTransfersKey(transaction.getSenderId())));
+        if (storedIdempotencyKey != null) {
+            completeKeys.add(storedIdempotencyKey);
+            completeKeys.add(getPendingIdempotencyKeysKey(transaction.getSenderId()));
+        }
+        return this.<Long>evalScript(commands, CREDIT_SCRIPT, ScriptOutputType.INTEGER, creditKeys, creditArgs)
+                .map(TransferStatus::fromCode)
+                .concatMap(status -> {
+                    String refund = status == TransferStatus.OK ? "0" : String.valueOf(transaction.getAmount());
+                    return this.<Long>evalScript(commands, COMPLETE_SCRIPT, ScriptOutputType.INTEGER, completeKeys.toArray(new String[0]),
+                                                 transaction.getId(), refund, String.valueOf(options.getTransactionTtlSeconds()))
+                            .map(completed -> status);
+                });
+    }
+    
+    private static boolean isSameSlot(Transaction transaction) {
+        return SlotHash.getSlot(getAccountKey(transaction.getSenderId())) == SlotHash.getSlot(getAccountKey(transaction.getRecipientId()));
+    }
+    
+    private Single<TransferStatus> transferOptimistically(Transaction transaction, String idempotencyKey) {
+        // WATCH state belongs to connection, so all attempts are made over the same dedicated one
+        String[] keys = transferKeys(transaction, idempotencyKey);
+        return timed(TRANSFER_TIMER, connections.executeDedicated(connection -> attemptTransfer(connection.async(), transaction, keys, 0).toObservable()))
+                .toSingle()
+                .doOnError(error -> TRANSFER_ERRORS.increment())
+                .map(RedisDao::countTransfer);
+    }
+    
+    /**
+     * Single WATCH/MULTI/EXEC cycle, it's checks are the same as in "transfer.lua".
+     * Conflicting cycle is retried after a backoff until retries are exhausted
+     */
+    private Single<TransferStatus> attemptTransfer(RedisAsyncCommands<String, String> commands, Transaction transaction,
+                                                   String[] keys, int attempt) {
+        boolean idempotent = keys.length > IDEMPOTENCY_KEY_INDEX;
+        return Single.defer(() -> Single.zip(
+                toSingle(idempotent
+                                 ? commands.watch(keys[0], keys[1], keys[IDEMPOTENCY_KEY_INDEX])
+                                 : commands.watch(keys[0], keys[1])),
+                toSingle(commands.hmget(keys[0], ID, BALANCE, CURRENCY)),
+                toSingle(commands.hmget(keys[1], ID, CURRENCY)),
+                toSingle(idempotent ? commands.get(keys[IDEMPOTENCY_KEY_INDEX]) : CompletableFuture.<String>completedFuture(null)),
+                toSingle(commands.hget(keys[2], ID)),
+                (watched, sender, recipient, executedId, existingId) -> {
+                    if (executedId != null) {
+                        return TransferStatus.DUPLICATE;
+                    }
+                    return existingId != null ? TransferStatus.DUPLICATE_ID : checkTransfer(transaction, sender, recipient);
+                }))
+                .flatMap(status -> status == TransferStatus.OK
+                        ? executeTransfer(commands, transaction, keys)
+                        : toSingle(commands.unwatch()).map(unwatched -> status))
+                .flatMap(status -> {
+                    if (status != TransferStatus.CONFLICT) {
+                        return Single.just(status);
+                    }
+                    TRANSFER_CONFLICTS.increment();
+                    contentionStats.recordConflict(transaction.getSenderId());
+                    contentionStats.recordConflict(transaction.getRecipientId());
+                    if (attempt >= options.getTransferMaxRetries()) {
+                        return Single.just(status);
+                    }
+                    TRANSFER_RETRIES.increment();
+                    return Observable.timer(retryDelayMillis(attempt), MILLISECONDS)
                             .toSingle()
-                            .map(Account::fromHash);
+                            .flatMap(tick -> attemptTransfer(commands, transaction, keys, attempt + 1));
                 });
     }
     
-    public Single<Transaction> createTransaction(Transaction transaction) {
-        RedisReactiveCommands<String, String> connection = borrowConnection().reactive();
+    private Single<TransferStatus> executeTransfer(RedisAsyncCommands<String, String> commands, Transaction transaction, String[] keys) {
+        // Queued commands are sent without waiting, replies of the queued ones are returned by EXEC
+        commands.multi();
+        commands.hincrby(keys[0], BALANCE, -transaction.getAmount());
+        commands.hincrby(keys[0], VERSION, 1);
+        commands.hincrby(keys[1], BALANCE, transaction.getAmount());
+        commands.hincrby(keys[1], VERSION, 1);
+        commands.hmset(keys[2], transaction.toHash());
+        commands.zadd(keys[3], transaction.getCreated(), transaction.getId());
+        commands.zadd(keys[4], transaction.getCreated(), transaction.getId());
+        if (options.getTransactionTtlSeconds() > 0) {
+            commands.expire(keys[2], options.getTransactionTtlSeconds());
+            commands.zremrangebyscore(keys[3], Double.NEGATIVE_INFINITY, transactionTtlHorizon(transaction));
+            commands.zremrangebyscore(keys[4], Double.NEGATIVE_INFINITY, transactionTtlHorizon(transaction));
+        }
+        if (keys.length > IDEMPOTENCY_KEY_INDEX) {
+            commands.setex(keys[IDEMPOTENCY_KEY_INDEX], idempotencyKeyTtlSeconds(), transaction.getId());
+        }
+        // EXEC returns null (or no replies) when any of the watched accounts has been modified after WATCH
+        return toSingle(commands.exec())
+                .map(replies -> replies == null || replies.isEmpty() ? TransferStatus.CONFLICT : TransferStatus.OK);
+    }
+    
+    private static TransferStatus checkTransfer(Transaction transaction, List<String> sender, List<String> recipient) {
+        if (sender.get(0) == null || recipient.get(0) == null) {
+            return TransferStatus.UNKNOWN_ACCOUNT;
+        }
+        if (!transaction.getCurrency().equals(sender.get(2)) || !transaction.getCurrency().equals(recipient.get(1))) {
+            return TransferStatus.CURRENCY_MISMATCH;
+        }
+        if (Long.parseLong(sender.get(1)) < transaction.getAmount()) {
+            return TransferStatus.INSUFFICIENT_FUNDS;
+        }
+        return TransferStatus.OK;
+    }
+    
+    /**
+     * Full jitter: random delay up to exponentially growing bound, so conflicting clients don't retry in lockstep
+     */
+    private long retryDelayMillis(int attempt) {
+        long bound = Math.min(options.getTransferRetryMaxDelayMillis(), options.getTransferRetryBaseDelayMillis() << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+    
+    /**
+     * Executes script by it's digest, falling back to EVAL when the script is not cached by Redis yet
+     */
+    private <T> Observable<T> evalScript(RedisClusterReactiveCommands<String, String> connection, LuaScript script,
+                                         ScriptOutputType type, String[] keys, String... args) {
+        return connection.<T>evalsha(script.getDigest(), type, keys, args)
+                .onErrorResumeNext(error -> isNoScriptError(error)
+                        ? connection.<T>eval(script.getBody(), type, keys, args)
+                        : Observable.<T>error(error));
+    }
+    
+    private Observable<TransferResult> createTransactionsPipelined(StatefulRedisConnection<String, String> connection,
+                                                                   List<Transaction> transactions) {
+        RedisAsyncCommands<String, String> commands = connection.async();
+        List<RedisFuture<Long>> codes = new ArrayList<>(transactions.size());
         
-        //Establishing transaction data
-        long transactionAmount = transaction.getAmount().getNumber().longValueExact();
-        String transactionKey = getTransactionKey(transaction.getId());
-        String senderKey = getAccountKey(transaction.getSenderId());
-        String recipientKey = getAccountKey(transaction.getRecipientId());
+        long start = System.nanoTime();
+        connection.setAutoFlushCommands(false);
+        transactions.forEach(transaction -> codes.add(commands.evalsha(TRANSFER_SCRIPT.getDigest(), ScriptOutputType.INTEGER,
+                                                                       transferScriptKeys(transferKeys(transaction)), transferArgs(transaction))));
+        connection.flushCommands();
+        connection.setAutoFlushCommands(true);
         
-        connection.watch(senderKey, recipientKey).subscribe();
-        return Observable.zip(
-                connection.hget(senderKey, BALANCE),
-                connection.hget(senderKey, CURRENCY),
-                connection.hget(recipientKey, CURRENCY),
-                (senderBalance, senderCurrency, recipientCurrency) -> {
-                    //Check that sender balance is enough for transaction
-                    if (Long.valueOf(senderBalance) < transactionAmount) {
-                        throw new IllegalStateException("Not enough funds for transaction");
-                    }
-                    
-                    //Check that both accounts and transaction have the same currency
-                    if (!(Objects.equals(senderCurrency, recipientCurrency) && Objects.equals(senderCurrency, transaction.getAmount().getCurrency().getCurrencyCode()))) {
-                        throw new IllegalStateException("Recipient, sender and transaction currencies must be the same");
-                    }
-                    
-                    return null;
-                })
+        return Observable.range(0, transactions.size())
+                .concatMap(i -> toSingle(codes.get(i))
+                        .map(code -> new TransferResult(transactions.get(i), countTransfer(TransferStatus.fromCode(code)), null))
+                        .onErrorReturn(error -> {
+                            TRANSFER_ERRORS.increment();
+                            return new TransferResult(transactions.get(i), null, error.getMessage());
+                        })
+                        .toObservable())
+                .doOnTerminate(() -> TRANSFER_PIPELINE_TIMER.recordSince(start));
+    }
+    
+    private static String[] transferKeys(Transaction transaction) {
+        return new String[]{
+                getAccountKey(transaction.getSenderId()),
+                getAccountKey(transaction.getRecipientId()),
+                getTransactionKey(transaction.getId()),
+                getAccountTransactionsKey(transaction.getSenderId()),
+                getAccountTransactionsKey(transaction.getRecipientId())
+        };
+    }
+    
+    private static String[] debitKeys(Transaction transaction, String idempotencyKey) {
+        List<String> keys = new ArrayList<>(Arrays.asList(
+                getAccountKey(transaction.getSenderId()),
+                getTransactionKey(transaction.getId()),
+                getAccountTransactionsKey(transaction.getSenderId()),
+                getPendingTransfersKey(transaction.getSenderId())));
+        if (idempotencyKey != null) {
+            keys.add(getIdempotencyKey(transaction.getSenderId(), idempotencyKey));
+            keys.add(getPendingIdempotencyKeysKey(transaction.getSenderId()));
+        }
+        return keys.toArray(new String[0]);
+    }
+    
+    private static String[] transferKeys(Transaction transaction, String idempotencyKey) {
+        String[] keys = transferKeys(transaction);
+        if (idempotencyKey == null) {
+            return keys;
+        }
+        String[] idempotentKeys = Arrays.copyOf(keys, IDEMPOTENCY_KEY_INDEX + 1);
+        idempotentKeys[IDEMPOTENCY_KEY_INDEX] = getIdempotencyKey(transaction.getSenderId(), idempotencyKey);
+        return idempotentKeys;
+    }
+    
+    /**
+     * Feed keys are passed to the transfer script last, after the optional idempotency key
+     */
+    private String[] transferScriptKeys(String[] keys) {
+        if (transactionFeed == null) {
+            return keys;
+        }
+        String[] feedKeys = Arrays.copyOf(keys, keys.length + 2);
+        feedKeys[keys.length] = TRANSACTION_FEED_KEY;
+        feedKeys[keys.length + 1] = TRANSACTION_FEED_SEQUENCE_KEY;
+        return feedKeys;
+    }
+    
+    private String[] transferArgs(Transaction transaction) {
+        return new String[]{
+                String.valueOf(transaction.getAmount()),
+                transaction.getCurrency(),
+                transaction.getId(),
+                String.valueOf(transaction.getCreated()),
+                transaction.getSenderId(),
+                transaction.getRecipientId(),
+                String.valueOf(options.getTransactionTtlSeconds()),
+                options.getRecordFormat().name().toLowerCase(),
+                String.valueOf(idempotencyKeyTtlSeconds()),
+                String.valueOf(transactionFeed == null ? 0 : options.getTransactionFeedMaxLength()),
+                TRANSACTION_FEED_CHANNEL
+        };
+    }
+    
+    /**
+     * Replays read the transaction stored by the key, so the key must not outlive the transaction
+     */
+    private long idempotencyKeyTtlSeconds() {
+        long transactionTtlSeconds = options.getTransactionTtlSeconds();
+        return transactionTtlSeconds > 0 ? Math.min(options.getIdempotencyKeyTtlSeconds(), transactionTtlSeconds) : options.getIdempotencyKeyTtlSeconds();
+    }
+    
+    /**
+     * Index entries older than transaction TTL point to expired hashes, so they are trimmed by transfers
+     */
+    private double transactionTtlHorizon(Transaction transaction) {
+        return transaction.getCreated() - options.getTransactionTtlSeconds() * 1000.0 - 1;
+    }
+    
+    /**
+     * Accounts changed by this node are invalidated before the transfer completes, so it reads it's own writes
+     * without waiting for keyspace notifications. Notifications still invalidate changes made by other nodes
+     */
+    private void invalidateCachedAccounts(Transaction transaction) {
+        if (accountCache != null) {
+            accountCache.invalidate(getAccountKey(transaction.getSenderId()));
+            accountCache.invalidate(getAccountKey(transaction.getRecipientId()));
+        }
+    }
+    
+    private void notifyCommitted(Transaction transaction) {
+        for (TransactionListener listener : transactionListeners) {
+            listener.transactionCommitted(transaction);
+        }
+    }
+    
+    /**
+     * Reads transaction stored by idempotency key. Reusing the key for a different transfer is a client error,
+     * so the stored transaction is returned only when it matches the requested one
+     */
+    private Single<Transaction> getIdempotentTransaction(Transaction transaction, String idempotencyKey) {
+        return connections.execute(commands -> commands.get(getIdempotencyKey(transaction.getSenderId(), idempotencyKey)))
                 .toSingle()
-                .subscribeOn(Schedulers.io())
-                .doAfterTerminate(() -> {
-                    connection.unwatch().subscribe();
-                    connection.close();
-                }).flatMap(x -> {
-                    connection.multi().subscribe();
-                    
-                    //Executing transaction
-                    connection.hincrby(senderKey, BALANCE, -transactionAmount).subscribe();
-                    connection.hincrby(recipientKey, BALANCE, transactionAmount).subscribe();
-                    // Saving transaction info
-                    connection.hset(transactionKey, ID, transaction.getId()).subscribe();
-                    connection.hset(transactionKey, AMOUNT, String.valueOf(transaction.getAmount().getNumber().longValueExact())).subscribe();
-                    connection.hset(transactionKey, CURRENCY, transaction.getAmount().getCurrency().getCurrencyCode()).subscribe();
-                    connection.hset(transactionKey, CREATED, String.valueOf(transaction.getCreated())).subscribe();
-                    connection.hset(transactionKey, SENDER_ID, transaction.getSenderId()).subscribe();
-                    connection.hset(transactionKey, RECIPIENT_ID, transaction.getRecipientId()).subscribe();
-                    connection.exec().subscribe();
-                    
-                    return connection.hgetall(transactionKey)
-                            .toSingle()
-                            .map(Transaction::fromHash);
+                .flatMap(this::getTransaction)
+                .map(executed -> {
+                    if (executed.getAmount() != transaction.getAmount()
+                        || !executed.getCurrency().equals(transaction.getCurrency())
+                        || !executed.getRecipientId().equals(transaction.getRecipientId())) {
+                        throw new IdempotencyKeyReusedException();
+                    }
+                    return executed;
                 });
     }
     
-    public void flushAll() {
-        StatefulRedisConnection<String, String> connection = borrowConnection();
-        connection.sync().flushall();
-        connection.close();
+    private static boolean isNoScriptError(Throwable error) {
+        return isRedisError(error, NO_SCRIPT_ERROR);
+    }
+    
+    private static boolean isRedisError(Throwable error, String prefix) {
+        return error instanceof RedisCommandExecutionException
+               && error.getMessage() != null
+               && error.getMessage().startsWith(prefix);
+    }
+    
+    /**
+     * Tries the configured format first and the other one if the key holds a value of another type.
+     * Emits nothing if the transaction doesn't exist
+     */
+    private Observable<Transaction> readTransaction(String transactionKey, ReadConsistency consistency) {
+        Observable<Transaction> record = readTransactionRecord(transactionKey, consistency);
+        Observable<Transaction> hash = readTransactionHash(transactionKey, consistency);
+        Observable<Transaction> primary = options.getRecordFormat() == RecordFormat.BINARY ? record : hash;
+        Observable<Transaction> secondary = options.getRecordFormat() == RecordFormat.BINARY ? hash : record;
+        return primary.onErrorResumeNext(error -> isRedisError(error, WRONG_TYPE_ERROR) ? secondary : Observable.error(error));
+    }
+    
+    private Observable<Transaction> readTransactionHash(String transactionKey, ReadConsistency consistency) {
+        return getHash(transactionKey, consistency)
+                .toObservable()
+                .filter(hash -> !hash.isEmpty())
+                .map(Transaction::fromHash);
+    }
+    
+    private Observable<Transaction> readTransactionRecord(String transactionKey, ReadConsistency consistency) {
+        return timed(GET_TIMER, Observable.defer(() -> toSingle(connections.binary(consistency).get(transactionKey)).toObservable()))
+                .filter(record -> record != null)
+                .map(TransactionRecord::decode);
+    }
+    
+    /**
+     * MGET replies with nil for missing keys and for keys of other types, the latter are read as hashes
+     */
+    private Observable<Transaction> getTransactionRecords(List<String> transactionKeys, ReadConsistency consistency) {
+        return timed(MGET_TIMER, Observable.defer(() -> toSingle(connections.binary(consistency).mget(transactionKeys.toArray(new String[0]))).toObservable()))
+                .concatMap(records -> Observable.range(0, records.size())
+                        .concatMap(i -> records.get(i) != null
+                                ? Observable.just(TransactionRecord.decode(records.get(i)))
+                                : readTransactionHash(transactionKeys.get(i), consistency)));
+    }
+    
+    private Observable<Map<String, String>> getHashesPipelined(List<String> hashKeys) {
+        return timed(HGETALL_PIPELINE_TIMER, connections.executePipelined(commands -> {
+            List<RedisFuture<Map<String, String>>> hashes = new ArrayList<>(hashKeys.size());
+            hashKeys.forEach(hashKey -> hashes.add(commands.hgetall(hashKey)));
+            return hashes;
+        }));
+    }
+    
+    private Observable<String> scanKeysFrom(String pattern, String cursor, ReadConsistency consistency) {
+        return scanKeys(pattern, cursor, SCAN_BATCH_SIZE, consistency)
+                .toObservable()
+                .concatMap(page -> page.getCursor() == null
+                        ? Observable.from(page.getItems())
+                        : Observable.from(page.getItems()).concatWith(Observable.defer(() -> scanKeysFrom(pattern, page.getCursor(), consistency))));
+    }
+    
+    /**
+     * Records time from subscription till termination, including waiting for a pooled connection
+     */
+    private static <T> Observable<T> timed(Timer timer, Observable<T> source) {
+        return Observable.defer(() -> {
+            long start = System.nanoTime();
+            return source.doOnTerminate(() -> timer.recordSince(start));
+        });
+    }
+    
+    /**
+     * Metrics report the cache of the latest created DAO until it's closed
+     */
+    private static void registerAccountCacheMetrics(AccountCache accountCache, List<Runnable> registrations) {
+        String name = "account_cache_requests_total";
+        String help = "Account cache lookups by result";
+        registrations.add(Metrics.REGISTRY.counterFunction(name, help, () -> accountCache.stats().hitCount(), "result", "hit"));
+        registrations.add(Metrics.REGISTRY.counterFunction(name, help, () -> accountCache.stats().missCount(), "result", "miss"));
+        registrations.add(Metrics.REGISTRY.counterFunction("account_cache_evictions_total", "Accounts evicted from cache",
+                                                           () -> accountCache.stats().evictionCount()));
+    }
+    
+    private static TransferStatus countTransfer(TransferStatus status) {
+        TRANSFER_COUNTERS[status.ordinal()].increment();
+        return status;
+    }
+    
+    private static Timer commandTimer(String command) {
+        return Metrics.REGISTRY.timer(COMMAND_DURATION, COMMAND_DURATION_HELP, "command", command);
     }
     
-    @SneakyThrows
-    private StatefulRedisConnection<String, String> borrowConnection() {
-        return connectionPool.borrowObject();
+    private static Counter[] transferCounters() {
+        TransferStatus[] statuses = TransferStatus.values();
+        Counter[] counters = new Counter[statuses.length];
+        for (TransferStatus status : statuses) {
+            counters[status.ordinal()] = Metrics.REGISTRY.counter("transfers_total", "Executed transfers by result",
+                                                                  "status", status.name().toLowerCase());
+        }
+        return counters;
     }
 }
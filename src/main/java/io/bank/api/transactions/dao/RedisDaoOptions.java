@@ -0,0 +1,102 @@
+package io.bank.api.transactions.dao;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Volatile options can be changed on a running DAO, see {@link RedisDao#reconfigure}
+ */
+@Data
+@Accessors(chain = true)
+public class RedisDaoOptions {
+    /**
+     * Amount of commands written to a connection before flushing them to Redis in one go
+     */
+    private volatile int pipelineBatchSize = 100;
+    
+    /**
+     * Amount of pipelined batches which are allowed to be in flight for a single bulk read
+     */
+    private volatile int maxConcurrentBatches = 4;
+    
+    /**
+     * Amount of long-lived connections shared by all single-command operations, 0 means borrowing from pool for every command
+     */
+    private int sharedConnections = 1;
+    
+    /**
+     * Dedicated connections pool limits, such connections are used for transactions and pipelines only
+     */
+    private volatile int poolMaxTotal = 16;
+    private volatile int poolMaxIdle = 16;
+    private volatile int poolMinIdle = 0;
+    
+    /**
+     * How long to wait for a free pooled connection before failing, negative value means waiting forever
+     */
+    private volatile long poolMaxWaitMillis = 2000;
+    
+    /**
+     * In-process cache of account hashes, invalidated by Redis keyspace notifications
+     */
+    private boolean accountCacheEnabled = true;
+    private long accountCacheSize = 10_000;
+    private long accountCacheTtlMillis = 60_000;
+    
+    /**
+     * Optimistic mode is retried on conflicts with jittered exponential backoff: random delay up to base * 2^attempt, capped by max
+     */
+    private TransferMode transferMode = TransferMode.SCRIPT;
+    private volatile int transferMaxRetries = 10;
+    private long transferRetryBaseDelayMillis = 1;
+    private long transferRetryMaxDelayMillis = 100;
+    
+    /**
+     * Amount of accounts tracked by optimistic transfer conflict statistics
+     */
+    private long contentionStatsSize = 10_000;
+    
+    /**
+     * How long idempotency keys of executed transactions are kept, retries after that execute a new transaction
+     */
+    private long idempotencyKeyTtlSeconds = 86_400;
+    
+    /**
+     * Transaction hashes expire after this time, 0 means they are kept forever.
+     * Expired transactions are still available from the transaction journal, if it's enabled
+     */
+    private long transactionTtlSeconds = 0;
+    
+    /**
+     * Format of new transaction records, records of both formats are always readable.
+     * Binary format is not supported by optimistic transfers
+     */
+    private RecordFormat recordFormat = RecordFormat.HASH;
+    
+    /**
+     * Append committed transfers to the transaction feed, keeping at most max length latest ones.
+     * Feed is appended by the transfer script, so it's not supported by optimistic transfers and in cluster mode
+     */
+    private boolean transactionFeedEnabled = false;
+    private long transactionFeedMaxLength = 100_000;
+    
+    /**
+     * Connect to Redis Cluster instead of a single node. Transfers between accounts of different hash slots are executed
+     * in two phases, transfers pending for longer than the recovery interval are completed periodically
+     */
+    private boolean cluster = false;
+    private long pendingTransferRecoveryMillis = 10_000;
+    
+    /**
+     * Route reads requested with {@link ReadConsistency#EVENTUAL} to replicas. Replicas of a single primary are listed
+     * as URIs, e.g. "redis://10.0.0.2:6379", or discovered by Sentinel, e.g. "redis-sentinel://10.0.0.5:26379#mymaster".
+     * In cluster mode replicas of each master are discovered from cluster topology
+     */
+    private boolean readFromReplicas = false;
+    private List<String> replicaUris = new ArrayList<>();
+    private String sentinelUri;
+    private int replicaReadConnections = 1;
+}
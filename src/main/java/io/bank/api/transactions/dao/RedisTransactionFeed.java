@@ -0,0 +1,170 @@
+package io.bank.api.transactions.dao;
+
+import com.lambdaworks.redis.RedisChannelHandler;
+import com.lambdaworks.redis.RedisConnectionStateListener;
+import com.lambdaworks.redis.ScoredValue;
+import com.lambdaworks.redis.pubsub.RedisPubSubAdapter;
+import com.lambdaworks.redis.pubsub.StatefulRedisPubSubConnection;
+import io.bank.api.transactions.model.FeedEntry;
+import io.bank.api.transactions.storage.TransactionFeed;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import rx.Observable;
+import rx.Single;
+import rx.subjects.PublishSubject;
+import rx.subjects.Subject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static io.bank.api.transactions.utils.KeysUtils.*;
+
+/**
+ * Tails the transaction feed appended by "transfer.lua". A single reader per process is woken up by feed notifications,
+ * reads new entries once and fans them out to all live subscribers, so Redis load doesn't grow with their amount.
+ * Notifications only trigger reads, entries are always read by offset, so lost notifications are healed by the next one
+ */
+class RedisTransactionFeed implements TransactionFeed, RedisConnectionStateListener {
+    private static final Logger LOG = LoggerFactory.getLogger(RedisTransactionFeed.class);
+    private static final int PAGE_SIZE = 500;
+    // Live entries buffered per subscriber, a subscriber falling further behind is failed and has to resume by offset
+    private static final long SUBSCRIBER_BUFFER_SIZE = 10_000;
+    
+    private final RedisDao redisDao;
+    private final RedisConnections<?> connections;
+    private final Subject<FeedEntry, FeedEntry> live = PublishSubject.<FeedEntry>create().toSerialized();
+    private final AtomicBoolean reading = new AtomicBoolean();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile long lastRead;
+    private StatefulRedisPubSubConnection<String, String> notifications;
+    
+    RedisTransactionFeed(RedisDao redisDao, RedisConnections<?> connections) {
+        this.redisDao = redisDao;
+        this.connections = connections;
+    }
+    
+    /**
+     * Starts reading from the current end of the feed, earlier entries are only replayed to subscribers asking for them
+     */
+    void subscribe() {
+        lastRead = currentOffset().toBlocking().value();
+        notifications = connections.connectPubSub();
+        notifications.addListener(new RedisPubSubAdapter<String, String>() {
+            @Override
+            public void message(String channel, String message) {
+                poll();
+            }
+        });
+        notifications.sync().subscribe(TRANSACTION_FEED_CHANNEL);
+        // Entries appended before the subscription has been made
+        poll();
+        LOG.info("Transaction feed subscribed to " + TRANSACTION_FEED_CHANNEL + " from offset " + lastRead);
+    }
+    
+    @Override
+    public Single<Long> currentOffset() {
+        return connections.execute(commands -> commands.get(TRANSACTION_FEED_SEQUENCE_KEY))
+                .map(Long::parseLong)
+                .defaultIfEmpty(0L)
+                .toSingle();
+    }
+    
+    /**
+     * Live entries are buffered from the moment of subscription while stored ones are replayed, overlapping entries
+     * are dropped by offset, so nothing committed in between is lost or repeated.
+     * It relies on both sources emitting entries in offset order: pages are read by ascending offset,
+     * {@link RedisDao#getTransactions} keeps the order of keys and live entries are read by the single reader one page after another
+     */
+    @Override
+    public Observable<FeedEntry> tail(long afterOffset) {
+        return Observable.defer(() -> {
+            AtomicLong last = new AtomicLong(afterOffset);
+            return Observable.concatEager(read(afterOffset, new AtomicLong()), live.onBackpressureBuffer(SUBSCRIBER_BUFFER_SIZE))
+                    .filter(entry -> entry.getOffset() > last.get())
+                    .doOnNext(entry -> last.set(entry.getOffset()));
+        });
+    }
+    
+    void close() {
+        if (notifications != null) {
+            notifications.close();
+        }
+        live.onCompleted();
+    }
+    
+    /**
+     * Notifications published while connection was down are lost, so entries appended meanwhile are read on reconnect
+     */
+    @Override
+    public void onRedisConnected(RedisChannelHandler<?, ?> connection) {
+        if (notifications != null) {
+            poll();
+        }
+    }
+    
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+    }
+    
+    @Override
+    public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+    }
+    
+    /**
+     * Notifications arriving while a read is in flight are coalesced into a single next read
+     */
+    private void poll() {
+        pending.set(true);
+        if (!reading.compareAndSet(false, true)) {
+            return;
+        }
+        pending.set(false);
+        AtomicLong cursor = new AtomicLong(lastRead);
+        read(lastRead, cursor).subscribe(live::onNext,
+                                         error -> {
+                                             LOG.error("Transaction feed read failed", error);
+                                             finishRead(cursor.get());
+                                         },
+                                         () -> finishRead(cursor.get()));
+    }
+    
+    private void finishRead(long offset) {
+        lastRead = offset;
+        reading.set(false);
+        if (pending.get()) {
+            poll();
+        }
+    }
+    
+    /**
+     * Reads entries page by page, cursor is advanced by every page including entries of expired transactions
+     */
+    private Observable<FeedEntry> read(long afterOffset, AtomicLong cursor) {
+        return connections.execute(commands -> commands.zrangebyscoreWithScores(TRANSACTION_FEED_KEY, "(" + afterOffset, "+inf", 0, PAGE_SIZE))
+                .toList()
+                .concatMap(page -> {
+                    if (page.isEmpty()) {
+                        return Observable.empty();
+                    }
+                    long pageEnd = (long) page.get(page.size() - 1).score;
+                    Observable<FeedEntry> entries = readEntries(page).doOnCompleted(() -> cursor.set(pageEnd));
+                    return page.size() < PAGE_SIZE
+                            ? entries
+                            : entries.concatWith(Observable.defer(() -> read(pageEnd, cursor)));
+                });
+    }
+    
+    private Observable<FeedEntry> readEntries(List<ScoredValue<String>> page) {
+        Map<String, Long> offsets = new HashMap<>(page.size() * 2);
+        page.forEach(value -> offsets.put(value.value, (long) value.score));
+        List<String> transactionKeys = page.stream()
+                .map(value -> getTransactionKey(value.value))
+                .collect(Collectors.toList());
+        return redisDao.getTransactions(transactionKeys, ReadConsistency.STRONG)
+                .map(transaction -> new FeedEntry(offsets.get(transaction.getId()), transaction));
+    }
+}
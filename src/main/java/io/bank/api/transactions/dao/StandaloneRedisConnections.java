@@ -0,0 +1,124 @@
+package io.bank.api.transactions.dao;
+
+import com.lambdaworks.redis.RedisClient;
+import com.lambdaworks.redis.ReadFrom;
+import com.lambdaworks.redis.RedisConnectionStateListener;
+import com.lambdaworks.redis.RedisURI;
+import com.lambdaworks.redis.ScanArgs;
+import com.lambdaworks.redis.api.StatefulRedisConnection;
+import com.lambdaworks.redis.cluster.api.async.RedisClusterAsyncCommands;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import com.lambdaworks.redis.masterslave.MasterSlave;
+import com.lambdaworks.redis.masterslave.StatefulRedisMasterSlaveConnection;
+import com.lambdaworks.redis.cluster.api.rx.RedisClusterReactiveCommands;
+import com.lambdaworks.redis.pubsub.StatefulRedisPubSubConnection;
+import io.bank.api.transactions.model.Page;
+import rx.Observable;
+import rx.Single;
+import rx.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Connections to a single Redis server. Replica reads are routed by Master/Slave connections
+ * to replicas either listed explicitly or discovered by Sentinel
+ */
+class StandaloneRedisConnections extends RedisConnections<StatefulRedisConnection<String, String>> {
+    private static final String JMX_NAME_PREFIX = "redis-pool";
+    // Unsigned 64-bit cursor, Redis rejects anything else
+    private static final Pattern CURSOR_PATTERN = Pattern.compile("\\d{1,20}");
+    
+    private final RedisClient redisClient;
+    private final StatefulRedisConnection<String, byte[]> binaryConnection;
+    private final StatefulRedisConnection<String, byte[]> binaryReadConnection;
+    
+    StandaloneRedisConnections(RedisURI redisURI, RedisDaoOptions options) {
+        this(RedisClient.create(redisURI), redisURI, options);
+    }
+    
+    private StandaloneRedisConnections(RedisClient redisClient, RedisURI redisURI, RedisDaoOptions options) {
+        super(redisClient::connect, () -> connectReplicas(redisClient, new Utf8StringCodec(), redisURI, options), options, JMX_NAME_PREFIX);
+        this.redisClient = redisClient;
+        this.binaryConnection = redisClient.connect(new StringByteArrayCodec());
+        this.binaryReadConnection = options.isReadFromReplicas()
+                ? connectReplicas(redisClient, new StringByteArrayCodec(), redisURI, options)
+                : null;
+    }
+    
+    @Override
+    <T> Observable<T> executeDedicated(Func1<StatefulRedisConnection<String, String>, Observable<T>> commands) {
+        return Observable.using(this::borrow, commands, StatefulRedisConnection::close, true);
+    }
+    
+    @Override
+    Single<Page<String>> scan(String pattern, String cursor, int limit, ReadConsistency consistency) {
+        if (!CURSOR_PATTERN.matcher(cursor).matches()) {
+            return Single.error(new IllegalArgumentException("Invalid cursor: " + cursor));
+        }
+        // Master/Slave connection keeps reading from the same replica while it's available, so cursor stays valid
+        return executeRead(commands -> commands.scan(scanCursor(cursor), ScanArgs.Builder.matches(pattern).limit(limit)), consistency)
+                .toSingle()
+                .map(scan -> new Page<>(scan.getKeys(), scan.isFinished() ? null : scan.getCursor()));
+    }
+    
+    @Override
+    boolean isCluster() {
+        return false;
+    }
+    
+    @Override
+    StatefulRedisPubSubConnection<String, String> connectPubSub() {
+        return redisClient.connectPubSub();
+    }
+    
+    @Override
+    void addConnectionListener(RedisConnectionStateListener listener) {
+        redisClient.addListener(listener);
+    }
+    
+    @Override
+    RedisClusterReactiveCommands<String, String> reactive(StatefulRedisConnection<String, String> connection) {
+        return connection.reactive();
+    }
+    
+    @Override
+    RedisClusterAsyncCommands<String, String> async(StatefulRedisConnection<String, String> connection) {
+        return connection.async();
+    }
+    
+    @Override
+    RedisClusterAsyncCommands<String, byte[]> binary(ReadConsistency consistency) {
+        return isReadFromReplica(consistency) ? binaryReadConnection.async() : binaryConnection.async();
+    }
+    
+    @Override
+    void shutdownClient() {
+        binaryConnection.close();
+        if (binaryReadConnection != null) {
+            binaryReadConnection.close();
+        }
+        redisClient.shutdown();
+    }
+    
+    /**
+     * Master/Slave connection discovers node roles itself, so the primary is listed together with replicas.
+     * Falls back to the primary while no replica is available
+     */
+    private static <V> StatefulRedisConnection<String, V> connectReplicas(RedisClient redisClient, RedisCodec<String, V> codec,
+                                                                          RedisURI redisURI, RedisDaoOptions options) {
+        StatefulRedisMasterSlaveConnection<String, V> connection;
+        if (options.getSentinelUri() != null) {
+            connection = MasterSlave.connect(redisClient, codec, RedisURI.create(options.getSentinelUri()));
+        } else {
+            List<RedisURI> nodes = new ArrayList<>();
+            nodes.add(redisURI);
+            options.getReplicaUris().forEach(uri -> nodes.add(RedisURI.create(uri)));
+            connection = MasterSlave.connect(redisClient, codec, nodes);
+        }
+        connection.setReadFrom(ReadFrom.SLAVE_PREFERRED);
+        return connection;
+    }
+}
@@ -0,0 +1,36 @@
+package io.bank.api.transactions.dao;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UTF-8 string keys and raw byte array values, for binary records
+ */
+class StringByteArrayCodec implements RedisCodec<String, byte[]> {
+    private static final Utf8StringCodec KEY_CODEC = new Utf8StringCodec();
+    private static final byte[] EMPTY = new byte[0];
+    
+    @Override
+    public String decodeKey(ByteBuffer bytes) {
+        return KEY_CODEC.decodeKey(bytes);
+    }
+    
+    @Override
+    public byte[] decodeValue(ByteBuffer bytes) {
+        byte[] value = new byte[bytes.remaining()];
+        bytes.get(value);
+        return value;
+    }
+    
+    @Override
+    public ByteBuffer encodeKey(String key) {
+        return KEY_CODEC.encodeKey(key);
+    }
+    
+    @Override
+    public ByteBuffer encodeValue(byte[] value) {
+        return ByteBuffer.wrap(value == null ? EMPTY : value);
+    }
+}
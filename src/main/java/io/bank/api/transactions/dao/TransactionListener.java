@@ -0,0 +1,12 @@
+package io.bank.api.transactions.dao;
+
+import io.bank.api.transactions.model.Transaction;
+
+/**
+ * Notified about every transaction committed by {@link RedisDao} or another
+ * {@link io.bank.api.transactions.storage.LedgerStorage}, on Redis client or storage threads,
+ * so implementations must not block
+ */
+public interface TransactionListener {
+    void transactionCommitted(Transaction transaction);
+}
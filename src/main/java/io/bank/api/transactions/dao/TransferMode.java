@@ -0,0 +1,16 @@
+package io.bank.api.transactions.dao;
+
+/**
+ * How transfers are executed by {@link RedisDao}
+ */
+public enum TransferMode {
+    /**
+     * Single round trip of "transfer.lua" script, Redis executes it atomically so there is no contention overhead
+     */
+    SCRIPT,
+    
+    /**
+     * WATCH/MULTI/EXEC cycle retried on conflicts, for Redis setups where Lua scripting is disabled
+     */
+    OPTIMISTIC
+}
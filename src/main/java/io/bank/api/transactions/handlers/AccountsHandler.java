@@ -1,56 +1,73 @@
 package io.bank.api.transactions.handlers;
 
-import io.bank.api.transactions.dao.RedisDao;
+import io.bank.api.transactions.dao.ReadConsistency;
 import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Page;
 import io.bank.api.transactions.model.dto.AccountDTO;
 import io.bank.api.transactions.model.dto.CreateAccountRequest;
+import io.bank.api.transactions.storage.LedgerStorage;
 import io.bank.api.transactions.utils.Converter;
+import io.bank.api.transactions.utils.JsonArrayStream;
+import io.vertx.rxjava.core.buffer.Buffer;
 import io.vertx.rxjava.ext.web.RoutingContext;
+import rx.Scheduler;
 
-import static io.bank.api.transactions.utils.KeysUtils.ACCOUNT_KEY_PATTERN;
-import static io.bank.api.transactions.utils.KeysUtils.getAccountKey;
 import static java.net.HttpURLConnection.*;
+import static java.util.stream.Collectors.toList;
 
 public class AccountsHandler {
     static final String ACCOUNT_ID = "accountId";
     
-    private final RedisDao redisDao;
+    private final LedgerStorage storage;
+    private final Scheduler scheduler;
     
-    public AccountsHandler(RedisDao redisDao) {
-        this.redisDao = redisDao;
+    public AccountsHandler(LedgerStorage storage, Scheduler scheduler) {
+        this.storage = storage;
+        this.scheduler = scheduler;
     }
     
     public void getAccount(RoutingContext context) {
         String accountId = context.pathParam(ACCOUNT_ID);
-        if (accountId == null) {
+        ReadConsistency consistency = Consistency.get(context);
+        if (accountId == null || consistency == null) {
             context.fail(HTTP_BAD_REQUEST);
+            return;
         }
-        redisDao.getHash(getAccountKey(accountId))
+        storage.getAccount(accountId, consistency)
+                .observeOn(scheduler)
                 .doOnEach(account -> {
                     if (account == null) {
                         context.fail(HTTP_NOT_FOUND);
                     }
                 })
-                .map(Account::fromHash)
-                .map(AccountDTO::fromAccount)
-                .map(Converter::convertToJson)
-                .subscribe(context.response()::end, context::fail);
+                .subscribe(account -> {
+                    Compression.disable(context);
+                    ETags.end(context, ETags.of(account), () -> AccountDTO.fromAccount(account));
+                }, context::fail);
     }
     
     public void getAllAccounts(RoutingContext context) {
-        redisDao.getKeys(ACCOUNT_KEY_PATTERN)
-                .map(redisDao::getHash)
-                .map(accountSingle -> accountSingle.toBlocking().value())
-                .map(Account::fromHash)
-                .map(AccountDTO::fromAccount)
-                .toList()
-                .subscribe(accounts -> {
-                    if (accounts.isEmpty()) {
-                        context.fail(HTTP_NOT_FOUND);
-                    } else {
-                        context.response().end(Converter.convertToJson(accounts));
-                    }
-                });
+        ReadConsistency consistency = Consistency.get(context);
+        if (consistency == null) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        if (!Pagination.isRequested(context)) {
+            JsonArrayStream.stream(storage.getAccounts(consistency)
+                    .observeOn(scheduler)
+                    .map(AccountDTO::fromAccount), context);
+            return;
+        }
+        int limit = Pagination.getLimit(context);
+        if (limit < 0) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        storage.getAccounts(Pagination.getCursor(context), limit, consistency)
+                .observeOn(scheduler)
+                .subscribe(page -> ETags.end(context, ETags.ofAccounts(page), () -> new Page<>(
+                        page.getItems().stream().map(AccountDTO::fromAccount).collect(toList()), page.getCursor())),
+                           error -> Pagination.fail(context, error));
     }
     
     public void deleteAccount(RoutingContext context) {
@@ -58,7 +75,8 @@ public class AccountsHandler {
         if (accountId == null) {
             context.fail(HTTP_BAD_REQUEST);
         }
-        redisDao.deleteAccount(getAccountKey(accountId))
+        storage.deleteAccount(accountId)
+                .observeOn(scheduler)
                 .subscribe(deleted -> {
                     if (deleted) {
                         context.response().setStatusCode(HTTP_NO_CONTENT).end();
@@ -69,19 +87,21 @@ public class AccountsHandler {
     }
     
     public void createAccount(RoutingContext context) {
-        String accountRequestBody = context.getBodyAsString();
+        Buffer accountRequestBody = context.getBody();
         if (accountRequestBody == null) {
             context.response().setStatusCode(HTTP_BAD_REQUEST).end();
+            return;
         }
         CreateAccountRequest createAccountRequest = Converter.convertFromJson(accountRequestBody, CreateAccountRequest.class);
-        redisDao.createAccount(Account.fromRequest(createAccountRequest))
+        storage.createAccount(Account.fromRequest(createAccountRequest))
+                .observeOn(scheduler)
                 .doOnEach(createdAccount -> {
                     if (createdAccount == null) {
                         context.fail(HTTP_INTERNAL_ERROR);
                     }
                 })
                 .map(AccountDTO::fromAccount)
-                .map(Converter::convertToJson)
+                .map(Converter::convertToBuffer)
                 .subscribe(createdAccount -> context.response().end(createdAccount), context::fail);
     }
 }
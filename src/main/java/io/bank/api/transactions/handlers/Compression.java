@@ -0,0 +1,16 @@
+package io.bank.api.transactions.handlers;
+
+import io.vertx.rxjava.ext.web.RoutingContext;
+
+import static io.vertx.core.http.HttpHeaders.CONTENT_ENCODING;
+import static io.vertx.core.http.HttpHeaders.IDENTITY;
+
+class Compression {
+    /**
+     * Responses are compressed when it's enabled on HTTP server and accepted by client. Single entities are
+     * a few hundred bytes, so they are sent as is: Vert.x skips compression of responses marked with "identity" encoding
+     */
+    static void disable(RoutingContext context) {
+        context.response().putHeader(CONTENT_ENCODING.toString(), IDENTITY.toString());
+    }
+}
@@ -0,0 +1,24 @@
+package io.bank.api.transactions.handlers;
+
+import io.bank.api.transactions.dao.ReadConsistency;
+import io.vertx.rxjava.ext.web.RoutingContext;
+
+class Consistency {
+    static final String CONSISTENCY = "consistency";
+    
+    /**
+     * Reads may be served by replicas unless client asked for "?consistency=strong", returns null if the value is unknown
+     */
+    static ReadConsistency get(RoutingContext context) {
+        String consistency = context.request().getParam(CONSISTENCY);
+        if (consistency == null) {
+            return ReadConsistency.EVENTUAL;
+        }
+        for (ReadConsistency value : ReadConsistency.values()) {
+            if (value.name().equalsIgnoreCase(consistency)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
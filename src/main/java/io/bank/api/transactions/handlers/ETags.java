@@ -0,0 +1,100 @@
+package io.bank.api.transactions.handlers;
+
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Page;
+import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.utils.Converter;
+import io.vertx.rxjava.ext.web.RoutingContext;
+
+import java.util.function.Supplier;
+
+import static io.vertx.core.http.HttpHeaders.ETAG;
+import static io.vertx.core.http.HttpHeaders.IF_NONE_MATCH;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+
+/**
+ * Entity tags are derived from account versions and immutable transaction ids, so they are computed
+ * without serializing the response. Pages are tagged with a hash of their items' tags and the next cursor
+ */
+class ETags {
+    private static final String WEAK_PREFIX = "W/";
+    private static final String ANY = "*";
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    static String of(Account account) {
+        return quote(account.getId() + "-" + account.getVersion());
+    }
+    
+    static String of(Transaction transaction) {
+        return quote(transaction.getId());
+    }
+    
+    static String ofAccounts(Page<Account> page) {
+        long hash = FNV_OFFSET_BASIS;
+        for (Account account : page.getItems()) {
+            hash = hash(hash, account.getId());
+            hash = hash(hash, account.getVersion());
+        }
+        return quote("p-" + Long.toHexString(hash(hash, String.valueOf(page.getCursor()))));
+    }
+    
+    static String ofTransactions(Page<Transaction> page) {
+        long hash = FNV_OFFSET_BASIS;
+        for (Transaction transaction : page.getItems()) {
+            hash = hash(hash, transaction.getId());
+        }
+        return quote("p-" + Long.toHexString(hash(hash, String.valueOf(page.getCursor()))));
+    }
+    
+    /**
+     * Answers with 304 and no body if client's copy is up to date, otherwise writes the body serialized to JSON.
+     * Either way response carries the current tag
+     */
+    static void end(RoutingContext context, String etag, Supplier<Object> body) {
+        context.response().putHeader(ETAG.toString(), etag);
+        if (matches(context.request().getHeader(IF_NONE_MATCH.toString()), etag)) {
+            context.response().setStatusCode(HTTP_NOT_MODIFIED).end();
+            return;
+        }
+        context.response().end(Converter.convertToBuffer(body.get()));
+    }
+    
+    /**
+     * Weak comparison, as required for If-None-Match: "W/" prefixes are ignored
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith(WEAK_PREFIX)) {
+                tag = tag.substring(WEAK_PREFIX.length());
+            }
+            if (tag.equals(etag) || tag.equals(ANY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+    
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // Separator, so that "ab" + "c" and "a" + "bc" differ
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+    
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash ^ (value >>> (i * 8) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
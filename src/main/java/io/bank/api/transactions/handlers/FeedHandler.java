@@ -0,0 +1,91 @@
+package io.bank.api.transactions.handlers;
+
+import io.bank.api.transactions.model.FeedEntry;
+import io.bank.api.transactions.model.dto.TransactionDTO;
+import io.bank.api.transactions.storage.LedgerStorage;
+import io.bank.api.transactions.storage.TransactionFeed;
+import io.bank.api.transactions.utils.EventStream;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Single;
+
+import static io.bank.api.transactions.handlers.AccountsHandler.ACCOUNT_ID;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_NOT_IMPLEMENTED;
+
+/**
+ * Streams committed transactions as server-sent events with feed offsets as event ids. Without an offset only
+ * transactions committed after subscription are sent, reconnecting clients resume after the last received event
+ */
+public class FeedHandler {
+    private static final String OFFSET = "offset";
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final String TRANSACTION_EVENT = "transaction";
+    
+    private final LedgerStorage storage;
+    private final Scheduler scheduler;
+    
+    public FeedHandler(LedgerStorage storage, Scheduler scheduler) {
+        this.storage = storage;
+        this.scheduler = scheduler;
+    }
+    
+    public void getTransactionFeed(RoutingContext context) {
+        tail(context, null);
+    }
+    
+    /**
+     * Account feed is filtered from the global one, so replaying it from an old offset reads all transactions since then
+     */
+    public void getAccountTransactionFeed(RoutingContext context) {
+        String accountId = context.pathParam(ACCOUNT_ID);
+        if (accountId == null) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        tail(context, accountId);
+    }
+    
+    private void tail(RoutingContext context, String accountId) {
+        TransactionFeed feed = storage.getTransactionFeed();
+        if (feed == null) {
+            context.fail(HTTP_NOT_IMPLEMENTED);
+            return;
+        }
+        Long offset;
+        try {
+            offset = getOffset(context);
+        } catch (NumberFormatException e) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        // Stream is started once the offset is known, so transactions committed after the status line has been received are sent
+        (offset == null ? feed.currentOffset() : Single.just(offset))
+                .observeOn(scheduler)
+                .subscribe(after -> stream(context, feed.tail(after), accountId), context::fail);
+    }
+    
+    private void stream(RoutingContext context, Observable<FeedEntry> entries, String accountId) {
+        if (accountId != null) {
+            entries = entries.filter(entry -> accountId.equals(entry.getTransaction().getSenderId())
+                                              || accountId.equals(entry.getTransaction().getRecipientId()));
+        }
+        // Compressing stream buffers events until a compressed block is filled
+        Compression.disable(context);
+        EventStream.stream(entries.observeOn(scheduler), context, TRANSACTION_EVENT,
+                           entry -> String.valueOf(entry.getOffset()),
+                           entry -> TransactionDTO.fromTransaction(entry.getTransaction()));
+    }
+    
+    /**
+     * Browsers reconnect to the same URL, so "Last-Event-ID" sent on reconnect wins over the initial "?offset="
+     */
+    private static Long getOffset(RoutingContext context) {
+        String offset = context.request().getHeader(LAST_EVENT_ID);
+        if (offset == null) {
+            offset = context.request().getParam(OFFSET);
+        }
+        return offset == null ? null : Long.parseLong(offset);
+    }
+}
@@ -0,0 +1,52 @@
+package io.bank.api.transactions.handlers;
+
+import io.vertx.rxjava.ext.web.RoutingContext;
+
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+
+class Pagination {
+    static final String CURSOR = "cursor";
+    static final String LIMIT = "limit";
+    static final String INITIAL_CURSOR = "0";
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+    
+    /**
+     * Paginated response is returned only if client asked for it, otherwise whole list is streamed
+     */
+    static boolean isRequested(RoutingContext context) {
+        return context.request().getParam(CURSOR) != null || context.request().getParam(LIMIT) != null;
+    }
+    
+    /**
+     * Storage engines reject malformed or stale cursors with {@link IllegalArgumentException}, it's a client error
+     */
+    static void fail(RoutingContext context, Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            context.fail(HTTP_BAD_REQUEST);
+        } else {
+            context.fail(error);
+        }
+    }
+    
+    static String getCursor(RoutingContext context) {
+        String cursor = context.request().getParam(CURSOR);
+        return cursor == null || cursor.isEmpty() ? INITIAL_CURSOR : cursor;
+    }
+    
+    /**
+     * Returns requested page size or -1 if it is not a valid positive number
+     */
+    static int getLimit(RoutingContext context) {
+        String limit = context.request().getParam(LIMIT);
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            return value > 0 ? Math.min(value, MAX_LIMIT) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
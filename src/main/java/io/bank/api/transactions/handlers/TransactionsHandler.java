@@ -1,94 +1,275 @@
 package io.bank.api.transactions.handlers;
 
-import io.bank.api.transactions.dao.RedisDao;
+import io.bank.api.transactions.dao.ReadConsistency;
+import io.bank.api.transactions.journal.TransactionJournal;
+import io.bank.api.transactions.model.IdempotencyKeyReusedException;
+import io.bank.api.transactions.model.Page;
 import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.model.TransferInProgressException;
+import io.bank.api.transactions.model.TransferResult;
+import io.bank.api.transactions.model.TransferStatus;
+import io.bank.api.transactions.model.dto.BatchTransactionResponse;
+import io.bank.api.transactions.model.dto.BatchTransactionResultDTO;
 import io.bank.api.transactions.model.dto.CreateTransactionRequest;
 import io.bank.api.transactions.model.dto.TransactionDTO;
+import io.bank.api.transactions.storage.LedgerStorage;
 import io.bank.api.transactions.utils.Converter;
+import io.bank.api.transactions.utils.JsonArrayStream;
+import io.vertx.rxjava.core.buffer.Buffer;
 import io.vertx.rxjava.ext.web.RoutingContext;
+import rx.Observable;
+import rx.Scheduler;
 
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static io.bank.api.transactions.handlers.AccountsHandler.ACCOUNT_ID;
-import static io.bank.api.transactions.utils.KeysUtils.TRANSACTION_KEY_PATTERN;
-import static io.bank.api.transactions.utils.KeysUtils.getTransactionKey;
 import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_CONFLICT;
+import static java.net.HttpURLConnection.HTTP_ENTITY_TOO_LARGE;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.util.stream.Collectors.toList;
 
 public class TransactionsHandler {
     private static final String TRANSACTION_ID = "transactionId";
+    private static final String FROM = "from";
+    private static final String TO = "to";
+    private static final long NO_LIMIT = -1;
+    private static final int MAX_BATCH_SIZE = 100_000;
+    private static final String OK = TransferStatus.OK.name();
+    private static final String INVALID_REQUEST = "INVALID_REQUEST";
+    private static final String FAILED = "FAILED";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
     
-    private final RedisDao redisDao;
+    private final LedgerStorage storage;
+    private final TransactionJournal journal;
+    private final Scheduler scheduler;
     
-    public TransactionsHandler(RedisDao redisDao) {
-        this.redisDao = redisDao;
+    /**
+     * Journal is optional, without it history queries are served by scanning the storage
+     */
+    public TransactionsHandler(LedgerStorage storage, TransactionJournal journal, Scheduler scheduler) {
+        this.storage = storage;
+        this.journal = journal;
+        this.scheduler = scheduler;
     }
     
     public void getTransaction(RoutingContext context) {
         String transactionId = context.pathParam(TRANSACTION_ID);
-        if (transactionId == null) {
+        ReadConsistency consistency = Consistency.get(context);
+        if (transactionId == null || consistency == null) {
             context.response().setStatusCode(HTTP_BAD_REQUEST).end();
+            return;
         }
-        redisDao.getHash(getTransactionKey(transactionId))
+        storage.getTransaction(transactionId, consistency)
+                .observeOn(scheduler)
                 .doOnEach(transaction -> {
                     if (transaction == null) {
                         context.fail(HTTP_NOT_FOUND);
                     }
                 })
-                .map(Transaction::fromHash)
-                .map(TransactionDTO::fromTransaction)
-                .map(Converter::convertToJson)
-                .subscribe(transaction -> context.response().end(transaction), context::fail);
+                .subscribe(transaction -> {
+                    Compression.disable(context);
+                    ETags.end(context, ETags.of(transaction), () -> TransactionDTO.fromTransaction(transaction));
+                }, context::fail);
     }
     
     public void getAllTransactions(RoutingContext context) {
-        redisDao.getKeys(TRANSACTION_KEY_PATTERN)
-                .map(redisDao::getHash)
-                .map(transactionSingle -> transactionSingle.toBlocking().value())
-                .map(Transaction::fromHash)
-                .map(TransactionDTO::fromTransaction)
-                .toList()
-                .subscribe(transactions -> {
-                    if (transactions.isEmpty()) {
-                        context.fail(HTTP_NOT_FOUND);
-                    } else {
-                        context.response().end(Converter.convertToJson(transactions));
-                    }
-                }, context::fail);
+        ReadConsistency consistency = Consistency.get(context);
+        if (consistency == null) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        if (context.request().getParam(FROM) != null || context.request().getParam(TO) != null) {
+            getTransactionsHistory(context, consistency);
+            return;
+        }
+        if (!Pagination.isRequested(context)) {
+            JsonArrayStream.stream(storage.getTransactions(consistency)
+                    .observeOn(scheduler)
+                    .map(TransactionDTO::fromTransaction), context);
+            return;
+        }
+        int limit = Pagination.getLimit(context);
+        if (limit < 0) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        storage.getTransactions(Pagination.getCursor(context), limit, consistency)
+                .observeOn(scheduler)
+                .subscribe(page -> ETags.end(context, ETags.ofTransactions(page), () -> new Page<>(
+                        page.getItems().stream().map(TransactionDTO::fromTransaction).collect(toList()), page.getCursor())),
+                           error -> Pagination.fail(context, error));
     }
     
     public void getAccountsTransactions(RoutingContext context) {
         String accountId = context.pathParam(ACCOUNT_ID);
-        if (accountId == null) {
+        ReadConsistency consistency = Consistency.get(context);
+        if (accountId == null || consistency == null) {
             context.fail(HTTP_BAD_REQUEST);
+            return;
         }
         
-        redisDao.getKeys(TRANSACTION_KEY_PATTERN)
-                .map(redisDao::getHash)
-                .map(transactionSingle -> transactionSingle.toBlocking().value())
-                .map(Transaction::fromHash)
-                .filter(transaction -> Objects.equals(accountId, transaction.getSenderId()) ||
-                                       Objects.equals(accountId, transaction.getRecipientId()))
-                .map(TransactionDTO::fromTransaction)
-                .toList()
-                .subscribe(transactions -> {
-                    if (transactions.isEmpty()) {
-                        context.fail(HTTP_NOT_FOUND);
-                    } else {
-                        context.response().end(Converter.convertToJson(transactions));
-                    }
-                }, context::fail);
+        long from = getTimestampParam(context, FROM, 0);
+        long to = getTimestampParam(context, TO, Long.MAX_VALUE);
+        boolean limited = context.request().getParam(Pagination.LIMIT) != null;
+        int limit = Pagination.getLimit(context);
+        if (from < 0 || to < 0 || limit < 0) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        
+        JsonArrayStream.stream(storage.getAccountTransactions(accountId, from, to, limited ? limit : NO_LIMIT, consistency)
+                .observeOn(scheduler)
+                .map(TransactionDTO::fromTransaction), context);
     }
     
     public void createTransaction(RoutingContext context) {
-        String transactionRequestBody = context.getBodyAsString();
+        Buffer transactionRequestBody = context.getBody();
         if (transactionRequestBody == null) {
             context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        String idempotencyKey = context.request().getHeader(IDEMPOTENCY_KEY);
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
         }
         CreateTransactionRequest createTransactionRequest = Converter.convertFromJson(transactionRequestBody, CreateTransactionRequest.class);
         Transaction transaction = Transaction.fromRequest(createTransactionRequest);
-        redisDao.createTransaction(transaction)
-                .map(TransactionDTO::fromTransaction)
-                .subscribe(executedTransaction -> context.response().end(Converter.convertToJson(executedTransaction)), context::fail);
+        storage.createTransaction(transaction, idempotencyKey)
+                .observeOn(scheduler)
+                .subscribe(executedTransaction -> {
+                    // Transaction executed by the first request with the same key has another id
+                    if (!executedTransaction.getId().equals(transaction.getId())) {
+                        context.response().putHeader(IDEMPOTENT_REPLAYED, Boolean.TRUE.toString());
+                    }
+                    context.response().end(Converter.convertToBuffer(TransactionDTO.fromTransaction(executedTransaction)));
+                }, error -> {
+                    if (error instanceof IdempotencyKeyReusedException) {
+                        context.fail(HTTP_UNPROCESSABLE_ENTITY);
+                    } else if (error instanceof TransferInProgressException) {
+                        context.fail(HTTP_CONFLICT);
+                    } else {
+                        context.fail(error);
+                    }
+                });
+    }
+    
+    /**
+     * Streams transactions created in the requested time range, optionally only the ones of "accountId" account.
+     * Journal holds only transactions committed by this instance, so it serves only the part of the range
+     * which has already expired in storage, the rest is read from storage shared by all instances
+     */
+    private void getTransactionsHistory(RoutingContext context, ReadConsistency consistency) {
+        long from = getTimestampParam(context, FROM, 0);
+        long to = getTimestampParam(context, TO, Long.MAX_VALUE);
+        if (from < 0 || to < 0) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        String accountId = context.request().getParam(ACCOUNT_ID);
+        long ttlMillis = storage.getTransactionTtlMillis();
+        long expiredBefore = journal != null && ttlMillis > 0 ? System.currentTimeMillis() - ttlMillis : 0;
+        Observable<Transaction> expired = from < expiredBefore
+                ? journal.getTransactions(from, Math.min(to, expiredBefore - 1), accountId)
+                : Observable.empty();
+        long storedFrom = Math.max(from, expiredBefore);
+        Observable<Transaction> stored = to >= storedFrom
+                ? storage.getTransactions(consistency)
+                        .filter(transaction -> transaction.getCreated() >= storedFrom && transaction.getCreated() <= to)
+                        .filter(transaction -> accountId == null
+                                               || accountId.equals(transaction.getSenderId())
+                                               || accountId.equals(transaction.getRecipientId()))
+                : Observable.empty();
+        JsonArrayStream.stream(expired.concatWith(stored)
+                .observeOn(scheduler)
+                .map(TransactionDTO::fromTransaction), context);
+    }
+    
+    /**
+     * Accepts JSON array or newline-delimited JSON of transaction requests and returns results in the same order.
+     * Invalid items and failed transfers are reported per item and don't affect the rest of the batch
+     */
+    public void createTransactions(RoutingContext context) {
+        Buffer transactionsRequestBody = context.getBody();
+        if (transactionsRequestBody == null) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        List<CreateTransactionRequest> requests;
+        try {
+            requests = Converter.convertFromJsonSequence(transactionsRequestBody, CreateTransactionRequest.class);
+        } catch (Exception e) {
+            context.fail(HTTP_BAD_REQUEST);
+            return;
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            context.fail(HTTP_ENTITY_TOO_LARGE);
+            return;
+        }
+        
+        BatchTransactionResultDTO[] results = new BatchTransactionResultDTO[requests.size()];
+        List<Transaction> transactions = new ArrayList<>(requests.size());
+        List<Integer> indexes = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                transactions.add(Transaction.fromRequest(requests.get(i)));
+                indexes.add(i);
+            } catch (RuntimeException e) {
+                results[i] = BatchTransactionResultDTO.builder()
+                        .index(i)
+                        .status(INVALID_REQUEST)
+                        .error(String.valueOf(e.getMessage()))
+                        .build();
+            }
+        }
+        
+        storage.createTransactions(transactions)
+                .observeOn(scheduler)
+                .toList()
+                .map(transferResults -> {
+                    for (int i = 0; i < transferResults.size(); i++) {
+                        results[indexes.get(i)] = toBatchResult(indexes.get(i), transferResults.get(i));
+                    }
+                    int succeeded = (int) Arrays.stream(results).filter(result -> OK.equals(result.getStatus())).count();
+                    return BatchTransactionResponse.builder()
+                            .succeeded(succeeded)
+                            .failed(results.length - succeeded)
+                            .results(Arrays.asList(results))
+                            .build();
+                })
+                .map(Converter::convertToBuffer)
+                .subscribe(context.response()::end, context::fail);
+    }
+    
+    private static BatchTransactionResultDTO toBatchResult(int index, TransferResult transferResult) {
+        BatchTransactionResultDTO.BatchTransactionResultDTOBuilder result = BatchTransactionResultDTO.builder().index(index);
+        if (transferResult.getStatus() == null) {
+            return result.status(FAILED).error(transferResult.getError()).build();
+        }
+        if (!transferResult.isSucceeded()) {
+            return result.status(transferResult.getStatus().name()).error(transferResult.getStatus().getMessage()).build();
+        }
+        return result.status(OK).transaction(TransactionDTO.fromTransaction(transferResult.getTransaction())).build();
+    }
+    
+    /**
+     * Returns epoch millis timestamp from request params, default value if it's absent or -1 if it's invalid
+     */
+    private static long getTimestampParam(RoutingContext context, String name, long defaultValue) {
+        String value = context.request().getParam(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 }
@@ -0,0 +1,23 @@
+package io.bank.api.transactions.journal;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class JournalOptions {
+    /**
+     * Directory of segment files, created if it doesn't exist
+     */
+    private String directory;
+    
+    /**
+     * Capacity of a single memory-mapped segment file, which is preallocated on creation
+     */
+    private int recordsPerSegment = 1_048_576;
+    
+    /**
+     * Amount of records covered by a single entry of sparse time index
+     */
+    private int indexInterval = 1024;
+}
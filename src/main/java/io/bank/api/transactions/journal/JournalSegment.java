@@ -0,0 +1,187 @@
+package io.bank.api.transactions.journal;
+
+import io.bank.api.transactions.model.Transaction;
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.bank.api.transactions.utils.CurrencyUtils.getCurrencyCode;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Memory-mapped file of fixed-width transaction records. Records are appended by a single writer thread
+ * and can be read concurrently: record bytes are written before the volatile size, so readers never see partial records.
+ * Sparse index keeps min and max creation time of every block of records, records are appended in commit order,
+ * which is only roughly the creation order, so blocks are matched by ranges rather than binary searched
+ */
+class JournalSegment {
+    static final int ID_SIZE = 16;
+    
+    private static final int CURRENCY_SIZE = 4;
+    // created, amount, id, senderId, recipientId, currency, commit marker
+    private static final int RECORD_SIZE = 8 + 8 + 3 * ID_SIZE + CURRENCY_SIZE + 4;
+    private static final int COMMITTED = 0x54584E31;
+    private static final int MARKER_OFFSET = RECORD_SIZE - 4;
+    
+    @Getter
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int indexInterval;
+    private final long[] blockMinCreated;
+    private final long[] blockMaxCreated;
+    private volatile int size;
+    
+    @SneakyThrows
+    private JournalSegment(Path path, int capacity, int indexInterval) {
+        this.path = path;
+        this.capacity = capacity;
+        this.indexInterval = indexInterval;
+        this.channel = FileChannel.open(path, CREATE, READ, WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        int blocks = (capacity + indexInterval - 1) / indexInterval;
+        this.blockMinCreated = new long[blocks];
+        this.blockMaxCreated = new long[blocks];
+    }
+    
+    /**
+     * Opens existing segment or creates a new one. Records are recovered up to the first one without commit marker,
+     * which is the record being written at the moment of crash
+     */
+    static JournalSegment open(Path path, int capacity, int indexInterval) {
+        JournalSegment segment = new JournalSegment(path, capacity, indexInterval);
+        int recovered = 0;
+        while (recovered < capacity && segment.buffer.getInt(recovered * RECORD_SIZE + MARKER_OFFSET) == COMMITTED) {
+            segment.index(recovered, segment.buffer.getLong(recovered * RECORD_SIZE));
+            recovered++;
+        }
+        segment.size = recovered;
+        return segment;
+    }
+    
+    /**
+     * Returns false when segment is full, must be called by a single writer thread only
+     */
+    boolean append(Transaction transaction) {
+        int index = size;
+        if (index >= capacity) {
+            return false;
+        }
+        int offset = index * RECORD_SIZE;
+        buffer.putLong(offset, transaction.getCreated());
+        buffer.putLong(offset + 8, transaction.getAmount());
+        putString(buffer, offset + 16, transaction.getId(), ID_SIZE);
+        putString(buffer, offset + 16 + ID_SIZE, transaction.getSenderId(), ID_SIZE);
+        putString(buffer, offset + 16 + 2 * ID_SIZE, transaction.getRecipientId(), ID_SIZE);
+        putString(buffer, offset + 16 + 3 * ID_SIZE, transaction.getCurrency(), CURRENCY_SIZE);
+        buffer.putInt(offset + MARKER_OFFSET, COMMITTED);
+        index(index, transaction.getCreated());
+        size = index + 1;
+        return true;
+    }
+    
+    /**
+     * Returns numbers of blocks which may contain records created in the given range
+     */
+    List<Integer> findBlocks(long from, long to) {
+        int blocks = (size + indexInterval - 1) / indexInterval;
+        List<Integer> found = new ArrayList<>();
+        for (int block = 0; block < blocks; block++) {
+            if (blockMinCreated[block] <= to && blockMaxCreated[block] >= from) {
+                found.add(block);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Reads records of the block created in the given range, optionally only the ones sent or received by the account
+     */
+    List<Transaction> readBlock(int block, long from, long to, String accountId) {
+        // Duplicate has it's own position, so concurrent readers don't interfere
+        ByteBuffer records = buffer.duplicate();
+        int end = Math.min(size, (block + 1) * indexInterval);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int index = block * indexInterval; index < end; index++) {
+            int offset = index * RECORD_SIZE;
+            long created = records.getLong(offset);
+            if (created < from || created > to) {
+                continue;
+            }
+            String senderId = getString(records, offset + 16 + ID_SIZE, ID_SIZE);
+            String recipientId = getString(records, offset + 16 + 2 * ID_SIZE, ID_SIZE);
+            if (accountId != null && !accountId.equals(senderId) && !accountId.equals(recipientId)) {
+                continue;
+            }
+            transactions.add(new Transaction(
+                    getString(records, offset + 16, ID_SIZE),
+                    created,
+                    records.getLong(offset + 8),
+                    getCurrencyCode(getString(records, offset + 16 + 3 * ID_SIZE, CURRENCY_SIZE)),
+                    senderId,
+                    recipientId));
+        }
+        return transactions;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    boolean isFull() {
+        return size >= capacity;
+    }
+    
+    @SneakyThrows
+    void close() {
+        buffer.force();
+        channel.close();
+    }
+    
+    static boolean fits(Transaction transaction) {
+        return fits(transaction.getId()) && fits(transaction.getSenderId()) && fits(transaction.getRecipientId());
+    }
+    
+    private void index(int index, long created) {
+        int block = index / indexInterval;
+        if (index % indexInterval == 0) {
+            blockMinCreated[block] = created;
+            blockMaxCreated[block] = created;
+        } else {
+            blockMinCreated[block] = Math.min(blockMinCreated[block], created);
+            blockMaxCreated[block] = Math.max(blockMaxCreated[block], created);
+        }
+    }
+    
+    private static boolean fits(String id) {
+        return id.length() <= ID_SIZE;
+    }
+    
+    /**
+     * Ids and currency codes are ASCII, shorter values are padded with zeros
+     */
+    private static void putString(ByteBuffer buffer, int offset, String value, int size) {
+        for (int i = 0; i < size; i++) {
+            buffer.put(offset + i, i < value.length() ? (byte) value.charAt(i) : 0);
+        }
+    }
+    
+    private static String getString(ByteBuffer buffer, int offset, int size) {
+        byte[] bytes = new byte[size];
+        int length = 0;
+        while (length < size && (bytes[length] = buffer.get(offset + length)) != 0) {
+            length++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+}
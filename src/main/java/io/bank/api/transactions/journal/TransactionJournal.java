@@ -0,0 +1,110 @@
+package io.bank.api.transactions.journal;
+
+import io.bank.api.transactions.dao.TransactionListener;
+import io.bank.api.transactions.model.Transaction;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.Shareable;
+import lombok.SneakyThrows;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only history of committed transactions, which outlives transaction hashes expired in Redis.
+ * Transactions are appended asynchronously by a single writer thread, so Redis client threads are never blocked by disk.
+ * Records written right before a crash may be lost, Redis remains the source of truth for balances
+ */
+public class TransactionJournal implements TransactionListener, Shareable {
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionJournal.class);
+    private static final String SEGMENT_FILE_FORMAT = "segment-%010d.journal";
+    private static final String SEGMENT_FILE_GLOB = "segment-*.journal";
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    
+    private final Path directory;
+    private final JournalOptions options;
+    private final List<JournalSegment> segments = new CopyOnWriteArrayList<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transaction-journal-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private TransactionJournal(JournalOptions options) {
+        this.options = options;
+        this.directory = Paths.get(options.getDirectory());
+    }
+    
+    /**
+     * Opens journal in the configured directory, recovering existing segments
+     */
+    @SneakyThrows
+    public static TransactionJournal open(JournalOptions options) {
+        TransactionJournal journal = new TransactionJournal(options);
+        Files.createDirectories(journal.directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(journal.directory, SEGMENT_FILE_GLOB)) {
+            paths.forEach(files::add);
+        }
+        // Segment numbers are zero-padded, so names are sorted in creation order
+        Collections.sort(files);
+        files.forEach(file -> journal.segments.add(JournalSegment.open(file, options.getRecordsPerSegment(), options.getIndexInterval())));
+        LOG.info("Transaction journal opened in " + journal.directory + " with " + files.size() + " segments");
+        return journal;
+    }
+    
+    @Override
+    public void transactionCommitted(Transaction transaction) {
+        writer.execute(() -> append(transaction));
+    }
+    
+    /**
+     * Streams journaled transactions created in the given range (epoch millis, inclusive) in commit order,
+     * optionally only the ones sent or received by the account. Segments are read block by block on IO threads
+     */
+    public Observable<Transaction> getTransactions(long from, long to, String accountId) {
+        return Observable.defer(() -> Observable.from(segments))
+                .concatMap(segment -> Observable.from(segment.findBlocks(from, to))
+                        .concatMap(block -> Observable.defer(() -> Observable.from(segment.readBlock(block, from, to, accountId)))))
+                .subscribeOn(Schedulers.io());
+    }
+    
+    /**
+     * Returns amount of journaled transactions
+     */
+    public long size() {
+        return segments.stream().mapToLong(JournalSegment::size).sum();
+    }
+    
+    @SneakyThrows
+    public void close() {
+        writer.shutdown();
+        writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        segments.forEach(JournalSegment::close);
+    }
+    
+    private void append(Transaction transaction) {
+        if (!JournalSegment.fits(transaction)) {
+            LOG.warn("Transaction " + transaction.getId() + " has ids longer than " + JournalSegment.ID_SIZE + " characters and can't be journaled");
+            return;
+        }
+        JournalSegment current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (current == null || current.isFull()) {
+            current = JournalSegment.open(directory.resolve(String.format(SEGMENT_FILE_FORMAT, segments.size())),
+                                          options.getRecordsPerSegment(), options.getIndexInterval());
+            segments.add(current);
+        }
+        current.append(transaction);
+    }
+}
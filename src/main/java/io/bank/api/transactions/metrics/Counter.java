@@ -0,0 +1,22 @@
+package io.bank.api.transactions.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter, increments are lock-free and don't allocate
+ */
+public class Counter {
+    private final LongAdder value = new LongAdder();
+    
+    public void increment() {
+        value.increment();
+    }
+    
+    public void add(long amount) {
+        value.add(amount);
+    }
+    
+    public long get() {
+        return value.sum();
+    }
+}
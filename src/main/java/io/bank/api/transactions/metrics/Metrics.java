@@ -0,0 +1,8 @@
+package io.bank.api.transactions.metrics;
+
+/**
+ * Process-wide registry, metrics of all verticle instances are aggregated in it
+ */
+public class Metrics {
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+}
@@ -0,0 +1,136 @@
+package io.bank.api.transactions.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds named metrics and renders them in Prometheus text exposition format.
+ * Metrics are looked up on registration only, hot paths keep references to them
+ */
+public class MetricsRegistry {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_IN_SECOND = 1_000_000_000.0;
+    private static final String COUNTER = "counter";
+    private static final String GAUGE = "gauge";
+    private static final String SUMMARY = "summary";
+    
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+    
+    /**
+     * Labels are given as name-value pairs, e.g. counter("transfers_total", "Transfers", "status", "ok")
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, COUNTER).metrics.computeIfAbsent(renderLabels(labels), l -> new Counter());
+    }
+    
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, help, SUMMARY).metrics.computeIfAbsent(renderLabels(labels), l -> new Timer());
+    }
+    
+    /**
+     * Registers a value read on every scrape, the latest registration of a name and labels is reported.
+     * Returned action unregisters the value, so the previous registration, if it's still there, is reported again
+     */
+    public Runnable gauge(String name, String help, LongSupplier value, String... labels) {
+        return register(family(name, help, GAUGE), renderLabels(labels), value);
+    }
+    
+    /**
+     * Same as gauge, but for values which are monotonic counters maintained elsewhere
+     */
+    public Runnable counterFunction(String name, String help, LongSupplier value, String... labels) {
+        return register(family(name, help, COUNTER), renderLabels(labels), value);
+    }
+    
+    public String scrape() {
+        StringBuilder output = new StringBuilder();
+        for (Family family : new TreeMap<>(families).values()) {
+            output.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            output.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> metric : new TreeMap<>(family.metrics).entrySet()) {
+                render(output, family.name, metric.getKey(), metric.getValue());
+            }
+        }
+        return output.toString();
+    }
+    
+    private static Runnable register(Family family, String labels, LongSupplier value) {
+        Suppliers suppliers = (Suppliers) family.metrics.computeIfAbsent(labels, l -> new Suppliers());
+        suppliers.values.addLast(value);
+        return () -> suppliers.values.removeLastOccurrence(value);
+    }
+    
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(name, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        }
+        return family;
+    }
+    
+    private static void render(StringBuilder output, String name, String labels, Object metric) {
+        if (metric instanceof Counter) {
+            sample(output, name, labels, ((Counter) metric).get());
+        } else if (metric instanceof Suppliers) {
+            LongSupplier value = ((Suppliers) metric).values.peekLast();
+            if (value != null) {
+                sample(output, name, labels, value.getAsLong());
+            }
+        } else if (metric instanceof Timer) {
+            Timer timer = (Timer) metric;
+            Histogram interval = timer.intervalHistogram();
+            for (double quantile : QUANTILES) {
+                String quantileLabels = appendLabel(labels, "quantile", String.valueOf(quantile));
+                sample(output, name, quantileLabels, interval.getValueAtPercentile(quantile * 100) / NANOS_IN_SECOND);
+            }
+            sample(output, name + "_count", labels, timer.getCount());
+            sample(output, name + "_sum", labels, timer.getTotalNanos() / NANOS_IN_SECOND);
+        }
+    }
+    
+    private static void sample(StringBuilder output, String name, String labels, Object value) {
+        output.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+    
+    private static String renderLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name-value pairs");
+        }
+        String rendered = "";
+        for (int i = 0; i < labels.length; i += 2) {
+            rendered = appendLabel(rendered, labels[i], labels[i + 1]);
+        }
+        return rendered;
+    }
+    
+    private static String appendLabel(String labels, String name, String value) {
+        String label = name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+    
+    private static class Suppliers {
+        private final Deque<LongSupplier> values = new ConcurrentLinkedDeque<>();
+    }
+    
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<>();
+        
+        private Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.bank.api.transactions.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram backed by HdrHistogram {@link Recorder}: recording is wait-free and doesn't allocate,
+ * all the work is done by the scraping side. Quantiles are calculated over the interval since the previous scrape
+ */
+public class Timer {
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    
+    private final Recorder recorder = new Recorder(MAX_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private Histogram interval;
+    
+    public void record(long nanos) {
+        recorder.recordValue(Math.min(Math.max(nanos, 0), MAX_TRACKABLE_NANOS));
+        count.increment();
+        totalNanos.add(nanos);
+    }
+    
+    /**
+     * Returns time in nanos passed since the given {@link System#nanoTime()} value, after recording it
+     */
+    public long recordSince(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        record(elapsed);
+        return elapsed;
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+    
+    /**
+     * Swaps recording interval and returns histogram of values recorded since the previous call.
+     * Returned histogram is reused by the next call, so it must not be kept
+     */
+    synchronized Histogram intervalHistogram() {
+        interval = recorder.getIntervalHistogram(interval);
+        return interval;
+    }
+}
@@ -5,37 +5,50 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.javamoney.moneta.Money;
 
-import javax.money.Monetary;
-import java.time.LocalDateTime;
 import java.util.Map;
 
 import static io.bank.api.transactions.utils.CommonUtils.getShortId;
+import static io.bank.api.transactions.utils.CommonUtils.parseTimestamp;
+import static io.bank.api.transactions.utils.CurrencyUtils.getCurrencyCode;
+import static io.bank.api.transactions.utils.CurrencyUtils.validateCurrencyCode;
 import static io.bank.api.transactions.utils.KeysUtils.*;
 
+/**
+ * Balance is kept in minor currency units and creation time in epoch millis,
+ * so mapping from Redis hash doesn't involve any BigDecimal or date parsing.
+ * Version is incremented by every balance change, it's exposed as ETag. Accounts created before versioning have version 0
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Account {
+    public static final long INITIAL_VERSION = 1;
+    
     private String id;
-    private LocalDateTime created;
-    private Money balance;
+    private long created;
+    private long balance;
+    private String currency;
+    private long version;
     
     public static Account fromRequest(CreateAccountRequest request) {
         return Account.builder()
                 .id(getShortId())
-                .created(LocalDateTime.now())
-                .balance(Money.of(request.getBalance(), Monetary.getCurrency(request.getCurrencyCode())))
+                .created(System.currentTimeMillis())
+                .balance(request.getBalance())
+                .currency(validateCurrencyCode(request.getCurrencyCode()))
+                .version(INITIAL_VERSION)
                 .build();
     }
     
     public static Account fromHash(Map<String, String> hash) {
-        return Account.builder()
-                .id(hash.get(ID))
-                .created(LocalDateTime.parse(hash.get(CREATED)))
-                .balance(Money.of(Long.valueOf(hash.get(BALANCE)), Monetary.getCurrency(hash.get(CURRENCY))))
-                .build();
+        String version = hash.get(VERSION);
+        return new Account(
+                hash.get(ID),
+                parseTimestamp(hash.get(CREATED)),
+                Long.parseLong(hash.get(BALANCE)),
+                getCurrencyCode(hash.get(CURRENCY)),
+                version == null ? 0 : Long.parseLong(version));
     }
 }
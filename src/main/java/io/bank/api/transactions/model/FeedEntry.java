@@ -0,0 +1,16 @@
+package io.bank.api.transactions.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Transaction appended to the transaction feed, offsets grow with every committed transfer
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedEntry {
+    private long offset;
+    private Transaction transaction;
+}
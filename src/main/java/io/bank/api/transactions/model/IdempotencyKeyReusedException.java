@@ -0,0 +1,10 @@
+package io.bank.api.transactions.model;
+
+/**
+ * Idempotency key has been used for a transfer with another amount, currency or recipient, it's a client error
+ */
+public class IdempotencyKeyReusedException extends IllegalStateException {
+    public IdempotencyKeyReusedException() {
+        super("Idempotency key has already been used for another transaction");
+    }
+}
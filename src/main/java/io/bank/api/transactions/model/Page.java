@@ -0,0 +1,18 @@
+package io.bank.api.transactions.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Single page of cursor-based listing. Cursor is null when there are no more pages
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Page<T> {
+    private List<T> items;
+    private String cursor;
+}
@@ -5,43 +5,59 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.javamoney.moneta.Money;
 
-import javax.money.Monetary;
-import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 
-import static io.bank.api.transactions.utils.CommonUtils.getShortId;
+import static io.bank.api.transactions.utils.CommonUtils.parseTimestamp;
+import static io.bank.api.transactions.utils.CurrencyUtils.getCurrencyCode;
+import static io.bank.api.transactions.utils.CurrencyUtils.validateCurrencyCode;
 import static io.bank.api.transactions.utils.KeysUtils.*;
 
+/**
+ * Amount is kept in minor currency units and creation time in epoch millis, same as in {@link Account}
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Transaction {
     private String id;
-    private LocalDateTime created;
-    private Money amount;
+    private long created;
+    private long amount;
+    private String currency;
     private String senderId;
     private String recipientId;
     
     public static Transaction fromRequest(CreateTransactionRequest request) {
         return Transaction.builder()
-                .id(getShortId())
-                .created(LocalDateTime.now())
-                .amount(Money.of(request.getAmount(), Monetary.getCurrency(request.getCurrencyCode())))
+                .id(newTransactionId(request.getSenderAccountId()))
+                .created(System.currentTimeMillis())
+                .amount(request.getAmount())
+                .currency(validateCurrencyCode(request.getCurrencyCode()))
                 .senderId(request.getSenderAccountId())
                 .recipientId(request.getRecipientAccountId())
                 .build();
     }
     
     public static Transaction fromHash(Map<String, String> hash) {
-        return Transaction.builder()
-                .id(hash.get(ID))
-                .created(LocalDateTime.parse(hash.get(CREATED)))
-                .amount(Money.of(Long.valueOf(hash.get(AMOUNT)), Monetary.getCurrency(hash.get(CURRENCY))))
-                .senderId(hash.get(SENDER_ID))
-                .recipientId(hash.get(RECIPIENT_ID))
-                .build();
+        return new Transaction(
+                hash.get(ID),
+                parseTimestamp(hash.get(CREATED)),
+                Long.parseLong(hash.get(AMOUNT)),
+                getCurrencyCode(hash.get(CURRENCY)),
+                hash.get(SENDER_ID),
+                hash.get(RECIPIENT_ID));
+    }
+    
+    public Map<String, String> toHash() {
+        Map<String, String> hash = new HashMap<>();
+        hash.put(ID, id);
+        hash.put(CREATED, String.valueOf(created));
+        hash.put(AMOUNT, String.valueOf(amount));
+        hash.put(CURRENCY, currency);
+        hash.put(SENDER_ID, senderId);
+        hash.put(RECIPIENT_ID, recipientId);
+        return hash;
     }
 }
@@ -0,0 +1,80 @@
+package io.bank.api.transactions.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary Redis value of a transaction, an alternative to the hash written by {@link Transaction#toHash()}.
+ * Layout (big-endian): version byte, flags byte, created epoch millis (8 bytes), amount (8 bytes), currency code (3 bytes),
+ * then id, sender id and recipient id, each prefixed by it's length in one byte.
+ * Lua scripts pack the same layout with "struct.pack", so it must be changed together with them under a new version
+ */
+public class TransactionRecord {
+    public static final byte VERSION = 1;
+    /**
+     * Set while cross-slot transfer is not completed yet, same as "pending" field of a hash
+     */
+    public static final byte PENDING = 1;
+    
+    private static final int HEADER_SIZE = 1 + 1 + 8 + 8 + 3;
+    private static final int CURRENCY_LENGTH = 3;
+    private static final int MAX_ID_LENGTH = 255;
+    
+    public static byte[] encode(Transaction transaction) {
+        return encode(transaction, (byte) 0);
+    }
+    
+    public static byte[] encode(Transaction transaction, byte flags) {
+        byte[] id = ascii(transaction.getId());
+        byte[] senderId = ascii(transaction.getSenderId());
+        byte[] recipientId = ascii(transaction.getRecipientId());
+        byte[] currency = transaction.getCurrency().getBytes(StandardCharsets.US_ASCII);
+        if (currency.length != CURRENCY_LENGTH) {
+            throw new IllegalArgumentException("Currency code must have 3 letters: " + transaction.getCurrency());
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + 3 + id.length + senderId.length + recipientId.length)
+                .put(VERSION)
+                .put(flags)
+                .putLong(transaction.getCreated())
+                .putLong(transaction.getAmount())
+                .put(currency);
+        putId(record, id);
+        putId(record, senderId);
+        putId(record, recipientId);
+        return record.array();
+    }
+    
+    public static Transaction decode(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported transaction record version: " + version);
+        }
+        // Flags are not a part of the model
+        buffer.get();
+        long created = buffer.getLong();
+        long amount = buffer.getLong();
+        String currency = new String(record, buffer.position(), CURRENCY_LENGTH, StandardCharsets.US_ASCII);
+        buffer.position(buffer.position() + CURRENCY_LENGTH);
+        return new Transaction(getId(buffer), created, amount, currency, getId(buffer), getId(buffer));
+    }
+    
+    private static byte[] ascii(String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Id is too long for transaction record: " + id);
+        }
+        return bytes;
+    }
+    
+    private static void putId(ByteBuffer record, byte[] id) {
+        record.put((byte) id.length).put(id);
+    }
+    
+    private static String getId(ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        String id = new String(buffer.array(), buffer.position(), length, StandardCharsets.US_ASCII);
+        buffer.position(buffer.position() + length);
+        return id;
+    }
+}
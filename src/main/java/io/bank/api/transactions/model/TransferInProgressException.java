@@ -0,0 +1,10 @@
+package io.bank.api.transactions.model;
+
+/**
+ * Transfer with the same idempotency key is still being executed and may yet be refunded, so the request should be retried
+ */
+public class TransferInProgressException extends IllegalStateException {
+    public TransferInProgressException() {
+        super(TransferStatus.IN_PROGRESS.getMessage());
+    }
+}
@@ -0,0 +1,21 @@
+package io.bank.api.transactions.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of a single transfer within a batch. Status is null if transfer failed before script execution
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+    private Transaction transaction;
+    private TransferStatus status;
+    private String error;
+    
+    public boolean isSucceeded() {
+        return status == TransferStatus.OK;
+    }
+}
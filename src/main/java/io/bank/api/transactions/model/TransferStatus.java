@@ -0,0 +1,34 @@
+package io.bank.api.transactions.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of transfer script execution, codes are the same as returned by "transfer.lua"
+ */
+@Getter
+@AllArgsConstructor
+public enum TransferStatus {
+    OK(0, "Transaction executed"),
+    UNKNOWN_ACCOUNT(1, "Sender or recipient account does not exist"),
+    CURRENCY_MISMATCH(2, "Recipient, sender and transaction currencies must be the same"),
+    INSUFFICIENT_FUNDS(3, "Not enough funds for transaction"),
+    // Never returned by the script, only optimistic transfers can be aborted
+    CONFLICT(4, "Accounts have been concurrently modified, transaction was aborted"),
+    DUPLICATE(5, "Transaction with the same idempotency key has already been executed"),
+    DUPLICATE_ID(6, "Transaction with the same id already exists"),
+    // Cross-slot or cross-shard transfer with the same idempotency key is debited but not completed yet
+    IN_PROGRESS(7, "Transaction with the same idempotency key is in progress");
+    
+    private final long code;
+    private final String message;
+    
+    public static TransferStatus fromCode(long code) {
+        for (TransferStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transfer status code: " + code);
+    }
+}
@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import static io.bank.api.transactions.utils.CommonUtils.formatTimestamp;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,9 +21,9 @@ public class AccountDTO {
     public static AccountDTO fromAccount(Account account) {
         return AccountDTO.builder()
                 .id(account.getId())
-                .created(account.getCreated().toString())
-                .currency(account.getBalance().getCurrency().getCurrencyCode())
-                .balance(account.getBalance().getNumber().longValueExact())
+                .created(formatTimestamp(account.getCreated()))
+                .currency(account.getCurrency())
+                .balance(account.getBalance())
                 .build();
     }
 }
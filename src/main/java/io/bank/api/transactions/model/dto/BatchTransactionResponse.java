@@ -0,0 +1,18 @@
+package io.bank.api.transactions.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransactionResponse {
+    private int succeeded;
+    private int failed;
+    private List<BatchTransactionResultDTO> results;
+}
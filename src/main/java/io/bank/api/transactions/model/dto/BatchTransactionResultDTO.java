@@ -0,0 +1,17 @@
+package io.bank.api.transactions.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransactionResultDTO {
+    private int index;
+    private String status;
+    private String error;
+    private TransactionDTO transaction;
+}
@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import static io.bank.api.transactions.utils.CommonUtils.formatTimestamp;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,9 +23,9 @@ public class TransactionDTO {
     public static TransactionDTO fromTransaction(Transaction transaction) {
         return TransactionDTO.builder()
                 .id(transaction.getId())
-                .created(transaction.getCreated().toString())
-                .amount(transaction.getAmount().getNumber().longValueExact())
-                .currency(transaction.getAmount().getCurrency().getCurrencyCode())
+                .created(formatTimestamp(transaction.getCreated()))
+                .amount(transaction.getAmount())
+                .currency(transaction.getCurrency())
                 .senderId(transaction.getSenderId())
                 .recipientId(transaction.getRecipientId())
                 .build();
@@ -0,0 +1,96 @@
+package io.bank.api.transactions.storage;
+
+import io.bank.api.transactions.dao.ReadConsistency;
+import io.bank.api.transactions.dao.TransactionListener;
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Page;
+import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.model.TransferResult;
+import io.vertx.core.shareddata.Shareable;
+import rx.Observable;
+import rx.Single;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ledger operations used by HTTP handlers. Implementations are thread-safe, so a single instance
+ * is shared by all HTTP verticle instances through local shared data.
+ * Reading a missing account or transaction fails the returned single
+ */
+public interface LedgerStorage extends Shareable {
+    Single<Account> getAccount(String accountId, ReadConsistency consistency);
+    
+    Observable<Account> getAccounts(ReadConsistency consistency);
+    
+    /**
+     * Returns a single page of accounts, "0" is the cursor of the first page. Limit is only a hint,
+     * so page may contain more or less accounts
+     */
+    Single<Page<Account>> getAccounts(String cursor, int limit, ReadConsistency consistency);
+    
+    /**
+     * Creates account only if it's id is not taken yet, fails otherwise
+     */
+    Single<Account> createAccount(Account account);
+    
+    /**
+     * Emits false if account doesn't exist
+     */
+    Single<Boolean> deleteAccount(String accountId);
+    
+    Single<Transaction> getTransaction(String transactionId, ReadConsistency consistency);
+    
+    Observable<Transaction> getTransactions(ReadConsistency consistency);
+    
+    Single<Page<Transaction>> getTransactions(String cursor, int limit, ReadConsistency consistency);
+    
+    /**
+     * Returns account's transactions created in the given time range (epoch millis, inclusive), oldest first.
+     * Negative limit means no limit
+     */
+    Observable<Transaction> getAccountTransactions(String accountId, long from, long to, long limit, ReadConsistency consistency);
+    
+    /**
+     * Executes transfer and returns the transaction, failing with transfer status message if it's declined.
+     * Transfer with already used idempotency key returns the transaction executed first, null key disables the check
+     */
+    Single<Transaction> createTransaction(Transaction transaction, String idempotencyKey);
+    
+    /**
+     * Executes transfers in the given order, results are emitted in the same order.
+     * Failures are reported per transfer and don't affect the rest of the batch
+     */
+    Observable<TransferResult> createTransactions(List<Transaction> transactions);
+    
+    void addTransactionListener(TransactionListener listener);
+    
+    /**
+     * How long transactions are kept by the storage, 0 if they never expire
+     */
+    default long getTransactionTtlMillis() {
+        return 0;
+    }
+    
+    /**
+     * Accounts with the most conflicting transfers, only engines with optimistic transfers track them
+     */
+    default Map<String, Long> getContendedAccounts(int limit) {
+        return Collections.emptyMap();
+    }
+    
+    /**
+     * Feed of committed transactions or null if the engine doesn't support it or it's disabled
+     */
+    default TransactionFeed getTransactionFeed() {
+        return null;
+    }
+    
+    /**
+     * Removes all accounts and transactions, used by tests and tools
+     */
+    void clear();
+    
+    void close();
+}
@@ -0,0 +1,130 @@
+package io.bank.api.transactions.storage;
+
+import io.bank.api.transactions.dao.ReadConsistency;
+import io.bank.api.transactions.dao.RedisDao;
+import io.bank.api.transactions.dao.TransactionListener;
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Page;
+import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.model.TransferResult;
+import rx.Observable;
+import rx.Single;
+
+import java.util.List;
+import java.util.Map;
+
+import static io.bank.api.transactions.utils.KeysUtils.ACCOUNT_KEY_PATTERN;
+import static io.bank.api.transactions.utils.KeysUtils.TRANSACTION_KEY_PATTERN;
+import static io.bank.api.transactions.utils.KeysUtils.getAccountKey;
+
+/**
+ * Ledger stored in Redis hashes and, optionally, binary transaction records, see {@link RedisDao}
+ */
+public class RedisLedgerStorage implements LedgerStorage {
+    private final RedisDao redisDao;
+    
+    public RedisLedgerStorage(RedisDao redisDao) {
+        this.redisDao = redisDao;
+    }
+    
+    public RedisDao getRedisDao() {
+        return redisDao;
+    }
+    
+    @Override
+    public Single<Account> getAccount(String accountId, ReadConsistency consistency) {
+        return redisDao.getAccountHash(accountId, consistency).map(Account::fromHash);
+    }
+    
+    @Override
+    public Observable<Account> getAccounts(ReadConsistency consistency) {
+        return redisDao.getHashes(redisDao.scanKeys(ACCOUNT_KEY_PATTERN, consistency), consistency)
+                .map(Account::fromHash);
+    }
+    
+    @Override
+    public Single<Page<Account>> getAccounts(String cursor, int limit, ReadConsistency consistency) {
+        return redisDao.scanKeys(ACCOUNT_KEY_PATTERN, cursor, limit, consistency)
+                .flatMap(page -> redisDao.getHashes(page.getItems(), consistency)
+                        .map(Account::fromHash)
+                        .toList()
+                        .map(accounts -> new Page<>(accounts, page.getCursor()))
+                        .toSingle());
+    }
+    
+    @Override
+    public Single<Account> createAccount(Account account) {
+        return redisDao.createAccount(account);
+    }
+    
+    @Override
+    public Single<Boolean> deleteAccount(String accountId) {
+        return redisDao.deleteAccount(getAccountKey(accountId));
+    }
+    
+    @Override
+    public Single<Transaction> getTransaction(String transactionId, ReadConsistency consistency) {
+        return redisDao.getTransaction(transactionId, consistency);
+    }
+    
+    @Override
+    public Observable<Transaction> getTransactions(ReadConsistency consistency) {
+        // Transaction may expire between SCAN and reading it, such transactions are skipped
+        return redisDao.getTransactions(redisDao.scanKeys(TRANSACTION_KEY_PATTERN, consistency), consistency);
+    }
+    
+    @Override
+    public Single<Page<Transaction>> getTransactions(String cursor, int limit, ReadConsistency consistency) {
+        return redisDao.scanKeys(TRANSACTION_KEY_PATTERN, cursor, limit, consistency)
+                .flatMap(page -> redisDao.getTransactions(page.getItems(), consistency)
+                        .toList()
+                        .map(transactions -> new Page<>(transactions, page.getCursor()))
+                        .toSingle());
+    }
+    
+    @Override
+    public Observable<Transaction> getAccountTransactions(String accountId, long from, long to, long limit, ReadConsistency consistency) {
+        // Index is trimmed lazily, so it may still refer to a few expired transactions, they are skipped
+        return redisDao.getTransactions(redisDao.getAccountTransactionKeys(accountId, from, to, limit, consistency), consistency);
+    }
+    
+    @Override
+    public Single<Transaction> createTransaction(Transaction transaction, String idempotencyKey) {
+        return redisDao.createTransaction(transaction, idempotencyKey);
+    }
+    
+    @Override
+    public Observable<TransferResult> createTransactions(List<Transaction> transactions) {
+        return redisDao.createTransactions(transactions);
+    }
+    
+    @Override
+    public void addTransactionListener(TransactionListener listener) {
+        redisDao.addTransactionListener(listener);
+    }
+    
+    @Override
+    public long getTransactionTtlMillis() {
+        return redisDao.getTransactionTtlMillis();
+    }
+    
+    @Override
+    public Map<String, Long> getContendedAccounts(int limit) {
+        return redisDao.getContendedAccounts(limit);
+    }
+    
+    @Override
+    public TransactionFeed getTransactionFeed() {
+        return redisDao.getTransactionFeed();
+    }
+    
+    @Override
+    public void clear() {
+        redisDao.flushAll();
+    }
+    
+    @Override
+    public void close() {
+        redisDao.close();
+    }
+}
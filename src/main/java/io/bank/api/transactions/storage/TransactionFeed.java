@@ -0,0 +1,21 @@
+package io.bank.api.transactions.storage;
+
+import io.bank.api.transactions.model.FeedEntry;
+import rx.Observable;
+import rx.Single;
+
+/**
+ * Ordered feed of committed transactions. Subscribers resume from the offset of the last entry they have seen
+ */
+public interface TransactionFeed {
+    /**
+     * Offset of the latest appended entry, tailing from it emits only transactions committed afterwards
+     */
+    Single<Long> currentOffset();
+    
+    /**
+     * Emits stored entries after the given offset and then live ones, in offset order, never completes.
+     * Entries already trimmed from the feed or of expired transactions are skipped
+     */
+    Observable<FeedEntry> tail(long afterOffset);
+}
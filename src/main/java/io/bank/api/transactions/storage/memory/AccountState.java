@@ -0,0 +1,97 @@
+package io.bank.api.transactions.storage.memory;
+
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mutable account owned by a single shard thread. Transactions index is kept sorted by creation time,
+ * transactions mostly arrive in that order, so insertion is an append
+ */
+class AccountState {
+    final String id;
+    final long created;
+    final String currency;
+    long balance;
+    long version;
+    final List<Transaction> transactions;
+    
+    AccountState(Account account) {
+        this(account.getId(), account.getCreated(), account.getBalance(), account.getCurrency(), account.getVersion(), new ArrayList<>());
+    }
+    
+    AccountState(String id, long created, long balance, String currency, long version, List<Transaction> transactions) {
+        this.id = id;
+        this.created = created;
+        this.balance = balance;
+        this.currency = currency;
+        this.version = version;
+        this.transactions = transactions;
+    }
+    
+    Account toAccount() {
+        return new Account(id, created, balance, currency, version);
+    }
+    
+    /**
+     * Every balance change gets a new version, same as in Redis scripts
+     */
+    void changeBalance(long amount) {
+        balance += amount;
+        version++;
+    }
+    
+    /**
+     * Copy for snapshot, transactions themselves are never modified after creation, so they are shared
+     */
+    AccountState copy() {
+        return new AccountState(id, created, balance, currency, version, new ArrayList<>(transactions));
+    }
+    
+    boolean hasTransaction(Transaction transaction) {
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            if (transactions.get(i).getId().equals(transaction.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    void addTransaction(Transaction transaction) {
+        int index = transactions.size();
+        while (index > 0 && transactions.get(index - 1).getCreated() > transaction.getCreated()) {
+            index--;
+        }
+        transactions.add(index, transaction);
+    }
+    
+    /**
+     * Returns transactions created in the given range (epoch millis, inclusive), oldest first. Negative limit means no limit
+     */
+    List<Transaction> getTransactions(long from, long to, long limit) {
+        if (limit == 0) {
+            return Collections.emptyList();
+        }
+        int low = 0;
+        int high = transactions.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (transactions.get(middle).getCreated() < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<Transaction> result = new ArrayList<>();
+        for (int i = low; i < transactions.size() && transactions.get(i).getCreated() <= to; i++) {
+            result.add(transactions.get(i));
+            if (result.size() == limit) {
+                break;
+            }
+        }
+        return result;
+    }
+}
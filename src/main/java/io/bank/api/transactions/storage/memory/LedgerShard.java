@@ -0,0 +1,258 @@
+package io.bank.api.transactions.storage.memory;
+
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.model.TransferResult;
+import io.bank.api.transactions.model.TransferStatus;
+import lombok.AllArgsConstructor;
+import rx.Scheduler;
+import rx.Single;
+import rx.schedulers.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static io.bank.api.transactions.utils.KeysUtils.getIdempotencyKey;
+
+/**
+ * Partition of the ledger. State is accessed only by tasks of the shard's single writer thread,
+ * so balances are plain longs and collections aren't synchronized.
+ * Transactions and idempotency keys belong to the sender's shard, recipient's shard only indexes them
+ */
+class LedgerShard {
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    
+    final int index;
+    final NavigableMap<String, AccountState> accounts = new TreeMap<>();
+    final NavigableMap<String, Transaction> transactions = new TreeMap<>();
+    /**
+     * Cross-shard transfers debited from sender but not yet completed, in debit order
+     */
+    final Map<String, Transaction> pending = new LinkedHashMap<>();
+    final Map<String, IdempotencyKey> idempotencyKeys = new HashMap<>();
+    
+    private final ExecutorService writer;
+    private final Scheduler scheduler;
+    
+    LedgerShard(int index) {
+        this.index = index;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "memory-ledger-shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Schedulers.from(writer);
+    }
+    
+    /**
+     * Executes the action on the shard's thread, result is emitted on the same thread
+     */
+    <T> Single<T> submit(Callable<T> action) {
+        return Single.fromCallable(action).subscribeOn(scheduler);
+    }
+    
+    Account getAccount(String accountId) {
+        AccountState account = accounts.get(accountId);
+        return account == null ? null : account.toAccount();
+    }
+    
+    boolean createAccount(Account account) {
+        if (accounts.containsKey(account.getId())) {
+            return false;
+        }
+        accounts.put(account.getId(), new AccountState(account));
+        return true;
+    }
+    
+    /**
+     * Returns transfer status or DUPLICATE with the executed transaction. Transfer of the key which is still pending
+     * is IN_PROGRESS, as it may yet be refunded and the key released
+     */
+    TransferResult checkDuplicate(Transaction transaction, String idempotencyKey, long now) {
+        if (idempotencyKey != null) {
+            IdempotencyKey stored = idempotencyKeys.get(getIdempotencyKey(transaction.getSenderId(), idempotencyKey));
+            if (stored != null && stored.expires > now) {
+                Transaction inProgress = pending.get(stored.transactionId);
+                if (inProgress != null) {
+                    return new TransferResult(inProgress, TransferStatus.IN_PROGRESS, null);
+                }
+                return new TransferResult(transactions.get(stored.transactionId), TransferStatus.DUPLICATE, null);
+            }
+        }
+        if (transactions.containsKey(transaction.getId()) || pending.containsKey(transaction.getId())) {
+            return new TransferResult(transaction, TransferStatus.DUPLICATE_ID, null);
+        }
+        return null;
+    }
+    
+    /**
+     * Transfer between accounts of this shard, executed as a single task. Checks are done in the same order as by "transfer.lua"
+     */
+    TransferResult transfer(Transaction transaction, String idempotencyKey, long now, long idempotencyKeyTtlMillis) {
+        TransferResult duplicate = checkDuplicate(transaction, idempotencyKey, now);
+        if (duplicate != null) {
+            return duplicate;
+        }
+        AccountState sender = accounts.get(transaction.getSenderId());
+        AccountState recipient = accounts.get(transaction.getRecipientId());
+        if (sender == null || recipient == null) {
+            return result(transaction, TransferStatus.UNKNOWN_ACCOUNT);
+        }
+        if (!sender.currency.equals(transaction.getCurrency()) || !recipient.currency.equals(transaction.getCurrency())) {
+            return result(transaction, TransferStatus.CURRENCY_MISMATCH);
+        }
+        if (sender.balance < transaction.getAmount()) {
+            return result(transaction, TransferStatus.INSUFFICIENT_FUNDS);
+        }
+        sender.changeBalance(-transaction.getAmount());
+        recipient.changeBalance(transaction.getAmount());
+        transactions.put(transaction.getId(), transaction);
+        sender.addTransaction(transaction);
+        if (recipient != sender) {
+            recipient.addTransaction(transaction);
+        }
+        storeIdempotencyKey(transaction, idempotencyKey, now + idempotencyKeyTtlMillis);
+        return result(transaction, TransferStatus.OK);
+    }
+    
+    /**
+     * First step of cross-shard transfer, withdraws the amount from sender and keeps transfer as pending
+     */
+    TransferResult debit(Transaction transaction, String idempotencyKey, long now, long idempotencyKeyTtlMillis) {
+        TransferResult duplicate = checkDuplicate(transaction, idempotencyKey, now);
+        if (duplicate != null) {
+            return duplicate;
+        }
+        AccountState sender = accounts.get(transaction.getSenderId());
+        if (sender == null) {
+            return result(transaction, TransferStatus.UNKNOWN_ACCOUNT);
+        }
+        if (!sender.currency.equals(transaction.getCurrency())) {
+            return result(transaction, TransferStatus.CURRENCY_MISMATCH);
+        }
+        if (sender.balance < transaction.getAmount()) {
+            return result(transaction, TransferStatus.INSUFFICIENT_FUNDS);
+        }
+        sender.changeBalance(-transaction.getAmount());
+        pending.put(transaction.getId(), transaction);
+        storeIdempotencyKey(transaction, idempotencyKey, now + idempotencyKeyTtlMillis);
+        return result(transaction, TransferStatus.OK);
+    }
+    
+    /**
+     * Second step of cross-shard transfer, executed on recipient's shard
+     */
+    TransferStatus credit(Transaction transaction) {
+        AccountState recipient = accounts.get(transaction.getRecipientId());
+        if (recipient == null) {
+            return TransferStatus.UNKNOWN_ACCOUNT;
+        }
+        if (!recipient.currency.equals(transaction.getCurrency())) {
+            return TransferStatus.CURRENCY_MISMATCH;
+        }
+        recipient.changeBalance(transaction.getAmount());
+        recipient.addTransaction(transaction);
+        return TransferStatus.OK;
+    }
+    
+    /**
+     * Last step of credited cross-shard transfer, makes transaction visible on sender's shard
+     */
+    void complete(Transaction transaction) {
+        pending.remove(transaction.getId());
+        transactions.put(transaction.getId(), transaction);
+        AccountState sender = accounts.get(transaction.getSenderId());
+        // Sender might have been deleted in the meantime, the transaction is kept anyway
+        if (sender != null) {
+            sender.addTransaction(transaction);
+        }
+    }
+    
+    /**
+     * Last step of cross-shard transfer declined by recipient's shard. Idempotency key is released,
+     * so the transfer can be retried, same as after a failed script
+     */
+    void refund(Transaction transaction, String idempotencyKey) {
+        pending.remove(transaction.getId());
+        AccountState sender = accounts.get(transaction.getSenderId());
+        if (sender != null) {
+            sender.changeBalance(transaction.getAmount());
+        }
+        if (idempotencyKey != null) {
+            idempotencyKeys.remove(getIdempotencyKey(transaction.getSenderId(), idempotencyKey));
+        }
+    }
+    
+    List<Account> getAccounts(String afterId, int limit) {
+        List<Account> page = new ArrayList<>(Math.min(limit, accounts.size()));
+        for (AccountState account : (afterId == null ? accounts : accounts.tailMap(afterId, false)).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(account.toAccount());
+        }
+        return page;
+    }
+    
+    List<Transaction> getTransactions(String afterId, int limit) {
+        List<Transaction> page = new ArrayList<>(Math.min(limit, transactions.size()));
+        for (Transaction transaction : (afterId == null ? transactions : transactions.tailMap(afterId, false)).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(transaction);
+        }
+        return page;
+    }
+    
+    int purgeIdempotencyKeys(long now) {
+        int purged = 0;
+        for (Iterator<IdempotencyKey> keys = idempotencyKeys.values().iterator(); keys.hasNext(); ) {
+            if (keys.next().expires <= now) {
+                keys.remove();
+                purged++;
+            }
+        }
+        return purged;
+    }
+    
+    void clear() {
+        accounts.clear();
+        transactions.clear();
+        pending.clear();
+        idempotencyKeys.clear();
+    }
+    
+    void close() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    private void storeIdempotencyKey(Transaction transaction, String idempotencyKey, long expires) {
+        if (idempotencyKey != null) {
+            idempotencyKeys.put(getIdempotencyKey(transaction.getSenderId(), idempotencyKey),
+                                new IdempotencyKey(transaction.getSenderId(), transaction.getId(), expires));
+        }
+    }
+    
+    private static TransferResult result(Transaction transaction, TransferStatus status) {
+        return new TransferResult(transaction, status, null);
+    }
+    
+    @AllArgsConstructor
+    static class IdempotencyKey {
+        final String senderId;
+        final String transactionId;
+        final long expires;
+    }
+}
@@ -0,0 +1,144 @@
+package io.bank.api.transactions.storage.memory;
+
+import io.bank.api.transactions.model.Transaction;
+import lombok.SneakyThrows;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Consistent copy of all shards. Account transactions are written as ids, transactions themselves once.
+ * File is written next to the previous one and atomically renamed, so a crash never leaves a partial snapshot
+ */
+class LedgerSnapshot {
+    private static final int MAGIC = 0x4C444752;
+    // Version 1 had no account versions
+    private static final int VERSION = 2;
+    private static final int UNVERSIONED_ACCOUNTS = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    final List<AccountState> accounts = new ArrayList<>();
+    final List<Transaction> transactions = new ArrayList<>();
+    final List<Transaction> pending = new ArrayList<>();
+    final Map<String, LedgerShard.IdempotencyKey> idempotencyKeys = new HashMap<>();
+    
+    /**
+     * Copies shard state, must be called on the shard's thread
+     */
+    void capture(LedgerShard shard) {
+        shard.accounts.values().forEach(account -> accounts.add(account.copy()));
+        transactions.addAll(shard.transactions.values());
+        pending.addAll(shard.pending.values());
+        idempotencyKeys.putAll(shard.idempotencyKeys);
+    }
+    
+    void merge(LedgerSnapshot shardSnapshot) {
+        accounts.addAll(shardSnapshot.accounts);
+        transactions.addAll(shardSnapshot.transactions);
+        pending.addAll(shardSnapshot.pending);
+        idempotencyKeys.putAll(shardSnapshot.idempotencyKeys);
+    }
+    
+    @SneakyThrows
+    void write(Path file) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeTransactions(out, transactions);
+            writeTransactions(out, pending);
+            out.writeInt(accounts.size());
+            for (AccountState account : accounts) {
+                out.writeUTF(account.id);
+                out.writeLong(account.created);
+                out.writeLong(account.balance);
+                out.writeUTF(account.currency);
+                out.writeLong(account.version);
+                out.writeInt(account.transactions.size());
+                for (Transaction transaction : account.transactions) {
+                    out.writeUTF(transaction.getId());
+                }
+            }
+            out.writeInt(idempotencyKeys.size());
+            for (Map.Entry<String, LedgerShard.IdempotencyKey> entry : idempotencyKeys.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().senderId);
+                out.writeUTF(entry.getValue().transactionId);
+                out.writeLong(entry.getValue().expires);
+            }
+        }
+        Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+    
+    @SneakyThrows
+    static LedgerSnapshot read(Path file) {
+        LedgerSnapshot snapshot = new LedgerSnapshot();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("Unsupported ledger snapshot format: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != UNVERSIONED_ACCOUNTS) {
+                throw new IllegalStateException("Unsupported ledger snapshot format: " + file);
+            }
+            readTransactions(in, snapshot.transactions);
+            readTransactions(in, snapshot.pending);
+            Map<String, Transaction> transactionsById = new HashMap<>();
+            snapshot.transactions.forEach(transaction -> transactionsById.put(transaction.getId(), transaction));
+            snapshot.pending.forEach(transaction -> transactionsById.put(transaction.getId(), transaction));
+            int accounts = in.readInt();
+            for (int i = 0; i < accounts; i++) {
+                String id = in.readUTF();
+                long created = in.readLong();
+                long balance = in.readLong();
+                String currency = in.readUTF();
+                long accountVersion = version == UNVERSIONED_ACCOUNTS ? 0 : in.readLong();
+                int transactions = in.readInt();
+                List<Transaction> accountTransactions = new ArrayList<>(transactions);
+                for (int j = 0; j < transactions; j++) {
+                    Transaction transaction = transactionsById.get(in.readUTF());
+                    if (transaction != null) {
+                        accountTransactions.add(transaction);
+                    }
+                }
+                snapshot.accounts.add(new AccountState(id, created, balance, currency, accountVersion, accountTransactions));
+            }
+            int keys = in.readInt();
+            for (int i = 0; i < keys; i++) {
+                snapshot.idempotencyKeys.put(in.readUTF(), new LedgerShard.IdempotencyKey(in.readUTF(), in.readUTF(), in.readLong()));
+            }
+        }
+        return snapshot;
+    }
+    
+    private static void writeTransactions(DataOutputStream out, List<Transaction> transactions) throws IOException {
+        out.writeInt(transactions.size());
+        for (Transaction transaction : transactions) {
+            out.writeUTF(transaction.getId());
+            out.writeLong(transaction.getCreated());
+            out.writeLong(transaction.getAmount());
+            out.writeUTF(transaction.getCurrency());
+            out.writeUTF(transaction.getSenderId());
+            out.writeUTF(transaction.getRecipientId());
+        }
+    }
+    
+    private static void readTransactions(DataInputStream in, List<Transaction> transactions) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            transactions.add(new Transaction(in.readUTF(), in.readLong(), in.readLong(), in.readUTF(), in.readUTF(), in.readUTF()));
+        }
+    }
+}
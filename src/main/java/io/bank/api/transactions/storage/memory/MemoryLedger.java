@@ -0,0 +1,425 @@
+package io.bank.api.transactions.storage.memory;
+
+import io.bank.api.transactions.dao.ReadConsistency;
+import io.bank.api.transactions.dao.TransactionListener;
+import io.bank.api.transactions.metrics.Counter;
+import io.bank.api.transactions.metrics.Metrics;
+import io.bank.api.transactions.metrics.Timer;
+import io.bank.api.transactions.model.Account;
+import io.bank.api.transactions.model.IdempotencyKeyReusedException;
+import io.bank.api.transactions.model.Page;
+import io.bank.api.transactions.model.Transaction;
+import io.bank.api.transactions.model.TransferInProgressException;
+import io.bank.api.transactions.model.TransferResult;
+import io.bank.api.transactions.model.TransferStatus;
+import io.bank.api.transactions.storage.LedgerStorage;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import lombok.SneakyThrows;
+import rx.Observable;
+import rx.Single;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * In-process ledger partitioned into shards by account id. Every shard is owned by a single writer thread,
+ * operations are queued to it, so no locks are taken on account state.
+ * Transfer between accounts of the same shard is a single task. Other transfers are handed off between shards
+ * in order: debit on sender's shard, credit on recipient's shard, then completion or refund on sender's shard,
+ * so funds are never created and a declined credit always gets back to the sender.
+ * Reads are always served from the owning shard, so requested consistency doesn't matter
+ */
+public class MemoryLedger implements LedgerStorage {
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryLedger.class);
+    private static final String SNAPSHOT_FILE = "ledger.snapshot";
+    private static final String INITIAL_CURSOR = "0";
+    private static final String CURSOR_SEPARATOR = ":";
+    private static final int SCAN_BATCH_SIZE = 1000;
+    private static final long SNAPSHOT_BARRIER_TIMEOUT_SECONDS = 10;
+    private static final long IDEMPOTENCY_KEYS_PURGE_MILLIS = 60_000;
+    private static final Counter[] TRANSFER_COUNTERS = transferCounters();
+    private static final Counter TRANSFER_ERRORS = Metrics.REGISTRY.counter("transfers_total", "Executed transfers by result", "status", "error");
+    private static final Timer TRANSFER_TIMER = Metrics.REGISTRY.timer("memory_ledger_transfer_duration_seconds",
+                                                                       "In-memory ledger transfer latency by shards involved", "shards", "single");
+    private static final Timer CROSS_SHARD_TRANSFER_TIMER = Metrics.REGISTRY.timer("memory_ledger_transfer_duration_seconds",
+                                                                                   "In-memory ledger transfer latency by shards involved", "shards", "cross");
+    
+    private final MemoryLedgerOptions options;
+    private final LedgerShard[] shards;
+    private final List<TransactionListener> transactionListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "memory-ledger-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Path snapshotFile;
+    
+    public MemoryLedger() {
+        this(new MemoryLedgerOptions());
+    }
+    
+    /**
+     * Restores the last snapshot if snapshots are enabled and it exists
+     */
+    @SneakyThrows
+    public MemoryLedger(MemoryLedgerOptions options) {
+        this.options = options;
+        this.shards = new LedgerShard[options.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LedgerShard(i);
+        }
+        if (options.getSnapshotDirectory() != null) {
+            Path directory = Paths.get(options.getSnapshotDirectory());
+            Files.createDirectories(directory);
+            snapshotFile = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshotFile)) {
+                restore(LedgerSnapshot.read(snapshotFile));
+            }
+            maintenance.scheduleWithFixedDelay(this::snapshotQuietly, options.getSnapshotIntervalMillis(),
+                                               options.getSnapshotIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            snapshotFile = null;
+        }
+        maintenance.scheduleWithFixedDelay(this::purgeIdempotencyKeys, IDEMPOTENCY_KEYS_PURGE_MILLIS,
+                                           IDEMPOTENCY_KEYS_PURGE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public Single<Account> getAccount(String accountId, ReadConsistency consistency) {
+        LedgerShard shard = shardOf(accountId);
+        return shard.submit(() -> shard.getAccount(accountId)).map(account -> {
+            if (account == null) {
+                throw new IllegalStateException("Account does not exist");
+            }
+            return account;
+        });
+    }
+    
+    @Override
+    public Observable<Account> getAccounts(ReadConsistency consistency) {
+        return scan(cursor -> getAccounts(cursor, SCAN_BATCH_SIZE, consistency), INITIAL_CURSOR);
+    }
+    
+    /**
+     * Cursor is "shard:lastId", page is never taken from more than one shard
+     */
+    @Override
+    public Single<Page<Account>> getAccounts(String cursor, int limit, ReadConsistency consistency) {
+        return page(cursor, (shard, afterId) -> shard.getAccounts(afterId, limit), Account::getId, limit);
+    }
+    
+    @Override
+    public Single<Account> createAccount(Account account) {
+        LedgerShard shard = shardOf(account.getId());
+        return shard.submit(() -> shard.createAccount(account)).map(created -> {
+            if (!created) {
+                throw new IllegalStateException("Account with the same id already exists");
+            }
+            return account;
+        });
+    }
+    
+    @Override
+    public Single<Boolean> deleteAccount(String accountId) {
+        LedgerShard shard = shardOf(accountId);
+        return shard.submit(() -> shard.accounts.remove(accountId) != null);
+    }
+    
+    /**
+     * Transaction ids don't tell their sender, so all shards are asked at once
+     */
+    @Override
+    public Single<Transaction> getTransaction(String transactionId, ReadConsistency consistency) {
+        return Observable.from(shards)
+                .flatMap(shard -> shard.submit(() -> shard.transactions.get(transactionId)).toObservable())
+                .filter(Objects::nonNull)
+                .switchIfEmpty(Observable.error(new IllegalStateException("Transaction does not exist")))
+                .first()
+                .toSingle();
+    }
+    
+    @Override
+    public Observable<Transaction> getTransactions(ReadConsistency consistency) {
+        return scan(cursor -> getTransactions(cursor, SCAN_BATCH_SIZE, consistency), INITIAL_CURSOR);
+    }
+    
+    @Override
+    public Single<Page<Transaction>> getTransactions(String cursor, int limit, ReadConsistency consistency) {
+        return page(cursor, (shard, afterId) -> shard.getTransactions(afterId, limit), Transaction::getId, limit);
+    }
+    
+    @Override
+    public Observable<Transaction> getAccountTransactions(String accountId, long from, long to, long limit, ReadConsistency consistency) {
+        LedgerShard shard = shardOf(accountId);
+        return shard.submit(() -> {
+            AccountState account = shard.accounts.get(accountId);
+            return account == null ? Collections.<Transaction>emptyList() : account.getTransactions(from, to, limit);
+        }).flatMapObservable(transactions -> Observable.from(transactions));
+    }
+    
+    @Override
+    public Single<Transaction> createTransaction(Transaction transaction, String idempotencyKey) {
+        return transfer(transaction, idempotencyKey).map(result -> {
+            if (result.getStatus() == TransferStatus.DUPLICATE) {
+                return getIdempotentTransaction(transaction, result.getTransaction());
+            }
+            if (result.getStatus() == TransferStatus.IN_PROGRESS) {
+                throw new TransferInProgressException();
+            }
+            if (!result.isSucceeded()) {
+                throw new IllegalStateException(result.getStatus().getMessage());
+            }
+            return transaction;
+        });
+    }
+    
+    /**
+     * Transfers are executed one after another, so transfers of the same account are applied in submission order
+     * even if they involve different shards
+     */
+    @Override
+    public Observable<TransferResult> createTransactions(List<Transaction> transactions) {
+        return Observable.from(transactions)
+                .concatMap(transaction -> transfer(transaction, null)
+                        .onErrorReturn(error -> new TransferResult(transaction, null, error.getMessage()))
+                        .toObservable());
+    }
+    
+    @Override
+    public void addTransactionListener(TransactionListener listener) {
+        transactionListeners.add(listener);
+    }
+    
+    @Override
+    public void clear() {
+        Observable.from(shards)
+                .flatMap(shard -> shard.submit(() -> {
+                    shard.clear();
+                    return shard.index;
+                }).toObservable())
+                .toList()
+                .toBlocking()
+                .single();
+    }
+    
+    /**
+     * Stops accepting snapshots and writes the last one, then stops shard threads
+     */
+    @Override
+    @SneakyThrows
+    public void close() {
+        maintenance.shutdownNow();
+        if (snapshotFile != null) {
+            snapshotQuietly();
+        }
+        for (LedgerShard shard : shards) {
+            shard.close();
+        }
+    }
+    
+    /**
+     * Captures all shards at the same point: every shard copies it's state and waits until the others have done the same.
+     * Cross-shard transfer is either not debited yet, pending or pending and credited in a snapshot, never only credited
+     */
+    public void snapshot() {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("Snapshot directory is not configured");
+        }
+        long start = System.nanoTime();
+        CountDownLatch captured = new CountDownLatch(shards.length);
+        LedgerSnapshot snapshot = Observable.from(shards)
+                .flatMap(shard -> shard.submit(() -> {
+                    LedgerSnapshot shardSnapshot = new LedgerSnapshot();
+                    shardSnapshot.capture(shard);
+                    captured.countDown();
+                    if (!captured.await(SNAPSHOT_BARRIER_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Shards haven't been captured in time");
+                    }
+                    return shardSnapshot;
+                }).toObservable())
+                .reduce(new LedgerSnapshot(), (merged, shardSnapshot) -> {
+                    merged.merge(shardSnapshot);
+                    return merged;
+                })
+                .toBlocking()
+                .single();
+        snapshot.write(snapshotFile);
+        LOG.info("Ledger snapshot of " + snapshot.accounts.size() + " accounts and " + snapshot.transactions.size() + " transactions written in "
+                 + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+    
+    private Single<TransferResult> transfer(Transaction transaction, String idempotencyKey) {
+        long start = System.nanoTime();
+        long idempotencyKeyTtlMillis = TimeUnit.SECONDS.toMillis(options.getIdempotencyKeyTtlSeconds());
+        LedgerShard senderShard = shardOf(transaction.getSenderId());
+        LedgerShard recipientShard = shardOf(transaction.getRecipientId());
+        Single<TransferResult> result;
+        if (senderShard == recipientShard) {
+            result = senderShard.submit(() -> senderShard.transfer(transaction, idempotencyKey, System.currentTimeMillis(), idempotencyKeyTtlMillis))
+                    .doOnSuccess(executed -> TRANSFER_TIMER.recordSince(start));
+        } else {
+            result = senderShard.submit(() -> senderShard.debit(transaction, idempotencyKey, System.currentTimeMillis(), idempotencyKeyTtlMillis))
+                    .flatMap(debited -> debited.isSucceeded() ? creditAndComplete(debited.getTransaction(), idempotencyKey, senderShard, recipientShard) : Single.just(debited))
+                    .doOnSuccess(executed -> CROSS_SHARD_TRANSFER_TIMER.recordSince(start));
+        }
+        return result
+                .doOnSuccess(executed -> {
+                    TRANSFER_COUNTERS[executed.getStatus().ordinal()].increment();
+                    if (executed.isSucceeded()) {
+                        notifyCommitted(executed.getTransaction());
+                    }
+                })
+                .doOnError(error -> TRANSFER_ERRORS.increment());
+    }
+    
+    private Single<TransferResult> creditAndComplete(Transaction transaction, String idempotencyKey, LedgerShard senderShard, LedgerShard recipientShard) {
+        return recipientShard.submit(() -> recipientShard.credit(transaction))
+                .flatMap(status -> senderShard.submit(() -> {
+                    if (status == TransferStatus.OK) {
+                        senderShard.complete(transaction);
+                    } else {
+                        senderShard.refund(transaction, idempotencyKey);
+                    }
+                    return new TransferResult(transaction, status, null);
+                }));
+    }
+    
+    /**
+     * Reusing idempotency key for a different transfer is a client error, same as in Redis engine
+     */
+    private static Transaction getIdempotentTransaction(Transaction transaction, Transaction executed) {
+        if (executed == null
+            || executed.getAmount() != transaction.getAmount()
+            || !executed.getCurrency().equals(transaction.getCurrency())
+            || !executed.getRecipientId().equals(transaction.getRecipientId())) {
+            throw new IdempotencyKeyReusedException();
+        }
+        return executed;
+    }
+    
+    private void notifyCommitted(Transaction transaction) {
+        for (TransactionListener listener : transactionListeners) {
+            listener.transactionCommitted(transaction);
+        }
+    }
+    
+    private <T> Single<Page<T>> page(String cursor, ShardPageReader<T> reader, Function<T, String> id, int limit) {
+        String[] position = cursor.split(CURSOR_SEPARATOR, 2);
+        int shardIndex = parseShardIndex(position[0]);
+        if (shardIndex < 0) {
+            return Single.error(new IllegalArgumentException("Invalid cursor: " + cursor));
+        }
+        String afterId = position.length > 1 ? position[1] : null;
+        LedgerShard shard = shards[shardIndex];
+        return shard.submit(() -> reader.read(shard, afterId)).map(items -> {
+            String next;
+            if (items.size() == limit) {
+                next = shardIndex + CURSOR_SEPARATOR + id.apply(items.get(items.size() - 1));
+            } else {
+                next = shardIndex + 1 < shards.length ? String.valueOf(shardIndex + 1) : null;
+            }
+            return new Page<>(items, next);
+        });
+    }
+    
+    /**
+     * Returns -1 if it's not an index of existing shard
+     */
+    private int parseShardIndex(String value) {
+        try {
+            int index = Integer.parseInt(value);
+            return index < shards.length ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private static <T> Observable<T> scan(Function<String, Single<Page<T>>> pages, String cursor) {
+        return pages.apply(cursor)
+                .toObservable()
+                .concatMap(page -> page.getCursor() == null
+                        ? Observable.from(page.getItems())
+                        : Observable.from(page.getItems()).concatWith(Observable.defer(() -> scan(pages, page.getCursor()))));
+    }
+    
+    /**
+     * Pending transfers are completed as if the process had not stopped: credited ones are completed,
+     * the rest are credited now or refunded if recipient can't accept them
+     */
+    private void restore(LedgerSnapshot snapshot) {
+        for (AccountState account : snapshot.accounts) {
+            shardOf(account.id).accounts.put(account.id, account);
+        }
+        for (Transaction transaction : snapshot.transactions) {
+            shardOf(transaction.getSenderId()).transactions.put(transaction.getId(), transaction);
+        }
+        snapshot.idempotencyKeys.forEach((key, value) -> shardOf(value.senderId).idempotencyKeys.put(key, value));
+        Map<TransferStatus, Integer> recovered = new HashMap<>();
+        for (Transaction transaction : snapshot.pending) {
+            LedgerShard senderShard = shardOf(transaction.getSenderId());
+            LedgerShard recipientShard = shardOf(transaction.getRecipientId());
+            AccountState recipient = recipientShard.accounts.get(transaction.getRecipientId());
+            senderShard.pending.put(transaction.getId(), transaction);
+            TransferStatus status = recipient != null && recipient.hasTransaction(transaction)
+                    ? TransferStatus.OK
+                    : recipientShard.credit(transaction);
+            if (status == TransferStatus.OK) {
+                senderShard.complete(transaction);
+            } else {
+                senderShard.refund(transaction, null);
+                senderShard.idempotencyKeys.values().removeIf(key -> key.transactionId.equals(transaction.getId()));
+            }
+            recovered.merge(status, 1, Integer::sum);
+        }
+        LOG.info("Ledger snapshot restored from " + snapshotFile + ": " + snapshot.accounts.size() + " accounts, "
+                 + snapshot.transactions.size() + " transactions, pending transfers: " + recovered);
+    }
+    
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            LOG.error("Failed to write ledger snapshot", e);
+        }
+    }
+    
+    private void purgeIdempotencyKeys() {
+        long now = System.currentTimeMillis();
+        for (LedgerShard shard : shards) {
+            shard.submit(() -> shard.purgeIdempotencyKeys(now))
+                    .subscribe(purged -> {}, error -> LOG.error("Failed to purge idempotency keys", error));
+        }
+    }
+    
+    private LedgerShard shardOf(String accountId) {
+        return shards[Math.floorMod(accountId.hashCode(), shards.length)];
+    }
+    
+    private static Counter[] transferCounters() {
+        TransferStatus[] statuses = TransferStatus.values();
+        Counter[] counters = new Counter[statuses.length];
+        for (TransferStatus status : statuses) {
+            counters[status.ordinal()] = Metrics.REGISTRY.counter("transfers_total", "Executed transfers by result",
+                                                                  "status", status.name().toLowerCase());
+        }
+        return counters;
+    }
+    
+    @FunctionalInterface
+    private interface ShardPageReader<T> {
+        List<T> read(LedgerShard shard, String afterId);
+    }
+}
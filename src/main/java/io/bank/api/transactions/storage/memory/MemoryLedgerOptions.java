@@ -0,0 +1,25 @@
+package io.bank.api.transactions.storage.memory;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class MemoryLedgerOptions {
+    /**
+     * Accounts are partitioned between shards by id, every shard is owned by a single writer thread
+     */
+    private int shards = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * Snapshots are written to this directory and restored from it on startup, null disables them
+     */
+    private String snapshotDirectory;
+    
+    private long snapshotIntervalMillis = 60_000;
+    
+    /**
+     * Same as Redis engine default, repeated transfer with the same key within this time returns the executed one
+     */
+    private long idempotencyKeyTtlSeconds = 86_400;
+}
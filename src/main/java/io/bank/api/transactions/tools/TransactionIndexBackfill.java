@@ -0,0 +1,26 @@
+package io.bank.api.transactions.tools;
+
+import com.lambdaworks.redis.RedisURI;
+import io.bank.api.transactions.dao.RedisDao;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * One-time command which builds per-account transaction indexes for already existing transactions.
+ * Usage: TransactionIndexBackfill [host] [port]
+ */
+public class TransactionIndexBackfill {
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionIndexBackfill.class);
+    private static final String DEFAULT_HOST = "localhost";
+    private static final int DEFAULT_PORT = 6379;
+    
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : DEFAULT_HOST;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        
+        RedisDao redisDao = new RedisDao(RedisURI.create(host, port));
+        int processed = redisDao.backfillAccountTransactionIndexes().toBlocking().value();
+        LOG.info("Indexed transactions: " + processed);
+        System.exit(0);
+    }
+}
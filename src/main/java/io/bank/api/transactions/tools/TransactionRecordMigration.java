@@ -0,0 +1,26 @@
+package io.bank.api.transactions.tools;
+
+import com.lambdaworks.redis.RedisURI;
+import io.bank.api.transactions.dao.RedisDao;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * One-time command which converts transaction hashes into binary records, run it after switching
+ * "redis.record.format" to "binary". Usage: TransactionRecordMigration [host] [port]
+ */
+public class TransactionRecordMigration {
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionRecordMigration.class);
+    private static final String DEFAULT_HOST = "localhost";
+    private static final int DEFAULT_PORT = 6379;
+    
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : DEFAULT_HOST;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        
+        RedisDao redisDao = new RedisDao(RedisURI.create(host, port));
+        int converted = redisDao.migrateTransactionRecords().toBlocking().value();
+        LOG.info("Converted transactions: " + converted);
+        System.exit(0);
+    }
+}
@@ -1,14 +1,39 @@
 package io.bank.api.transactions.utils;
 
-import java.util.UUID;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public class CommonUtils {
+    private static final char DATE_TIME_SEPARATOR = 'T';
+    
+    private static volatile IdGenerator idGenerator = TimeOrderedIdGenerator.create();
     
     /**
-     * Returns just the first part of common UUID, for the sake of simplicity
+     * Returns next id of the configured generator, time-ordered {@link TimeOrderedIdGenerator} by default
      */
     public static String getShortId() {
-        return UUID.randomUUID().toString().split("-")[0];
+        return idGenerator.nextId();
+    }
+    
+    public static void setIdGenerator(IdGenerator generator) {
+        idGenerator = generator;
+    }
+    
+    /**
+     * Parses epoch millis timestamp. Records created by older versions contain ISO local date-time instead
+     */
+    public static long parseTimestamp(String timestamp) {
+        if (timestamp.indexOf(DATE_TIME_SEPARATOR) >= 0) {
+            return LocalDateTime.parse(timestamp).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        return Long.parseLong(timestamp);
     }
     
+    /**
+     * Formats epoch millis as ISO local date-time, the way it is exposed by API
+     */
+    public static String formatTimestamp(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDateTime().toString();
+    }
 }
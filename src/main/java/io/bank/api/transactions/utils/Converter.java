@@ -2,19 +2,96 @@ package io.bank.api.transactions.utils;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.rxjava.core.buffer.Buffer;
 import lombok.SneakyThrows;
 
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Mapper is configured once, serialization and parsing go through immutable and thread-safe writer and readers.
+ * Buffer based methods encode JSON to UTF-8 bytes directly, without intermediate String
+ */
 public class Converter {
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final ObjectWriter OBJECT_WRITER = OBJECT_MAPPER.writer();
+    private static final ConcurrentMap<Class<?>, ObjectReader> OBJECT_READERS = new ConcurrentHashMap<>();
+    private static final int INITIAL_BUFFER_SIZE = 256;
     
     @SneakyThrows
     public static String convertToJson(Object object) {
-        OBJECT_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        return OBJECT_MAPPER.writeValueAsString(object);
+        return OBJECT_WRITER.writeValueAsString(object);
+    }
+    
+    public static Buffer convertToBuffer(Object object) {
+        ByteBuf byteBuf = Unpooled.buffer(INITIAL_BUFFER_SIZE);
+        writeJson(object, byteBuf);
+        return wrap(byteBuf);
+    }
+    
+    /**
+     * Appends JSON representation of the object to the given buffer
+     */
+    @SneakyThrows
+    public static void writeJson(Object object, ByteBuf byteBuf) {
+        OBJECT_WRITER.writeValue((OutputStream) new ByteBufOutputStream(byteBuf), object);
     }
     
     @SneakyThrows
     public static <T>T convertFromJson(String json, Class<T> klass) {
-        return OBJECT_MAPPER.readValue(json, klass);
+        return getReader(klass).readValue(json);
+    }
+    
+    @SneakyThrows
+    public static <T>T convertFromJson(Buffer json, Class<T> klass) {
+        return getReader(klass).readValue(new ByteBufInputStream(json.getDelegate().getByteBuf()));
+    }
+    
+    /**
+     * Parses JSON array or a sequence of root-level JSON values, e.g. newline-delimited JSON
+     */
+    @SneakyThrows
+    public static <T> List<T> convertFromJsonSequence(Buffer json, Class<T> klass) {
+        ByteBufInputStream stream = new ByteBufInputStream(json.getDelegate().getByteBuf());
+        if (startsWithArray(json)) {
+            return getReader(klass).forType(OBJECT_MAPPER.getTypeFactory().constructCollectionType(List.class, klass)).readValue(stream);
+        }
+        return getReader(klass).<T>readValues(stream).readAll();
+    }
+    
+    /**
+     * Builds serializers and readers of the given types ahead of the first requests, which otherwise pay for introspection
+     */
+    public static void warmUp(Class<?>... types) {
+        for (Class<?> type : types) {
+            OBJECT_MAPPER.canSerialize(type);
+            getReader(type);
+        }
+    }
+    
+    public static Buffer wrap(ByteBuf byteBuf) {
+        return Buffer.newInstance(io.vertx.core.buffer.Buffer.buffer(byteBuf));
+    }
+    
+    private static ObjectReader getReader(Class<?> klass) {
+        return OBJECT_READERS.computeIfAbsent(klass, OBJECT_MAPPER::readerFor);
+    }
+    
+    private static boolean startsWithArray(Buffer json) {
+        for (int i = 0; i < json.length(); i++) {
+            byte b = json.getByte(i);
+            if (!Character.isWhitespace(b)) {
+                return b == '[';
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,37 @@
+package io.bank.api.transactions.utils;
+
+import javax.money.Monetary;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class CurrencyUtils {
+    // Contains only codes validated by Moneta, so it's bounded by the amount of known currencies
+    private static final ConcurrentMap<String, String> CURRENCY_CODES = new ConcurrentHashMap<>();
+    
+    /**
+     * Checks that currency is known, registry lookup is done only once per currency code
+     */
+    public static String validateCurrencyCode(String currencyCode) {
+        if (currencyCode == null) {
+            throw new IllegalArgumentException("Currency code must be specified");
+        }
+        String cached = CURRENCY_CODES.get(currencyCode);
+        if (cached != null) {
+            return cached;
+        }
+        String validated = Monetary.getCurrency(currencyCode).getCurrencyCode();
+        CURRENCY_CODES.putIfAbsent(currencyCode, validated);
+        return validated;
+    }
+    
+    /**
+     * Returns cached instance of already known currency code, so records read from Redis don't retain own copies of it
+     */
+    public static String getCurrencyCode(String currencyCode) {
+        if (currencyCode == null) {
+            return null;
+        }
+        String cached = CURRENCY_CODES.get(currencyCode);
+        return cached != null ? cached : currencyCode;
+    }
+}
@@ -0,0 +1,104 @@
+package io.bank.api.transactions.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.rxjava.core.http.HttpServerResponse;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Func1;
+import rx.subscriptions.Subscriptions;
+
+import java.nio.charset.StandardCharsets;
+
+import static io.vertx.core.http.HttpHeaders.CACHE_CONTROL;
+import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Writes items to the response as server-sent events, each one is flushed as soon as it's emitted.
+ * Same as in {@link JsonArrayStream}, next item is requested only when response write queue has a room for it.
+ * Idle connections get a comment line periodically, so proxies don't close them
+ */
+public class EventStream<T> extends Subscriber<T> {
+    public static final String CONTENT_TYPE_EVENT_STREAM = "text/event-stream";
+    private static final long HEARTBEAT_MILLIS = 15_000;
+    // Clients reconnect after this delay, sending id of the last received event as "Last-Event-ID"
+    private static final byte[] RETRY = "retry: 1000\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ID = "id: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT = "\nevent: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DATA = "\ndata: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+    
+    private final RoutingContext context;
+    private final byte[] event;
+    private final Func1<T, String> id;
+    private final Func1<T, Object> data;
+    private long heartbeatTimer;
+    
+    private EventStream(RoutingContext context, String event, Func1<T, String> id, Func1<T, Object> data) {
+        this.context = context;
+        this.event = event.getBytes(StandardCharsets.US_ASCII);
+        this.id = id;
+        this.data = data;
+    }
+    
+    /**
+     * Items are written as events of the given name, with the given id and data serialized to single-line JSON
+     */
+    public static <T> void stream(Observable<T> items, RoutingContext context, String event, Func1<T, String> id, Func1<T, Object> data) {
+        EventStream<T> stream = new EventStream<>(context, event, id, data);
+        context.response().closeHandler(closed -> stream.unsubscribe());
+        stream.add(Subscriptions.create(stream::stopHeartbeat));
+        items.subscribe(stream);
+    }
+    
+    @Override
+    public void onStart() {
+        HttpServerResponse response = context.response()
+                .setChunked(true)
+                .putHeader(CONTENT_TYPE.toString(), CONTENT_TYPE_EVENT_STREAM)
+                .putHeader(CACHE_CONTROL.toString(), "no-cache");
+        // Status line is sent right away, so clients know they are subscribed before the first event
+        response.write(Converter.wrap(Unpooled.wrappedBuffer(RETRY)));
+        heartbeatTimer = context.vertx().setPeriodic(HEARTBEAT_MILLIS, timer -> response.write(Converter.wrap(Unpooled.wrappedBuffer(HEARTBEAT))));
+        request(1);
+    }
+    
+    @Override
+    public void onNext(T item) {
+        ByteBuf chunk = Unpooled.buffer();
+        chunk.writeBytes(ID).writeBytes(id.call(item).getBytes(StandardCharsets.US_ASCII))
+                .writeBytes(EVENT).writeBytes(event)
+                .writeBytes(DATA);
+        Converter.writeJson(data.call(item), chunk);
+        chunk.writeBytes(EVENT_END);
+        
+        HttpServerResponse response = context.response();
+        response.write(Converter.wrap(chunk));
+        if (response.writeQueueFull()) {
+            response.drainHandler(drained -> request(1));
+        } else {
+            request(1);
+        }
+    }
+    
+    @Override
+    public void onCompleted() {
+        stopHeartbeat();
+        context.response().end();
+    }
+    
+    /**
+     * Status line has been already sent, so the only option is to break the connection, clients resume by the last event id
+     */
+    @Override
+    public void onError(Throwable error) {
+        stopHeartbeat();
+        context.response().close();
+    }
+    
+    private void stopHeartbeat() {
+        context.vertx().cancelTimer(heartbeatTimer);
+    }
+}
@@ -0,0 +1,8 @@
+package io.bank.api.transactions.utils;
+
+/**
+ * Source of account and transaction ids, must be thread-safe and never return the same id twice
+ */
+public interface IdGenerator {
+    String nextId();
+}
@@ -0,0 +1,86 @@
+package io.bank.api.transactions.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.rxjava.core.http.HttpServerResponse;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import rx.Observable;
+import rx.Subscriber;
+
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+
+/**
+ * Writes items to the response as a chunked JSON array. Items are serialized straight into a chunk buffer,
+ * which is written once it's big enough. Next item is requested from upstream only when response write queue
+ * has a room for it, so memory usage doesn't depend on list size
+ */
+public class JsonArrayStream<T> extends Subscriber<T> {
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final byte ARRAY_START = '[';
+    private static final byte ARRAY_END = ']';
+    private static final byte SEPARATOR = ',';
+    
+    private final RoutingContext context;
+    private ByteBuf chunk = newChunk();
+    private boolean empty = true;
+    
+    private JsonArrayStream(RoutingContext context) {
+        this.context = context;
+    }
+    
+    public static <T> void stream(Observable<T> items, RoutingContext context) {
+        JsonArrayStream<T> stream = new JsonArrayStream<>(context);
+        context.response().closeHandler(closed -> stream.unsubscribe());
+        items.subscribe(stream);
+    }
+    
+    @Override
+    public void onStart() {
+        request(1);
+    }
+    
+    @Override
+    public void onNext(T item) {
+        chunk.writeByte(empty ? ARRAY_START : SEPARATOR);
+        empty = false;
+        Converter.writeJson(item, chunk);
+        
+        if (chunk.readableBytes() < CHUNK_SIZE) {
+            request(1);
+            return;
+        }
+        HttpServerResponse response = context.response();
+        response.setChunked(true);
+        response.write(Converter.wrap(chunk));
+        chunk = newChunk();
+        if (response.writeQueueFull()) {
+            response.drainHandler(drained -> request(1));
+        } else {
+            request(1);
+        }
+    }
+    
+    @Override
+    public void onCompleted() {
+        if (empty) {
+            context.fail(HTTP_NOT_FOUND);
+        } else {
+            chunk.writeByte(ARRAY_END);
+            context.response().end(Converter.wrap(chunk));
+        }
+    }
+    
+    @Override
+    public void onError(Throwable error) {
+        if (!context.response().headWritten()) {
+            context.fail(error);
+        } else {
+            // Status line has been already sent, so the only option is to break the connection
+            context.response().close();
+        }
+    }
+    
+    private static ByteBuf newChunk() {
+        return Unpooled.buffer(CHUNK_SIZE + CHUNK_SIZE / 4);
+    }
+}
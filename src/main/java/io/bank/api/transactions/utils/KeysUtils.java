@@ -1,5 +1,6 @@
 package io.bank.api.transactions.utils;
 
+import static io.bank.api.transactions.utils.CommonUtils.getShortId;
 import static java.lang.String.format;
 
 public class KeysUtils {
@@ -7,26 +8,105 @@ public class KeysUtils {
     public static final String BALANCE = "balance";
     public static final String CREATED = "created";
     public static final String CURRENCY = "currency";
+    public static final String VERSION = "version";
     public static final String AMOUNT = "amount";
     public static final String SENDER_ID = "senderId";
     public static final String RECIPIENT_ID = "recipientId";
     public static final String ACCOUNT_KEY_PATTERN = "account:*";
     public static final String TRANSACTION_KEY_PATTERN = "transaction:*";
+    public static final String PENDING_TRANSFERS_KEY_PATTERN = "pending-transfers:*";
+    /**
+     * Sorted Set of committed transaction ids scored by feed offset, offsets are issued by the sequence key
+     */
+    public static final String TRANSACTION_FEED_KEY = "transaction-feed";
+    public static final String TRANSACTION_FEED_SEQUENCE_KEY = "transaction-feed:sequence";
+    public static final String TRANSACTION_FEED_CHANNEL = "transaction-feed:appended";
     
     private static final String ACCOUNT = "account";
     private static final String TRANSACTION = "transaction";
+    private static final String ACCOUNT_TRANSACTIONS = "account-transactions";
+    private static final String IDEMPOTENCY = "idempotency";
+    private static final String PENDING_TRANSFERS = "pending-transfers";
+    private static final String PENDING_IDEMPOTENCY_KEYS = "pending-idempotency-keys";
+    private static final String CREDITED_TRANSFERS = "credited-transfers";
+    
+    private static volatile boolean hashTagged;
+    
+    /**
+     * Cluster layout wraps ids into hash tags, so all keys of an account are stored in the same slot,
+     * e.g. "account:{id}" and "account-transactions:{id}". Transaction ids are suffixed by the sender's slot tag,
+     * so transaction hash is stored together with the sender account
+     */
+    public static void setHashTagged(boolean enabled) {
+        hashTagged = enabled;
+    }
+    
+    public static boolean isHashTagged() {
+        return hashTagged;
+    }
+    
+    /**
+     * Generates id of a new transaction of the sender
+     */
+    public static String newTransactionId(String senderId) {
+        return hashTagged ? getShortId() + SlotTags.forKey(getAccountKey(senderId)) : getShortId();
+    }
     
     /**
      * Generates a key for Redis Hash in format of "account:id"
      */
     public static String getAccountKey(String id) {
-        return format("%s:%s", ACCOUNT, id);
+        return format(hashTagged ? "%s:{%s}" : "%s:%s", ACCOUNT, id);
     }
     
     /**
-     * Generates a key for Redis Hash in format of "transaction:id"
+     * Generates a key for Redis Hash in format of "transaction:id", in cluster layout slot tag of the id is wrapped into braces
      */
     public static String getTransactionKey(String id) {
+        if (hashTagged && id.length() > SlotTags.TAG_LENGTH) {
+            int tagStart = id.length() - SlotTags.TAG_LENGTH;
+            return format("%s:%s{%s}", TRANSACTION, id.substring(0, tagStart), id.substring(tagStart));
+        }
         return format("%s:%s", TRANSACTION, id);
     }
+    
+    /**
+     * Generates a key for Redis Sorted Set of account's transaction ids in format of "account-transactions:id".
+     * It doesn't start with "account:" so it is never matched by {@link #ACCOUNT_KEY_PATTERN}
+     */
+    public static String getAccountTransactionsKey(String accountId) {
+        return format(hashTagged ? "%s:{%s}" : "%s:%s", ACCOUNT_TRANSACTIONS, accountId);
+    }
+    
+    /**
+     * Generates a key for Redis String holding id of transaction executed with client's idempotency key,
+     * in format of "idempotency:senderId:key". Keys are scoped by sender, so different clients can't collide
+     */
+    public static String getIdempotencyKey(String senderId, String idempotencyKey) {
+        return format(hashTagged ? "%s:{%s}:%s" : "%s:%s:%s", IDEMPOTENCY, senderId, idempotencyKey);
+    }
+    
+    /**
+     * Generates a key for Redis Sorted Set of sender's cross-slot transfers which are debited but not credited yet,
+     * in format of "pending-transfers:{senderId}". Used in cluster layout only
+     */
+    public static String getPendingTransfersKey(String senderId) {
+        return format("%s:{%s}", PENDING_TRANSFERS, senderId);
+    }
+    
+    /**
+     * Generates a key for Redis Hash of idempotency keys of sender's pending cross-slot transfers by transaction id,
+     * in format of "pending-idempotency-keys:{senderId}", so transfers refunded by recovery release their keys too
+     */
+    public static String getPendingIdempotencyKeysKey(String senderId) {
+        return format("%s:{%s}", PENDING_IDEMPOTENCY_KEYS, senderId);
+    }
+    
+    /**
+     * Generates a key for Redis Sorted Set of recipient's cross-slot transfers which have been credited,
+     * in format of "credited-transfers:{recipientId}". Used in cluster layout only
+     */
+    public static String getCreditedTransfersKey(String recipientId) {
+        return format("%s:{%s}", CREDITED_TRANSFERS, recipientId);
+    }
 }
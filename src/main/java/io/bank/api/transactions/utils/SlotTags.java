@@ -0,0 +1,48 @@
+package io.bank.api.transactions.utils;
+
+import com.lambdaworks.redis.cluster.SlotHash;
+
+/**
+ * Shortest hash tags for every Redis Cluster slot: a key containing "{tag}" is stored in the tag's slot.
+ * Three alphanumeric characters are enough to cover all 16384 slots
+ */
+public class SlotTags {
+    public static final int TAG_LENGTH = 3;
+    
+    private static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    
+    /**
+     * Returns tag which is stored in the same slot as the given key
+     */
+    public static String forKey(String key) {
+        return Holder.TAGS[SlotHash.getSlot(key)];
+    }
+    
+    /**
+     * Table is built on first use only, standalone deployments never pay for it
+     */
+    private static class Holder {
+        private static final String[] TAGS = buildTags();
+    }
+    
+    private static String[] buildTags() {
+        String[] tags = new String[SlotHash.SLOT_COUNT];
+        int found = 0;
+        char[] tag = new char[TAG_LENGTH];
+        for (int i = 0; i < ALPHABET.length * ALPHABET.length * ALPHABET.length && found < tags.length; i++) {
+            tag[0] = ALPHABET[i / (ALPHABET.length * ALPHABET.length)];
+            tag[1] = ALPHABET[i / ALPHABET.length % ALPHABET.length];
+            tag[2] = ALPHABET[i % ALPHABET.length];
+            String candidate = new String(tag);
+            int slot = SlotHash.getSlot(candidate);
+            if (tags[slot] == null) {
+                tags[slot] = candidate;
+                found++;
+            }
+        }
+        if (found < tags.length) {
+            throw new IllegalStateException("Hash tags don't cover all cluster slots");
+        }
+        return tags;
+    }
+}
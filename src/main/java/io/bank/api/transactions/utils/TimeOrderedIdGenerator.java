@@ -0,0 +1,65 @@
+package io.bank.api.transactions.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-like generator of 64 bit ids: 42 bits of milliseconds since 2018-01-01, 10 bits of node id and 12 bits of sequence.
+ * Ids are encoded as fixed-width Crockford Base32, so their string order is the same as creation order.
+ * Lock-free: timestamp and sequence are advanced together by a single CAS. When sequence of the current millisecond is exhausted
+ * or the clock goes backwards, the next millisecond is borrowed, so ids stay unique and monotonic without waiting
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+    public static final String NODE_ID_PROPERTY = "transactions.node.id";
+    
+    private static final long EPOCH_MILLIS = 1514764800000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789abcdefghjkmnpqrstvwxyz".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+    
+    private final long node;
+    // Millis since epoch shifted by sequence bits, plus sequence
+    private final AtomicLong state = new AtomicLong();
+    
+    public TimeOrderedIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be in range 0.." + MAX_NODE_ID);
+        }
+        this.node = nodeId << SEQUENCE_BITS;
+    }
+    
+    /**
+     * Node id is taken from "transactions.node.id" system property, instances without it get a random one.
+     * It has to be set explicitly when several API nodes write to the same Redis
+     */
+    public static TimeOrderedIdGenerator create() {
+        return new TimeOrderedIdGenerator(Long.getLong(NODE_ID_PROPERTY, ThreadLocalRandom.current().nextLong(MAX_NODE_ID + 1)));
+    }
+    
+    @Override
+    public String nextId() {
+        long next;
+        while (true) {
+            long current = state.get();
+            long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            next = now > current ? now : current + 1;
+            if (state.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return encode(timestamp << (NODE_BITS + SEQUENCE_BITS) | node | sequence);
+    }
+    
+    private static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 0x1F)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
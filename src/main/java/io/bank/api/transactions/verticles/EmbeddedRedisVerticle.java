@@ -1,5 +1,6 @@
 package io.bank.api.transactions.verticles;
 
+import io.bank.api.transactions.config.ApplicationConfig;
 import io.vertx.core.Future;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
@@ -8,14 +9,13 @@ import redis.embedded.RedisServer;
 
 public class EmbeddedRedisVerticle extends AbstractVerticle {
     private static final Logger LOG = LoggerFactory.getLogger(EmbeddedRedisVerticle.class);
-    private static final int DEFAULT_PORT = 6379;
     
     private RedisServer redisServer;
     
     @Override
     public void start(Future<Void> future) {
         try {
-            redisServer = new RedisServer(DEFAULT_PORT);
+            redisServer = new RedisServer(new ApplicationConfig(config()).redisPort());
             redisServer.start();
             LOG.info("Redis started on port: " + redisServer.ports());
             future.complete();
@@ -1,46 +1,62 @@
 package io.bank.api.transactions.verticles;
 
-import com.lambdaworks.redis.RedisURI;
-import io.bank.api.transactions.dao.RedisDao;
+import io.bank.api.transactions.config.ApplicationConfig;
 import io.bank.api.transactions.handlers.AccountsHandler;
+import io.bank.api.transactions.handlers.FeedHandler;
 import io.bank.api.transactions.handlers.TransactionsHandler;
+import io.bank.api.transactions.journal.TransactionJournal;
+import io.bank.api.transactions.metrics.Counter;
+import io.bank.api.transactions.metrics.Metrics;
+import io.bank.api.transactions.metrics.MetricsRegistry;
+import io.bank.api.transactions.metrics.Timer;
+import io.bank.api.transactions.storage.LedgerStorage;
+import io.bank.api.transactions.utils.Converter;
+import io.vertx.core.Handler;
 import io.vertx.core.Future;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.rxjava.core.AbstractVerticle;
 import io.vertx.rxjava.core.http.HttpServer;
 import io.vertx.rxjava.ext.web.Router;
+import io.vertx.rxjava.ext.web.RoutingContext;
 import io.vertx.rxjava.ext.web.handler.BodyHandler;
 import io.vertx.rxjava.ext.web.handler.ErrorHandler;
+import rx.Scheduler;
 
 import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
 
 public class HttpServerVerticle extends AbstractVerticle {
     private static final Logger LOG = LoggerFactory.getLogger(HttpServerVerticle.class);
     private static final String APPLICATION_JSON = "application/json";
     
-    private static final int HTTP_SERVER_PORT = 8080;
-    private static final int REDIS_PORT = 6379;
+    private static final int CONTENDED_ACCOUNTS_LIMIT = 20;
     
     private HttpServer server;
-    private RedisDao redisDao;
+    private LedgerStorage storage;
+    private TransactionJournal journal;
     
     @Override
     public void start(Future<Void> startFuture) {
-        RedisURI redisURI = RedisURI.builder()
-                .withHost("localhost")
-                .withPort(REDIS_PORT)
-                .build();
-        redisDao = new RedisDao(redisURI);
+        storage = vertx.getDelegate().sharedData().<String, LedgerStorage>getLocalMap(MainVerticle.SHARED_DATA).get(MainVerticle.STORAGE);
+        if (storage == null) {
+            startFuture.fail("Ledger storage must be created before HTTP server deployment");
+            return;
+        }
+        journal = vertx.getDelegate().sharedData().<String, TransactionJournal>getLocalMap(MainVerticle.SHARED_DATA).get(MainVerticle.JOURNAL);
     
         //Initializing http server
-        final Router router = createRouter();
-        server = vertx.createHttpServer();
+        ApplicationConfig config = new ApplicationConfig(config());
+        final Router router = createRouter(config.responseScheduler().create(vertx));
+        server = vertx.createHttpServer(config.httpServerOptions());
         
         server.requestStream().handler(router::accept);
         
-        server.rxListen(HTTP_SERVER_PORT)
-                .subscribe(httpServer -> LOG.info("HTTP server started on port: " + server.actualPort()));
+        server.rxListen()
+                .subscribe(httpServer -> {
+                    LOG.info("HTTP server started on port: " + server.actualPort());
+                    startFuture.complete();
+                }, startFuture::fail);
     }
 
     @Override
@@ -52,7 +68,7 @@ public class HttpServerVerticle extends AbstractVerticle {
         server.close(server -> stopFuture.complete());
     }
     
-    private Router createRouter() {
+    private Router createRouter(Scheduler scheduler) {
         Router router = Router.router(vertx);
     
         // Common handlers
@@ -67,21 +83,56 @@ public class HttpServerVerticle extends AbstractVerticle {
         
         // Healthcheck
         router.route("/health").handler(context -> context.response().end("{ \"status\": \"UP\" }"));
+        
+        // Prometheus scrape endpoint
+        router.get("/metrics").handler(context -> context.response()
+                .putHeader(CONTENT_TYPE.toString(), MetricsRegistry.CONTENT_TYPE)
+                .end(Metrics.REGISTRY.scrape()));
+        // Accounts with the most optimistic transfer conflicts, candidates for sharding
+        router.get("/metrics/contention").handler(context -> context.response()
+                .end(Converter.convertToBuffer(storage.getContendedAccounts(CONTENDED_ACCOUNTS_LIMIT))));
     
         // Account request handlers
-        AccountsHandler accountsHandler = new AccountsHandler(redisDao);
-        router.get("/accounts").handler(accountsHandler::getAllAccounts);
-        router.get("/accounts/:accountId").handler(accountsHandler::getAccount);
-        router.post("/accounts").handler(accountsHandler::createAccount);
-        router.delete("/accounts/:accountId").handler(accountsHandler::deleteAccount);
+        // Responses are handled on the configured scheduler instead of storage threads, see ResponseScheduler
+        AccountsHandler accountsHandler = new AccountsHandler(storage, scheduler);
+        router.get("/accounts").handler(timed("GET /accounts", accountsHandler::getAllAccounts));
+        router.get("/accounts/:accountId").handler(timed("GET /accounts/:accountId", accountsHandler::getAccount));
+        router.post("/accounts").handler(timed("POST /accounts", accountsHandler::createAccount));
+        router.delete("/accounts/:accountId").handler(timed("DELETE /accounts/:accountId", accountsHandler::deleteAccount));
+    
+        // Transaction feed handlers, registered before "/transactions/:transactionId" so "feed" isn't taken for an id.
+        // Streams last as long as clients stay connected, so they are not timed
+        FeedHandler feedHandler = new FeedHandler(storage, scheduler);
+        router.get("/transactions/feed").handler(feedHandler::getTransactionFeed);
+        router.get("/accounts/:accountId/transactions/feed").handler(feedHandler::getAccountTransactionFeed);
     
         // Transaction request handlers
-        TransactionsHandler transactionsHandler = new TransactionsHandler(redisDao);
-        router.get("/transactions").handler(transactionsHandler::getAllTransactions);
-        router.get("/transactions/:transactionId").handler(transactionsHandler::getTransaction);
-        router.get("/accounts/:accountId/transactions").handler(transactionsHandler::getAccountsTransactions);
-        router.post("/transactions").handler(transactionsHandler::createTransaction);
+        TransactionsHandler transactionsHandler = new TransactionsHandler(storage, journal, scheduler);
+        router.get("/transactions").handler(timed("GET /transactions", transactionsHandler::getAllTransactions));
+        router.get("/transactions/:transactionId").handler(timed("GET /transactions/:transactionId", transactionsHandler::getTransaction));
+        router.get("/accounts/:accountId/transactions").handler(timed("GET /accounts/:accountId/transactions", transactionsHandler::getAccountsTransactions));
+        router.post("/transactions").handler(timed("POST /transactions", transactionsHandler::createTransaction));
+        router.post("/transactions/batch").handler(timed("POST /transactions/batch", transactionsHandler::createTransactions));
     
         return router;
     }
+    
+    /**
+     * Records latency of the route from handler invocation till the last byte of response is written,
+     * metrics are looked up once per route, so recording doesn't touch the registry
+     */
+    private static Handler<RoutingContext> timed(String route, Handler<RoutingContext> handler) {
+        Timer timer = Metrics.REGISTRY.timer("http_request_duration_seconds", "HTTP request latency by route", "route", route);
+        Counter errors = Metrics.REGISTRY.counter("http_server_errors_total", "HTTP responses with 5xx status by route", "route", route);
+        return context -> {
+            long start = System.nanoTime();
+            context.addBodyEndHandler(ended -> {
+                timer.recordSince(start);
+                if (context.response().getStatusCode() >= HTTP_INTERNAL_ERROR) {
+                    errors.increment();
+                }
+            });
+            handler.handle(context);
+        };
+    }
 }
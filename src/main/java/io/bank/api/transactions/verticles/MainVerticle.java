@@ -1,19 +1,85 @@
 package io.bank.api.transactions.verticles;
 
+import com.lambdaworks.redis.RedisURI;
+import io.bank.api.transactions.config.ApplicationConfig;
+import io.bank.api.transactions.config.StorageEngine;
+import io.bank.api.transactions.dao.RedisDao;
+import io.bank.api.transactions.journal.JournalOptions;
+import io.bank.api.transactions.journal.TransactionJournal;
+import io.bank.api.transactions.metrics.Metrics;
+import io.bank.api.transactions.model.Page;
+import io.bank.api.transactions.model.dto.AccountDTO;
+import io.bank.api.transactions.model.dto.BatchTransactionResponse;
+import io.bank.api.transactions.model.dto.CreateAccountRequest;
+import io.bank.api.transactions.model.dto.CreateTransactionRequest;
+import io.bank.api.transactions.model.dto.TransactionDTO;
+import io.bank.api.transactions.storage.LedgerStorage;
+import io.bank.api.transactions.storage.RedisLedgerStorage;
+import io.bank.api.transactions.storage.memory.MemoryLedger;
+import io.bank.api.transactions.utils.Converter;
+import io.vertx.config.ConfigRetriever;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 import io.vertx.rxjava.core.AbstractVerticle;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
 
 public class MainVerticle extends AbstractVerticle {
+    /**
+     * Local shared map of objects created once and used by all HTTP server instances, also looked up by tests
+     */
+    public static final String SHARED_DATA = "transactions-api";
+    public static final String STORAGE = "storage";
+    static final String JOURNAL = "journal";
+    
+    private static final Logger LOG = LoggerFactory.getLogger(MainVerticle.class);
+    private static final Map<String, Long> STARTUP_PHASES = Collections.synchronizedMap(new LinkedHashMap<>());
+    
+    private ConfigRetriever configRetriever;
+    private RedisDao redisDao;
+    private LedgerStorage storage;
+    private TransactionJournal journal;
     
+    /**
+     * Startup phases run one after another, HTTP server is bound only when storage is ready and warmed up.
+     * Redis phases are skipped for in-memory storage.
+     * Duration of every phase is logged and exposed as "startup_phase_duration_millis" metric
+     */
     @Override
     public void start(Future<Void> future) {
-        CompositeFuture
-                .all(deployEmbeddedRedis(), deployHttpServer())
-                .setHandler(future.<CompositeFuture>map(res -> null).completer());
+        long started = System.nanoTime();
+        configRetriever = ApplicationConfig.createRetriever(vertx.getDelegate(), config());
+        phase("config", this::getConfig)
+                .compose(config -> config.storageEngine() == StorageEngine.MEMORY
+                        ? phase("memory_ledger", () -> createMemoryLedger(config)).map(config)
+                        : phase("embedded_redis", () -> deployEmbeddedRedis(config))
+                                .compose(deployed -> phase("redis_ready", () -> awaitRedis(config)))
+                                .compose(ready -> phase("redis_connect", () -> createRedisDao(config)))
+                                .map(config))
+                .compose(config -> phase("warm_up", this::warmUp).map(config))
+                .compose(config -> phase("journal", () -> openJournal(config)).map(config))
+                .compose(config -> phase("http_server", () -> deployHttpServer(config)))
+                .setHandler(result -> {
+                    if (result.succeeded()) {
+                        recordPhase("total", started);
+                        LOG.info("Started in " + STARTUP_PHASES.get("total") + " ms, phases: " + STARTUP_PHASES);
+                        configRetriever.listen(change -> reconfigure(new ApplicationConfig(change.getNewConfiguration())));
+                        future.complete();
+                    } else {
+                        future.fail(result.cause());
+                    }
+                });
     }
     
     @Override
@@ -23,22 +89,151 @@ public class MainVerticle extends AbstractVerticle {
                         .stream()
                         .map(this::undeployVerticle)
                         .collect(toList())
-        ).setHandler(future.<CompositeFuture>map(c -> null).completer());
+        ).setHandler(result -> {
+            if (configRetriever != null) {
+                configRetriever.close();
+                configRetriever = null;
+            }
+            if (storage != null) {
+                storage.close();
+                storage = null;
+                redisDao = null;
+            }
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            future.complete();
+        });
+    }
+    
+    private <T> Future<T> phase(String name, Supplier<Future<T>> action) {
+        long start = System.nanoTime();
+        return action.get().map(result -> {
+            recordPhase(name, start);
+            return result;
+        });
+    }
+    
+    private static void recordPhase(String name, long startNanos) {
+        STARTUP_PHASES.put(name, NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        Metrics.REGISTRY.gauge("startup_phase_duration_millis", "Duration of the last startup by phase",
+                               () -> STARTUP_PHASES.getOrDefault(name, 0L), "phase", name);
+    }
+    
+    private Future<ApplicationConfig> getConfig() {
+        Future<JsonObject> config = Future.future();
+        configRetriever.getConfig(config.completer());
+        return config.map(ApplicationConfig::new);
+    }
+    
+    /**
+     * Applied on changes of configuration file, options which can't be changed on the fly require restart
+     */
+    private void reconfigure(ApplicationConfig config) {
+        if (redisDao == null) {
+            return;
+        }
+        redisDao.reconfigure(config::applyTunables);
+        LOG.info("Configuration has changed, Redis pool, pipelining and retry options are applied");
+    }
+    
+    private Future<Void> awaitRedis(ApplicationConfig config) {
+        return new RedisReadinessProbe(vertx.getDelegate()).await(config.redisHost(), config.redisPort(), config.redisReadinessTimeoutMillis());
+    }
+    
+    /**
+     * Single thread-safe DAO is shared by all HTTP server instances. Connections are opened synchronously,
+     * so it's created out of the event loop
+     */
+    private Future<RedisDao> createRedisDao(ApplicationConfig config) {
+        return executeBlocking(() -> {
+            redisDao = new RedisDao(RedisURI.create(config.redisHost(), config.redisPort()), config.redisDaoOptions());
+            shareStorage(new RedisLedgerStorage(redisDao));
+            return redisDao;
+        });
+    }
+    
+    /**
+     * Snapshot is restored synchronously, so ledger is created out of the event loop
+     */
+    private Future<LedgerStorage> createMemoryLedger(ApplicationConfig config) {
+        return executeBlocking(() -> shareStorage(new MemoryLedger(config.memoryLedgerOptions())));
+    }
+    
+    private LedgerStorage shareStorage(LedgerStorage storage) {
+        this.storage = storage;
+        vertx.getDelegate().sharedData().<String, LedgerStorage>getLocalMap(SHARED_DATA).put(STORAGE, storage);
+        return storage;
+    }
+    
+    /**
+     * First requests don't pay for connecting, script loading and JSON mappers introspection
+     */
+    private Future<Integer> warmUp() {
+        Converter.warmUp(AccountDTO.class, TransactionDTO.class, CreateAccountRequest.class, CreateTransactionRequest.class,
+                         BatchTransactionResponse.class, Page.class);
+        if (redisDao == null) {
+            return Future.succeededFuture(0);
+        }
+        Future<Integer> warmedUp = Future.future();
+        redisDao.warmUp().subscribe(warmedUp::complete, warmedUp::fail);
+        return warmedUp;
+    }
+    
+    /**
+     * Journal is enabled only when it's directory is configured. Segments are mapped synchronously, out of the event loop
+     */
+    private Future<TransactionJournal> openJournal(ApplicationConfig config) {
+        String directory = config.journalDirectory();
+        if (directory == null) {
+            return Future.succeededFuture();
+        }
+        return executeBlocking(() -> {
+            journal = TransactionJournal.open(new JournalOptions().setDirectory(directory));
+            storage.addTransactionListener(journal);
+            vertx.getDelegate().sharedData().<String, TransactionJournal>getLocalMap(SHARED_DATA).put(JOURNAL, journal);
+            return journal;
+        });
+    }
+    
+    private <T> Future<T> executeBlocking(Callable<T> action) {
+        Future<T> future = Future.future();
+        vertx.getDelegate().<T>executeBlocking(blocking -> {
+            try {
+                blocking.complete(action.call());
+            } catch (Exception e) {
+                blocking.fail(e);
+            }
+        }, future.completer());
+        return future;
     }
     
-    private Future<String> deployEmbeddedRedis() {
-        return deployVerticle(EmbeddedRedisVerticle.class.getName());
+    /**
+     * Embedded Redis is started on the configured port unless it's disabled to connect to an external one
+     */
+    private Future<String> deployEmbeddedRedis(ApplicationConfig config) {
+        if (!config.isRedisEmbedded()) {
+            return Future.succeededFuture();
+        }
+        return deployVerticle(EmbeddedRedisVerticle.class.getName(), new DeploymentOptions()
+                .setWorker(true)
+                .setConfig(config.toJson()));
     }
     
-    private Future<String> deployHttpServer() {
-        return deployVerticle(HttpServerVerticle.class.getName());
+    /**
+     * HTTP server is deployed as a few standard verticles which share the same port,
+     * Vert.x distributes connections between their event loops
+     */
+    private Future<String> deployHttpServer(ApplicationConfig config) {
+        return deployVerticle(HttpServerVerticle.class.getName(), new DeploymentOptions()
+                .setInstances(config.httpInstances())
+                .setConfig(config.toJson()));
     }
     
-    private Future<String> deployVerticle(String verticleName) {
+    private Future<String> deployVerticle(String verticleName, DeploymentOptions options) {
         Future<String> f = Future.future();
-        DeploymentOptions options = new DeploymentOptions();
-        options.setWorker(true);
-        vertx.deployVerticle(verticleName, options);
+        vertx.getDelegate().deployVerticle(verticleName, options, f.completer());
         return f;
     }
     
@@ -0,0 +1,83 @@
+package io.bank.api.transactions.verticles;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetSocket;
+
+/**
+ * Waits until Redis answers PING over a plain TCP connection, so DAO connections are opened to a ready server only.
+ * Refused connections and errors like "-LOADING" of a server restoring it's dataset are retried until the timeout,
+ * so are connections closed by the peer or left without reply for {@link #REPLY_TIMEOUT_MILLIS}
+ */
+class RedisReadinessProbe {
+    private static final Buffer PING = Buffer.buffer("PING\r\n");
+    private static final String PONG = "+PONG";
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long REPLY_TIMEOUT_MILLIS = 1000;
+    private static final long RETRY_INTERVAL_MILLIS = 50;
+    
+    private final Vertx vertx;
+    
+    RedisReadinessProbe(Vertx vertx) {
+        this.vertx = vertx;
+    }
+    
+    Future<Void> await(String host, int port, long timeoutMillis) {
+        Future<Void> ready = Future.future();
+        Future<Void> result = Future.future();
+        NetClient client = vertx.createNetClient(new NetClientOptions().setConnectTimeout(CONNECT_TIMEOUT_MILLIS));
+        ready.setHandler(attempts -> {
+            client.close();
+            if (attempts.succeeded()) {
+                result.complete();
+            } else {
+                result.fail(new IllegalStateException("Redis at " + host + ":" + port + " is not ready", attempts.cause()));
+            }
+        });
+        attempt(client, host, port, System.currentTimeMillis() + timeoutMillis, ready);
+        return result;
+    }
+    
+    private void attempt(NetClient client, String host, int port, long deadline, Future<Void> ready) {
+        ping(client, host, port).setHandler(result -> {
+            if (result.succeeded()) {
+                ready.complete();
+            } else if (System.currentTimeMillis() >= deadline) {
+                ready.fail(result.cause());
+            } else {
+                vertx.setTimer(RETRY_INTERVAL_MILLIS, timer -> attempt(client, host, port, deadline, ready));
+            }
+        });
+    }
+    
+    private Future<Void> ping(NetClient client, String host, int port) {
+        Future<Void> pong = Future.future();
+        client.connect(port, host, connected -> {
+            if (connected.failed()) {
+                pong.fail(connected.cause());
+                return;
+            }
+            NetSocket socket = connected.result();
+            long timer = vertx.setTimer(REPLY_TIMEOUT_MILLIS, id -> pong.tryFail("No reply to PING in " + REPLY_TIMEOUT_MILLIS + " ms"));
+            pong.setHandler(result -> {
+                vertx.cancelTimer(timer);
+                socket.close();
+            });
+            socket.exceptionHandler(pong::tryFail)
+                    .closeHandler(closed -> pong.tryFail("Connection closed before reply to PING"))
+                    .handler(reply -> {
+                        String line = reply.toString().trim();
+                        if (line.startsWith(PONG)) {
+                            pong.tryComplete();
+                        } else {
+                            pong.tryFail(line);
+                        }
+                    })
+                    .write(PING);
+        });
+        return pong;
+    }
+}
@@ -0,0 +1,37 @@
+-- Last phase of cross-slot transfer, executed in the sender's slot: removes transfer from pending ones.
+-- If the recipient couldn't be credited, the sender is refunded and the transaction is removed, as if it never happened,
+-- so it's idempotency key is released and the transfer can be retried with it.
+-- KEYS: sender account, transaction, sender transactions index, sender pending transfers,
+--       optional idempotency key and sender pending idempotency keys, given if the transfer has been debited with the key
+-- ARGV: id, amount to refund (0 - transfer has been credited), transaction TTL seconds (0 - no expiration)
+-- Returns 1 if the transfer has been completed by this call, 0 if it has already been completed
+if redis.call('ZREM', KEYS[4], ARGV[1]) == 0 then
+    return 0
+end
+if KEYS[6] then
+    redis.call('HDEL', KEYS[6], ARGV[1])
+end
+
+local refund = tonumber(ARGV[2])
+if refund > 0 then
+    redis.call('HINCRBY', KEYS[1], 'balance', refund)
+    redis.call('HINCRBY', KEYS[1], 'version', 1)
+    redis.call('DEL', KEYS[2])
+    redis.call('ZREM', KEYS[3], ARGV[1])
+    -- Key may have expired and been taken by another transfer meanwhile
+    if KEYS[5] and redis.call('GET', KEYS[5]) == ARGV[1] then
+        redis.call('DEL', KEYS[5])
+    end
+else
+    if redis.call('TYPE', KEYS[2]).ok == 'string' then
+        -- Binary record, clears flags byte
+        redis.call('SETRANGE', KEYS[2], 1, '\0')
+    else
+        redis.call('HDEL', KEYS[2], 'pending')
+    end
+    local ttl = tonumber(ARGV[3])
+    if ttl > 0 then
+        redis.call('EXPIRE', KEYS[2], ttl)
+    end
+end
+return 1
@@ -0,0 +1,15 @@
+-- Creates account hash only if there is no account with the same id, like HSETNX for the whole hash.
+-- KEYS: account
+-- ARGV: id, balance, currency, created epoch millis, initial version
+-- Returns 1 if account has been created, 0 if the key already exists
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+
+redis.call('HMSET', KEYS[1],
+        'id', ARGV[1],
+        'balance', ARGV[2],
+        'currency', ARGV[3],
+        'created', ARGV[4],
+        'version', ARGV[5])
+return 1
@@ -0,0 +1,29 @@
+-- Second phase of cross-slot transfer, executed in the recipient's slot. Idempotent: transaction id in the recipient's
+-- credited transfers marks the transfer as credited, so recovery can safely repeat it. Transactions index can't be used
+-- as the marker, since it's backfilled from transaction records. Markers are trimmed by TTL, same as the index.
+-- KEYS: recipient account, recipient transactions index, recipient credited transfers
+-- ARGV: amount, currency, id, created epoch millis, transaction TTL seconds (0 - no expiration)
+-- Returns a status code: 0 - ok or already credited, 1 - unknown account, 2 - currency mismatch
+if redis.call('ZSCORE', KEYS[3], ARGV[3]) then
+    return 0
+end
+
+local recipient = redis.call('HMGET', KEYS[1], 'id', 'currency')
+if not recipient[1] then
+    return 1
+end
+if recipient[2] ~= ARGV[2] then
+    return 2
+end
+
+redis.call('HINCRBY', KEYS[1], 'balance', tonumber(ARGV[1]))
+redis.call('HINCRBY', KEYS[1], 'version', 1)
+redis.call('ZADD', KEYS[2], ARGV[4], ARGV[3])
+redis.call('ZADD', KEYS[3], ARGV[4], ARGV[3])
+local ttl = tonumber(ARGV[5])
+if ttl > 0 then
+    local expired = '(' .. (tonumber(ARGV[4]) - ttl * 1000)
+    redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', expired)
+    redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', expired)
+end
+return 0
@@ -0,0 +1,62 @@
+-- First phase of cross-slot transfer, executed in the sender's slot: debits the sender,
+-- stores the transaction record marked as pending and registers it in the sender's pending transfers.
+-- KEYS: sender account, transaction, sender transactions index, sender pending transfers,
+--       optional idempotency key and sender pending idempotency keys, which remembers the key until completion
+-- ARGV: amount, currency, id, created epoch millis, senderId, recipientId, transaction TTL seconds (0 - no expiration),
+--       record format ('hash' or 'binary'), idempotency key TTL seconds
+-- Pending record doesn't expire until "complete.lua", so recovery can always find the amount to refund.
+-- Returns a status code, same as "transfer.lua", or 7 while a transfer of the same idempotency key is pending
+if KEYS[5] then
+    local executed = redis.call('GET', KEYS[5])
+    if executed then
+        -- Transfer of the key is still pending until "complete.lua" removes it from the pending idempotency keys
+        if redis.call('HEXISTS', KEYS[6], executed) == 1 then
+            return 7
+        end
+        return 5
+    end
+end
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return 6
+end
+
+local sender = redis.call('HMGET', KEYS[1], 'id', 'balance', 'currency')
+if not sender[1] then
+    return 1
+end
+
+local amount = tonumber(ARGV[1])
+if sender[3] ~= ARGV[2] then
+    return 2
+end
+if tonumber(sender[2]) < amount then
+    return 3
+end
+
+redis.call('HINCRBY', KEYS[1], 'balance', -amount)
+redis.call('HINCRBY', KEYS[1], 'version', 1)
+if ARGV[8] == 'binary' then
+    -- Second byte holds flags, pending is the first bit
+    redis.call('SET', KEYS[2], struct.pack('>BBi8i8c3Bc0Bc0Bc0', 1, 1, tonumber(ARGV[4]), amount, ARGV[2],
+            #ARGV[3], ARGV[3], #ARGV[5], ARGV[5], #ARGV[6], ARGV[6]))
+else
+    redis.call('HMSET', KEYS[2],
+            'id', ARGV[3],
+            'amount', ARGV[1],
+            'currency', ARGV[2],
+            'created', ARGV[4],
+            'senderId', ARGV[5],
+            'recipientId', ARGV[6],
+            'pending', '1')
+end
+redis.call('ZADD', KEYS[3], ARGV[4], ARGV[3])
+redis.call('ZADD', KEYS[4], ARGV[4], ARGV[3])
+local ttl = tonumber(ARGV[7])
+if ttl > 0 then
+    redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', '(' .. (tonumber(ARGV[4]) - ttl * 1000))
+end
+if KEYS[5] then
+    redis.call('SETEX', KEYS[5], ARGV[9], ARGV[3])
+    redis.call('HSET', KEYS[6], ARGV[3], KEYS[5])
+end
+return 0
@@ -0,0 +1,25 @@
+-- Converts transaction hash into binary record of the same key, keeping it's expiration.
+-- KEYS: transaction
+-- Returns 1 if the hash has been converted, 0 if the key is missing or already binary,
+--       -1 if creation time is not in epoch millis (written by old versions), such hashes are left as they are
+if redis.call('TYPE', KEYS[1]).ok ~= 'hash' then
+    return 0
+end
+
+local fields = redis.call('HMGET', KEYS[1], 'id', 'amount', 'currency', 'created', 'senderId', 'recipientId', 'pending')
+local created = tonumber(fields[4])
+if not created then
+    return -1
+end
+local flags = 0
+if fields[7] then
+    flags = 1
+end
+local ttl = redis.call('PTTL', KEYS[1])
+
+redis.call('SET', KEYS[1], struct.pack('>BBi8i8c3Bc0Bc0Bc0', 1, flags, created, tonumber(fields[2]), fields[3],
+        #fields[1], fields[1], #fields[5], fields[5], #fields[6], fields[6]))
+if ttl > 0 then
+    redis.call('PEXPIRE', KEYS[1], ttl)
+end
+return 1
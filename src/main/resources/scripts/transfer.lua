@@ -0,0 +1,69 @@
+-- Atomically moves funds between two accounts, increments their versions, stores the transaction record
+-- and, if the feed is enabled, appends the transaction id to the transaction feed.
+-- KEYS: sender account, recipient account, transaction, sender transactions index, recipient transactions index,
+--       optional idempotency key, then feed and feed sequence if the feed is enabled
+-- ARGV: amount, currency, id, created epoch millis, senderId, recipientId, transaction TTL seconds (0 - no expiration),
+--       record format ('hash' or 'binary', see TransactionRecord), idempotency key TTL seconds,
+--       feed max length (0 - feed is disabled), feed notification channel
+-- Returns a status code: 0 - ok, 1 - unknown account, 2 - currency mismatch, 3 - insufficient funds,
+--       5 - idempotency key is already used, transaction id is stored by the key, 6 - transaction id is already used
+local feedLength = tonumber(ARGV[10])
+local idempotencyKey = #KEYS == (feedLength > 0 and 8 or 6) and KEYS[6]
+if idempotencyKey and redis.call('EXISTS', idempotencyKey) == 1 then
+    return 5
+end
+if redis.call('EXISTS', KEYS[3]) == 1 then
+    return 6
+end
+
+local sender = redis.call('HMGET', KEYS[1], 'id', 'balance', 'currency')
+local recipient = redis.call('HMGET', KEYS[2], 'id', 'currency')
+if not sender[1] or not recipient[1] then
+    return 1
+end
+
+local amount = tonumber(ARGV[1])
+if sender[3] ~= ARGV[2] or recipient[2] ~= ARGV[2] then
+    return 2
+end
+if tonumber(sender[2]) < amount then
+    return 3
+end
+
+redis.call('HINCRBY', KEYS[1], 'balance', -amount)
+redis.call('HINCRBY', KEYS[1], 'version', 1)
+redis.call('HINCRBY', KEYS[2], 'balance', amount)
+redis.call('HINCRBY', KEYS[2], 'version', 1)
+if ARGV[8] == 'binary' then
+    redis.call('SET', KEYS[3], struct.pack('>BBi8i8c3Bc0Bc0Bc0', 1, 0, tonumber(ARGV[4]), amount, ARGV[2],
+            #ARGV[3], ARGV[3], #ARGV[5], ARGV[5], #ARGV[6], ARGV[6]))
+else
+    redis.call('HMSET', KEYS[3],
+            'id', ARGV[3],
+            'amount', ARGV[1],
+            'currency', ARGV[2],
+            'created', ARGV[4],
+            'senderId', ARGV[5],
+            'recipientId', ARGV[6])
+end
+redis.call('ZADD', KEYS[4], ARGV[4], ARGV[3])
+redis.call('ZADD', KEYS[5], ARGV[4], ARGV[3])
+local ttl = tonumber(ARGV[7])
+if ttl > 0 then
+    -- Index entries of expired transactions are trimmed, older history is served by the journal
+    local horizon = '(' .. (tonumber(ARGV[4]) - ttl * 1000)
+    redis.call('EXPIRE', KEYS[3], ttl)
+    redis.call('ZREMRANGEBYSCORE', KEYS[4], '-inf', horizon)
+    redis.call('ZREMRANGEBYSCORE', KEYS[5], '-inf', horizon)
+end
+if idempotencyKey then
+    redis.call('SETEX', idempotencyKey, ARGV[9], ARGV[3])
+end
+if feedLength > 0 then
+    -- Offsets are never reused, so subscribers resume from the last seen one even after the feed is trimmed
+    local offset = redis.call('INCR', KEYS[#KEYS])
+    redis.call('ZADD', KEYS[#KEYS - 1], offset, ARGV[3])
+    redis.call('ZREMRANGEBYRANK', KEYS[#KEYS - 1], 0, -feedLength - 1)
+    redis.call('PUBLISH', ARGV[11], offset)
+end
+return 0
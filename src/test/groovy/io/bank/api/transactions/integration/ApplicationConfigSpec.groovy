@@ -0,0 +1,55 @@
+package io.bank.api.transactions.integration
+
+import io.bank.api.transactions.config.ApplicationConfig
+import io.bank.api.transactions.config.ResponseScheduler
+import io.bank.api.transactions.dao.RedisDaoOptions
+import io.bank.api.transactions.dao.TransferMode
+import io.vertx.core.json.JsonArray
+import io.vertx.core.json.JsonObject
+import spock.lang.Specification
+
+class ApplicationConfigSpec extends Specification {
+
+    def "Read options from dotted keys and environment variable names"() {
+        setup:
+        ApplicationConfig config = new ApplicationConfig(new JsonObject()
+                .put("http.port", 9090)
+                .put("HTTP_SCHEDULER", "computation")
+                .put("REDIS_POOL_MAX_TOTAL", "32")
+                .put("redis.replicas", new JsonArray().add("redis://replica:6379"))
+                .put("REDIS_TRANSFER_MODE", "optimistic")
+                .put("redis.account.cache.size", 500)
+                .put("redis.account.cache.ttl.millis", 1000)
+                .put("redis.idempotency.key.ttl.seconds", 3600))
+
+        when:
+        RedisDaoOptions options = config.redisDaoOptions()
+
+        then:
+        assert config.httpServerOptions().getPort() == 9090
+        assert config.responseScheduler() == ResponseScheduler.COMPUTATION
+        assert options.getPoolMaxTotal() == 32
+        assert options.getReplicaUris() == ["redis://replica:6379"]
+        assert options.isReadFromReplicas()
+        assert options.getTransferMode() == TransferMode.OPTIMISTIC
+        assert options.getAccountCacheSize() == 500
+        assert options.getAccountCacheTtlMillis() == 1000
+        assert options.getIdempotencyKeyTtlSeconds() == 3600
+        assert options.getPipelineBatchSize() == new RedisDaoOptions().getPipelineBatchSize()
+    }
+
+    def "Apply only tunable options on reload"() {
+        setup:
+        RedisDaoOptions options = new RedisDaoOptions()
+        ApplicationConfig changed = new ApplicationConfig(new JsonObject()
+                .put("redis.pipeline.batch.size", 500)
+                .put("redis.cluster", true))
+
+        when:
+        changed.applyTunables(options)
+
+        then:
+        assert options.getPipelineBatchSize() == 500
+        assert !options.isCluster()
+    }
+}
@@ -1,12 +1,11 @@
 package io.bank.api.transactions.integration
 
 import com.fasterxml.jackson.databind.ObjectMapper
-import com.lambdaworks.redis.RedisURI
-import io.bank.api.transactions.dao.RedisDao
 import io.bank.api.transactions.model.Account
 import io.bank.api.transactions.model.Transaction
 import io.bank.api.transactions.model.dto.CreateAccountRequest
 import io.bank.api.transactions.model.dto.CreateTransactionRequest
+import io.bank.api.transactions.storage.LedgerStorage
 import io.bank.api.transactions.verticles.MainVerticle
 import io.vertx.rxjava.core.Vertx
 import org.apache.http.client.config.RequestConfig
@@ -17,7 +16,7 @@ import spock.lang.Specification
 
 class BaseIntegrationSpec extends Specification {
     @Shared Vertx vertx
-    @Shared RedisDao redisDao
+    @Shared LedgerStorage storage
 //    @Shared RESTClient restClient
     @Shared CloseableHttpAsyncClient httpClient
     @Shared ObjectMapper objectMapper
@@ -58,9 +57,10 @@ class BaseIntegrationSpec extends Specification {
     // Invoked before first feature method
     def setupSpec() {
         vertx = Vertx.vertx()
-        vertx.deployVerticle(MainVerticle.class.getName())
+        // Main verticle completes deployment only after storage and HTTP servers are started
+        vertx.rxDeployVerticle(MainVerticle.class.getName()).toBlocking().value()
 
-        redisDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT))
+        storage = vertx.getDelegate().sharedData().<String, LedgerStorage>getLocalMap(MainVerticle.SHARED_DATA).get(MainVerticle.STORAGE)
 
 //        restClient = new RESTClient()
 //        restClient.setUri("http://${LOCALHOST}:${PORT}")
@@ -79,9 +79,6 @@ class BaseIntegrationSpec extends Specification {
         httpClient.start()
 
         objectMapper = new ObjectMapper()
-
-        // Waiting for verticles to deploy
-        sleep(1000)
     }
 
     // Invoked after last feature method
@@ -94,6 +91,11 @@ class BaseIntegrationSpec extends Specification {
 
     // Invoked after every feature method
     def cleanup() {
-        redisDao.flushAll()
+        storage.clear()
+    }
+
+    // Engine is passed by Gradle as "storage.engine" system property, which is also read by application configuration
+    static boolean isRedisEngine() {
+        return System.getProperty("storage.engine", "redis") == "redis"
     }
 }
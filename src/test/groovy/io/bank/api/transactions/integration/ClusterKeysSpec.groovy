@@ -0,0 +1,35 @@
+package io.bank.api.transactions.integration
+
+import com.lambdaworks.redis.cluster.SlotHash
+import io.bank.api.transactions.utils.KeysUtils
+import spock.lang.Specification
+
+import static io.bank.api.transactions.utils.CommonUtils.getShortId
+
+class ClusterKeysSpec extends Specification {
+
+    def setup() {
+        KeysUtils.setHashTagged(true)
+    }
+
+    def cleanup() {
+        KeysUtils.setHashTagged(false)
+    }
+
+    def "Keys written by transfer script share the sender's hash slot"() {
+        when:
+        List<String> senders = (0..<1000).collect { getShortId() }
+
+        then:
+        senders.every { sender ->
+            int slot = SlotHash.getSlot(KeysUtils.getAccountKey(sender))
+            String transactionId = KeysUtils.newTransactionId(sender)
+            [KeysUtils.getTransactionKey(transactionId),
+             KeysUtils.getAccountTransactionsKey(sender),
+             KeysUtils.getIdempotencyKey(sender, "key"),
+             KeysUtils.getPendingTransfersKey(sender),
+             KeysUtils.getPendingIdempotencyKeysKey(sender),
+             KeysUtils.getCreditedTransfersKey(sender)].every { SlotHash.getSlot(it) == slot }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.bank.api.transactions.integration
+
+import io.bank.api.transactions.dao.ReadConsistency
+import io.bank.api.transactions.model.Account
+import io.bank.api.transactions.model.Transaction
+import io.bank.api.transactions.model.TransferInProgressException
+import io.bank.api.transactions.model.TransferStatus
+import io.bank.api.transactions.storage.memory.MemoryLedger
+import io.bank.api.transactions.storage.memory.MemoryLedgerOptions
+import rx.Observable
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.Callable
+
+import static io.bank.api.transactions.utils.CommonUtils.getShortId
+import static io.bank.api.transactions.utils.KeysUtils.newTransactionId
+
+class MemoryLedgerSpec extends Specification {
+    MemoryLedgerOptions options = new MemoryLedgerOptions()
+            .setShards(4)
+            .setSnapshotDirectory(Files.createTempDirectory("ledger").toString())
+
+    private static Account account(long balance) {
+        return new Account(getShortId(), System.currentTimeMillis(), balance, "USD", Account.INITIAL_VERSION)
+    }
+
+    private static Transaction transfer(Account sender, Account recipient, long amount) {
+        return new Transaction(newTransactionId(sender.id), System.currentTimeMillis(), amount, "USD", sender.id, recipient.id)
+    }
+
+    private static long balance(MemoryLedger ledger, Account account) {
+        return ledger.getAccount(account.id, ReadConsistency.STRONG).toBlocking().value().balance
+    }
+
+    def "Keep total balance across concurrent transfers between shards"() {
+        setup:
+        MemoryLedger ledger = new MemoryLedger(options)
+        List<Account> accounts = (1..20).collect { account(1000) }
+        accounts.forEach({ ledger.createAccount(it).toBlocking().value() })
+        Random random = new Random(42)
+        List<Transaction> transfers = (1..2000).collect {
+            transfer(accounts[random.nextInt(20)], accounts[random.nextInt(20)], random.nextInt(300))
+        }
+
+        when:
+        List<Transaction> executed = Observable.from(transfers)
+                .flatMap({ ledger.createTransaction(it, null).toObservable().onErrorResumeNext(Observable.empty()) })
+                .toList()
+                .toBlocking()
+                .single()
+        List<Long> balances = accounts.collect { balance(ledger, it) }
+
+        then:
+        assert !executed.isEmpty()
+        assert balances.sum() == 20 * 1000
+        assert balances.every { it >= 0 }
+        assert ledger.getTransactions(ReadConsistency.STRONG).count().toBlocking().single() == executed.size()
+
+        cleanup:
+        ledger.close()
+    }
+
+    def "Restore accounts, transactions and idempotency keys from snapshot"() {
+        setup:
+        MemoryLedger ledger = new MemoryLedger(options)
+        Account sender = account(1000)
+        Account recipient = account(0)
+        [sender, recipient].forEach({ ledger.createAccount(it).toBlocking().value() })
+        Transaction executed = ledger.createTransaction(transfer(sender, recipient, 300), "key").toBlocking().value()
+        ledger.close()
+
+        when:
+        MemoryLedger restored = new MemoryLedger(options.setShards(3))
+        Transaction replayed = restored.createTransaction(transfer(sender, recipient, 300), "key").toBlocking().value()
+
+        then:
+        assert balance(restored, sender) == 700
+        assert balance(restored, recipient) == 300
+        assert replayed == executed
+        assert restored.getTransaction(executed.id, ReadConsistency.STRONG).toBlocking().value() == executed
+        assert restored.getAccountTransactions(recipient.id, 0, Long.MAX_VALUE, -1, ReadConsistency.STRONG)
+                .toList().toBlocking().single() == [executed]
+
+        cleanup:
+        restored.close()
+    }
+
+    def "Ask to retry transfer while cross-shard transfer of the same idempotency key is pending"() {
+        setup:
+        MemoryLedger ledger = new MemoryLedger(options)
+        Account sender = account(1000)
+        Account recipient = (1..100).collect { account(0) }.find { ledger.shardOf(it.id) != ledger.shardOf(sender.id) }
+        [sender, recipient].forEach({ ledger.createAccount(it).toBlocking().value() })
+        Transaction debited = transfer(sender, recipient, 300)
+        def senderShard = ledger.shardOf(sender.id)
+        // Only the debit is executed, as if the credit is still queued on the recipient's shard
+        assert senderShard.submit({ senderShard.debit(debited, "key", System.currentTimeMillis(), 60_000) } as Callable)
+                .toBlocking().value().status == TransferStatus.OK
+
+        when:
+        ledger.createTransaction(transfer(sender, recipient, 300), "key").toBlocking().value()
+
+        then:
+        thrown(TransferInProgressException)
+
+        when:
+        senderShard.submit({ senderShard.complete(debited) } as Callable).toBlocking().value()
+        Transaction replayed = ledger.createTransaction(transfer(sender, recipient, 300), "key").toBlocking().value()
+
+        then:
+        assert replayed == debited
+
+        cleanup:
+        ledger.close()
+    }
+}
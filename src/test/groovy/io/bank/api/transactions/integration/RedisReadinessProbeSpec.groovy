@@ -0,0 +1,86 @@
+package io.bank.api.transactions.integration
+
+import io.bank.api.transactions.verticles.RedisReadinessProbe
+import io.vertx.core.AsyncResult
+import io.vertx.core.Vertx
+import io.vertx.core.buffer.Buffer
+import io.vertx.core.net.NetServer
+import io.vertx.core.net.NetSocket
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.BlockingVariable
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class RedisReadinessProbeSpec extends Specification {
+    @Shared Vertx vertx
+    NetServer server
+
+    def setupSpec() {
+        vertx = Vertx.vertx()
+    }
+
+    def cleanupSpec() {
+        vertx.close()
+    }
+
+    def cleanup() {
+        server?.close()
+    }
+
+    // Fake server on a random port, handler decides how each connection answers PING
+    private int listen(Closure<Void> connected) {
+        BlockingVariable<Integer> port = new BlockingVariable<>(5)
+        server = vertx.createNetServer().connectHandler({ NetSocket socket -> connected(socket) })
+        server.listen(0, "localhost", { AsyncResult<NetServer> result -> port.set(result.result().actualPort()) })
+        return port.get()
+    }
+
+    private AsyncResult<Void> await(int port, long timeoutMillis) {
+        BlockingVariable<AsyncResult<Void>> result = new BlockingVariable<>(10)
+        new RedisReadinessProbe(vertx).await("localhost", port, timeoutMillis).setHandler({ result.set(it) })
+        return result.get()
+    }
+
+    def "Retry until Redis stops answering LOADING"() {
+        setup:
+        AtomicInteger connections = new AtomicInteger()
+        int port = listen { socket ->
+            boolean loading = connections.incrementAndGet() < 3
+            socket.handler({ socket.write(Buffer.buffer(loading ? "-LOADING Redis is loading the dataset in memory\r\n" : "+PONG\r\n")) })
+        }
+
+        when:
+        AsyncResult<Void> result = await(port, 5000)
+
+        then:
+        assert result.succeeded()
+        assert connections.get() == 3
+    }
+
+    def "Fail when Redis closes connections without reply"() {
+        setup:
+        int port = listen { socket -> socket.close() }
+
+        when:
+        AsyncResult<Void> result = await(port, 300)
+
+        then:
+        assert result.failed()
+    }
+
+    def "Fail when Redis never replies to PING"() {
+        setup:
+        int port = listen { socket -> socket.handler({}) }
+
+        when:
+        long start = System.currentTimeMillis()
+        AsyncResult<Void> result = await(port, 300)
+
+        then:
+        assert result.failed()
+        assert result.cause().cause.message.contains("No reply")
+        // The last attempt is bounded by the reply timeout, not left waiting forever
+        assert System.currentTimeMillis() - start < 5000
+    }
+}
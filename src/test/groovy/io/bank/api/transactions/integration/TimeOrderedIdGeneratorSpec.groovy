@@ -0,0 +1,41 @@
+package io.bank.api.transactions.integration
+
+import io.bank.api.transactions.utils.TimeOrderedIdGenerator
+import spock.lang.Specification
+
+class TimeOrderedIdGeneratorSpec extends Specification {
+
+    def "Generate unique ids in creation order"() {
+        setup:
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1)
+
+        when:
+        List<String> ids = (1..10000).collect { generator.nextId() }
+
+        then:
+        assert ids.unique(false).size() == ids.size()
+        assert ids.sort(false) == ids
+    }
+
+    def "Generate unique ids from concurrent threads"() {
+        setup:
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1)
+        List<List<String>> generated = Collections.synchronizedList([])
+
+        when:
+        (1..8).collect { Thread.start { generated << (1..10000).collect { generator.nextId() } } }*.join()
+        List<String> ids = generated.flatten()
+
+        then:
+        assert ids.size() == 80000
+        assert ids.toSet().size() == ids.size()
+    }
+
+    def "Reject node id out of range"() {
+        when:
+        new TimeOrderedIdGenerator(1024)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
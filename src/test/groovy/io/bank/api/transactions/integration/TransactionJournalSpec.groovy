@@ -0,0 +1,61 @@
+package io.bank.api.transactions.integration
+
+import io.bank.api.transactions.journal.JournalOptions
+import io.bank.api.transactions.journal.TransactionJournal
+import io.bank.api.transactions.model.Transaction
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class TransactionJournalSpec extends Specification {
+    JournalOptions options = new JournalOptions()
+            .setDirectory(Files.createTempDirectory("journal").toString())
+            .setRecordsPerSegment(10)
+            .setIndexInterval(4)
+
+    List<Transaction> transactions = (0..<25).collect {
+        new Transaction("tx${it}", 1000 + it, 100, "USD", it % 2 == 0 ? "sender" : "other", "recipient")
+    }
+
+    private static void awaitSize(TransactionJournal journal, long size) {
+        long deadline = System.currentTimeMillis() + 5000
+        while (journal.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+    }
+
+    def "Query journaled transactions by time range and account across segments"() {
+        setup:
+        TransactionJournal journal = TransactionJournal.open(options)
+        transactions.forEach({ journal.transactionCommitted(it) })
+        awaitSize(journal, transactions.size())
+
+        when:
+        List<Transaction> range = journal.getTransactions(1005, 1014, null).toList().toBlocking().single()
+        List<Transaction> account = journal.getTransactions(0, Long.MAX_VALUE, "other").toList().toBlocking().single()
+
+        then:
+        assert range == transactions.subList(5, 15)
+        assert account == transactions.findAll { it.senderId == "other" }
+
+        cleanup:
+        journal.close()
+    }
+
+    def "Recover journaled transactions after reopening"() {
+        setup:
+        TransactionJournal journal = TransactionJournal.open(options)
+        transactions.forEach({ journal.transactionCommitted(it) })
+        journal.close()
+
+        when:
+        TransactionJournal reopened = TransactionJournal.open(options)
+        List<Transaction> recovered = reopened.getTransactions(0, Long.MAX_VALUE, null).toList().toBlocking().single()
+
+        then:
+        assert recovered == transactions
+
+        cleanup:
+        reopened.close()
+    }
+}
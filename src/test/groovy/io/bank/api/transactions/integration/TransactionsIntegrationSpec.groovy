@@ -1,12 +1,35 @@
 package io.bank.api.transactions.integration
 
+import com.lambdaworks.redis.RedisClient
+import com.lambdaworks.redis.RedisURI
+import com.lambdaworks.redis.api.StatefulRedisConnection
+import io.bank.api.transactions.config.ApplicationConfig
+import io.bank.api.transactions.dao.AccountCache
+import io.bank.api.transactions.dao.ReadConsistency
+import io.bank.api.transactions.dao.RecordFormat
+import io.bank.api.transactions.dao.RedisDao
+import io.bank.api.transactions.dao.RedisDaoOptions
+import io.bank.api.transactions.dao.TransactionListener
+import io.bank.api.transactions.dao.TransferMode
+import io.bank.api.transactions.metrics.Metrics
 import io.bank.api.transactions.model.Account
+import io.bank.api.transactions.model.FeedEntry
 import io.bank.api.transactions.model.Transaction
+import io.bank.api.transactions.model.TransactionRecord
+import io.bank.api.transactions.model.TransferStatus
 import io.bank.api.transactions.model.dto.AccountDTO
 import io.bank.api.transactions.model.dto.CreateAccountRequest
 import io.bank.api.transactions.model.dto.CreateTransactionRequest
 import io.bank.api.transactions.model.dto.TransactionDTO
+import io.bank.api.transactions.storage.LedgerStorage
+import io.bank.api.transactions.storage.RedisLedgerStorage
+import io.bank.api.transactions.storage.TransactionFeed
 import io.bank.api.transactions.utils.Converter
+import io.bank.api.transactions.verticles.HttpServerVerticle
+import io.bank.api.transactions.verticles.MainVerticle
+import io.vertx.core.DeploymentOptions
+import io.vertx.core.json.JsonObject
+import io.vertx.rxjava.core.Vertx
 import org.apache.http.HttpResponse
 import org.apache.http.client.methods.HttpDelete
 import org.apache.http.client.methods.HttpGet
@@ -15,8 +38,23 @@ import org.apache.http.entity.StringEntity
 import org.apache.http.util.EntityUtils
 import org.skyscreamer.jsonassert.JSONAssert
 import org.skyscreamer.jsonassert.JSONCompareMode
+import rx.Observable
+import rx.functions.Func1
+import rx.observers.TestSubscriber
+import spock.lang.Requires
+import spock.lang.Shared
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.TimeUnit
+
+import static io.bank.api.transactions.utils.CommonUtils.getShortId
+import static io.bank.api.transactions.utils.KeysUtils.getAccountKey
+import static io.bank.api.transactions.utils.KeysUtils.getIdempotencyKey
+import static io.bank.api.transactions.utils.KeysUtils.getTransactionKey
+import static io.bank.api.transactions.utils.KeysUtils.newTransactionId
 
 class TransactionsIntegrationSpec extends BaseIntegrationSpec {
+    @Shared int FEED_PORT = 8081
 
     private HttpResponse postTransaction(CreateTransactionRequest createTransactionRequest) {
         HttpPost request = new HttpPost(TRANSACTIONS_URL)
@@ -26,6 +64,60 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
         return httpClient.execute(request, null).get()
     }
 
+    private RedisDao newFeedDao() {
+        return new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions()
+                .setAccountCacheEnabled(false)
+                .setTransactionFeedEnabled(true))
+    }
+
+    /**
+     * Application is started with the feed disabled, so storage with the feed enabled is served by another HTTP server
+     */
+    private Vertx startFeedServer(RedisDao feedDao) {
+        Vertx feedVertx = Vertx.vertx()
+        feedVertx.getDelegate().sharedData().<String, LedgerStorage>getLocalMap(MainVerticle.SHARED_DATA)
+                .put(MainVerticle.STORAGE, new RedisLedgerStorage(feedDao))
+        feedVertx.rxDeployVerticle(HttpServerVerticle.class.getName(), new DeploymentOptions()
+                .setConfig(new JsonObject().put(ApplicationConfig.HTTP_PORT, FEED_PORT).put(ApplicationConfig.HTTP_INSTANCES, 1)))
+                .toBlocking().value()
+        return feedVertx
+    }
+
+    private HttpURLConnection openFeed(String path, Map<String, String> headers = [:]) {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://${LOCALHOST}:${FEED_PORT}${path}").openConnection()
+        connection.setRequestProperty("Accept", "text/event-stream")
+        headers.each { name, value -> connection.setRequestProperty(name, value) }
+        connection.setReadTimeout(5000)
+        return connection
+    }
+
+    private static BufferedReader readEvents(HttpURLConnection connection) {
+        return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))
+    }
+
+    /**
+     * Reads fields of the next event, heartbeat comments are skipped
+     */
+    private static Map<String, String> readEvent(BufferedReader events) {
+        Map<String, String> event = [:]
+        String line
+        while ((line = events.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (!event.isEmpty()) {
+                    return event
+                }
+            } else if (!line.startsWith(":")) {
+                int colon = line.indexOf(":")
+                event[line.substring(0, colon)] = line.substring(colon + 1).trim()
+            }
+        }
+        return event
+    }
+
+    private TransactionDTO readTransaction(Map<String, String> event) {
+        return objectMapper.readValue(event.data, TransactionDTO)
+    }
+
     private HttpResponse postAccount(CreateAccountRequest createAccountRequest) {
         HttpPost request = new HttpPost(ACCOUNTS_URL)
         request.addHeader(CONTENT_TYPE, APPLICATION_JSON)
@@ -60,8 +152,8 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
 
     def "Return 500 if sender account does not exist"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
-        redisDao.createAccount(testAccountTwo).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
         CreateTransactionRequest transactionRequest = new CreateTransactionRequest()
                 .setAmount(100)
                 .setCurrencyCode("USD")
@@ -77,8 +169,8 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
 
     def "Return 500 if sender balance is not enough"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
-        redisDao.createAccount(testAccountTwo).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
         CreateTransactionRequest transactionRequest = new CreateTransactionRequest()
                 .setAmount(10000000000)
                 .setSenderAccountId(testAccountOne.id)
@@ -93,8 +185,8 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
 
     def "Return 500 if transaction has invalid currency"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
-        redisDao.createAccount(testAccountTwo).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
         CreateTransactionRequest transactionRequest = new CreateTransactionRequest()
                 .setAmount(100)
                 .setCurrencyCode("US_DOLLAR")
@@ -111,7 +203,7 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
     def "Get all accounts"() {
         setup:
         def testAccounts = [Account.fromRequest(createAccountRequest), Account.fromRequest(createAccountRequest)]
-        testAccounts.forEach({ account -> redisDao.createAccount(account).toBlocking().value() })
+        testAccounts.forEach({ account -> storage.createAccount(account).toBlocking().value() })
         testAccounts = testAccounts.collect {AccountDTO.fromAccount(it)}
 
         when:
@@ -124,9 +216,39 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
                 JSONCompareMode.LENIENT)
     }
 
+    def "Get all accounts page by page"() {
+        setup:
+        def testAccounts = (1..5).collect { Account.fromRequest(createAccountRequest) }
+        testAccounts.forEach({ account -> storage.createAccount(account).toBlocking().value() })
+
+        when:
+        def receivedIds = []
+        String cursor = ""
+        while (cursor != null) {
+            HttpResponse response = httpClient.execute(new HttpGet("${ACCOUNTS_URL}?limit=2&cursor=${cursor}"), null).get()
+            def page = objectMapper.readValue(EntityUtils.toString(response.getEntity()), Map)
+            receivedIds.addAll(page.items.collect { it.id })
+            cursor = page.cursor
+        }
+
+        then:
+        receivedIds.toSet() == testAccounts.collect { it.id }.toSet()
+    }
+
+    def "Return 400 for malformed page cursor"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+
+        when:
+        HttpResponse response = httpClient.execute(new HttpGet("${ACCOUNTS_URL}?limit=2&cursor=not-a-cursor"), null).get()
+
+        then:
+        assert response.getStatusLine().getStatusCode() == 400
+    }
+
     def "Get account by id"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
 
         when:
         HttpResponse response = httpClient.execute(new HttpGet(getAccountUrl(testAccountOne.id)), null).get()
@@ -138,6 +260,106 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
                 JSONCompareMode.LENIENT)
     }
 
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Read account with requested consistency"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        RedisDao replicaDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions()
+                .setAccountCacheEnabled(false)
+                .setReadFromReplicas(true))
+
+        when:
+        HttpResponse strong = httpClient.execute(new HttpGet(getAccountUrl(testAccountOne.id) + "?consistency=strong"), null).get()
+        HttpResponse invalid = httpClient.execute(new HttpGet(getAccountUrl(testAccountOne.id) + "?consistency=linearizable"), null).get()
+        // Without replicas Master/Slave connection falls back to the primary
+        Account eventual = Account.fromHash(replicaDao.getAccountHash(testAccountOne.id, ReadConsistency.EVENTUAL).toBlocking().value())
+
+        then:
+        assert Converter.convertFromJson(EntityUtils.toString(strong.getEntity()), AccountDTO.class).getId() == testAccountOne.id
+        assert invalid.getStatusLine().getStatusCode() == 400
+        assert eventual == testAccountOne
+
+        cleanup:
+        replicaDao.close()
+    }
+
+    def "Return actual balance of cached account after transaction"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        // Populating account cache
+        EntityUtils.consume(httpClient.execute(new HttpGet(getAccountUrl(testAccountOne.id)), null).get().getEntity())
+
+        when:
+        EntityUtils.consume(postTransaction(createTransactionRequest).getEntity())
+        HttpResponse response = httpClient.execute(new HttpGet(getAccountUrl(testAccountOne.id)), null).get()
+        AccountDTO senderAccount = Converter.convertFromJson(EntityUtils.toString(response.getEntity()), AccountDTO.class)
+
+        then:
+        senderAccount.getBalance() == createAccountRequest.balance - createTransactionRequest.amount
+    }
+
+    def "Drop cached account load only if the same account has been invalidated meanwhile"() {
+        setup:
+        AccountCache cache = new AccountCache(new RedisDaoOptions())
+        String changed = getAccountKey(testAccountOne.id)
+        // Invalidations are counted per stripe of keys, the other account must not share it
+        String unchanged = (1..100).collect { getAccountKey(getShortId()) }.find { AccountCache.stripe(it) != AccountCache.stripe(changed) }
+        Map<String, String> hash = [id: testAccountTwo.id]
+
+        when:
+        long changedVersion = cache.version(changed)
+        long unchangedVersion = cache.version(unchanged)
+        cache.invalidate(changed)
+        cache.put(changed, hash, changedVersion)
+        cache.put(unchanged, hash, unchangedVersion)
+
+        then:
+        assert cache.get(changed) == null
+        assert cache.get(unchanged) == hash
+
+        cleanup:
+        cache.close()
+    }
+
+    def "Answer conditional account request with 304 until balance changes"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        HttpResponse first = httpClient.execute(new HttpGet(getAccountUrl(testAccountOne.id)), null).get()
+        String etag = first.getFirstHeader("ETag").getValue()
+        EntityUtils.consume(first.getEntity())
+
+        when:
+        HttpGet conditional = new HttpGet(getAccountUrl(testAccountOne.id))
+        conditional.addHeader("If-None-Match", etag)
+        HttpResponse unchanged = httpClient.execute(conditional, null).get()
+        EntityUtils.consume(postTransaction(createTransactionRequest).getEntity())
+        HttpResponse changed = httpClient.execute(conditional, null).get()
+
+        then:
+        assert unchanged.getStatusLine().getStatusCode() == 304
+        assert unchanged.getEntity() == null || EntityUtils.toString(unchanged.getEntity()).isEmpty()
+        assert changed.getStatusLine().getStatusCode() == 200
+        assert changed.getFirstHeader("ETag").getValue() != etag
+        assert Converter.convertFromJson(EntityUtils.toString(changed.getEntity()), AccountDTO.class).getBalance() ==
+               createAccountRequest.balance - createTransactionRequest.amount
+    }
+
+    def "Compress account list for clients accepting gzip"() {
+        setup:
+        (1..20).each { storage.createAccount(Account.fromRequest(createAccountRequest)).toBlocking().value() }
+
+        when:
+        HttpGet request = new HttpGet(ACCOUNTS_URL + "?limit=20")
+        request.addHeader("Accept-Encoding", "gzip")
+        HttpResponse response = httpClient.execute(request, null).get()
+
+        then:
+        assert response.getStatusLine().getStatusCode() == 200
+        assert response.getFirstHeader("Content-Encoding").getValue() == "gzip"
+    }
+
     def "Create account"() {
         when:
         HttpResponse response = postAccount(createAccountRequest)
@@ -148,9 +370,22 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
         assert createAccountRequest.currencyCode == createdAccount.getCurrency()
     }
 
+    def "Refuse to overwrite account with colliding id"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        Account colliding = new Account(testAccountOne.id, testAccountOne.created, 1, "EUR", Account.INITIAL_VERSION)
+
+        when:
+        storage.createAccount(colliding).toBlocking().value()
+
+        then:
+        thrown(IllegalStateException)
+        storage.getAccount(testAccountOne.id, ReadConsistency.STRONG).toBlocking().value() == testAccountOne
+    }
+
     def "Delete account"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
 
         when:
         HttpResponse response = httpClient.execute(new HttpDelete(getAccountUrl(testAccountOne.id)), null).get()
@@ -161,12 +396,12 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
 
     def "Get all transactions"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
-        redisDao.createAccount(testAccountTwo).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
         def testTransactions = [Transaction.fromRequest(createTransactionRequest),
                                 Transaction.fromRequest(createTransactionRequest),
                                 Transaction.fromRequest(createTransactionRequest)]
-        testTransactions.forEach({ transaction -> redisDao.createTransaction(transaction).toBlocking().value() })
+        testTransactions.forEach({ transaction -> storage.createTransaction(transaction, null).toBlocking().value() })
         testTransactions = testTransactions.collect {TransactionDTO.fromTransaction(it)}
 
         when:
@@ -181,9 +416,9 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
 
     def "Get transaction by id"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
-        redisDao.createAccount(testAccountTwo).toBlocking().value()
-        redisDao.createTransaction(testTransaction).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        storage.createTransaction(testTransaction, null).toBlocking().value()
 
         when:
         HttpResponse response = httpClient.execute(new HttpGet(getTransactionUrl(testTransaction.id)), null).get()
@@ -197,8 +432,8 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
     
     def "Create transaction"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
-        redisDao.createAccount(testAccountTwo).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
 
         when:
         HttpResponse response = postTransaction(createTransactionRequest)
@@ -212,14 +447,146 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
         assert expectedTransaction.recipientId == createdTransaction.getRecipientId()
     }
 
+    def "Execute transaction once for repeated requests with the same idempotency key"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+
+        when:
+        List<HttpResponse> responses = (1..3).collect {
+            HttpPost request = new HttpPost(TRANSACTIONS_URL)
+            request.addHeader(CONTENT_TYPE, APPLICATION_JSON)
+            request.addHeader("Idempotency-Key", "retried-request")
+            request.setEntity(new StringEntity(objectMapper.writeValueAsString(createTransactionRequest)))
+            httpClient.execute(request, null).get()
+        }
+        List<TransactionDTO> transactions = responses.collect {
+            Converter.convertFromJson(EntityUtils.toString(it.getEntity()), TransactionDTO.class)
+        }
+        Account sender = storage.getAccount(testAccountOne.id, ReadConsistency.STRONG).toBlocking().value()
+
+        then:
+        assert responses.every { it.getStatusLine().getStatusCode() == 200 }
+        assert transactions.collect { it.id }.unique().size() == 1
+        assert responses[0].getFirstHeader("Idempotent-Replayed") == null
+        assert responses[2].getFirstHeader("Idempotent-Replayed").getValue() == "true"
+        assert sender.getBalance() == 10000 - 1000
+    }
+
+    def "Reject idempotency key reused for another transaction"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+
+        when:
+        List<HttpResponse> responses = [createTransactionRequest.amount, createTransactionRequest.amount + 1].collect { amount ->
+            HttpPost request = new HttpPost(TRANSACTIONS_URL)
+            request.addHeader(CONTENT_TYPE, APPLICATION_JSON)
+            request.addHeader("Idempotency-Key", "reused-key")
+            request.setEntity(new StringEntity(objectMapper.writeValueAsString(new CreateTransactionRequest()
+                    .setAmount(amount)
+                    .setCurrencyCode(createTransactionRequest.currencyCode)
+                    .setSenderAccountId(createTransactionRequest.senderAccountId)
+                    .setRecipientAccountId(createTransactionRequest.recipientAccountId))))
+            httpClient.execute(request, null).get()
+        }
+
+        then:
+        assert responses[0].getStatusLine().getStatusCode() == 200
+        assert responses[1].getStatusLine().getStatusCode() == 422
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Expire idempotency key no later than its transaction"() {
+        setup:
+        RedisDao expiringDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions()
+                .setAccountCacheEnabled(false)
+                .setTransactionTtlSeconds(60))
+        RedisClient client = RedisClient.create(RedisURI.create(LOCALHOST, REDIS_PORT))
+        StatefulRedisConnection<String, String> connection = client.connect()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+
+        when:
+        Transaction transaction = expiringDao.createTransaction(Transaction.fromRequest(createTransactionRequest), "expiring-key").toBlocking().value()
+        long keyTtl = connection.sync().ttl(getIdempotencyKey(transaction.senderId, "expiring-key"))
+
+        then:
+        assert keyTtl > 0 && keyTtl <= 60
+
+        cleanup:
+        connection.close()
+        client.shutdown()
+        expiringDao.close()
+    }
+
+    def "Expose transfer and route metrics"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        postTransaction(createTransactionRequest)
+
+        when:
+        HttpResponse response = httpClient.execute(new HttpGet("http://${LOCALHOST}:${PORT}/metrics"), null).get()
+        String metrics = EntityUtils.toString(response.getEntity())
+
+        then:
+        assert response.getStatusLine().getStatusCode() == 200
+        assert response.getFirstHeader(CONTENT_TYPE).getValue().startsWith("text/plain")
+        assert metrics =~ /transfers_total\{status="ok"\} [1-9]/
+        assert metrics =~ /http_request_duration_seconds_count\{route="POST \/transactions"\} [1-9]/
+        assert !isRedisEngine() || metrics.contains('redis_command_duration_seconds{command="transfer",quantile="0.99"}')
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Report gauges of the latest open DAO"() {
+        setup:
+        RedisDao otherDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions()
+                .setAccountCacheEnabled(false)
+                .setSharedConnections(3))
+
+        when:
+        String whileOpen = Metrics.REGISTRY.scrape()
+        otherDao.close()
+        String afterClose = Metrics.REGISTRY.scrape()
+
+        then:
+        assert whileOpen.contains("redis_shared_connections 3")
+        assert afterClose.contains("redis_shared_connections ${new RedisDaoOptions().sharedConnections}")
+    }
+
+    def "Execute batch of transactions with partial failure"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        CreateTransactionRequest invalidRequest = new CreateTransactionRequest()
+                .setAmount(100)
+                .setCurrencyCode("US_DOLLAR")
+                .setSenderAccountId(testAccountOne.id)
+                .setRecipientAccountId(testAccountTwo.id)
+        HttpPost request = new HttpPost("${TRANSACTIONS_URL}/batch")
+        request.addHeader(CONTENT_TYPE, APPLICATION_JSON)
+        request.setEntity(new StringEntity(objectMapper.writeValueAsString(
+                [createTransactionRequest, invalidRequest, createTransactionRequest])))
+
+        when:
+        HttpResponse response = httpClient.execute(request, null).get()
+        def batchResponse = objectMapper.readValue(EntityUtils.toString(response.getEntity()), Map)
+
+        then:
+        batchResponse.succeeded == 2
+        batchResponse.failed == 1
+        batchResponse.results.collect { it.status } == ["OK", "INVALID_REQUEST", "OK"]
+    }
+
     def "Get accounts transactions"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
-        redisDao.createAccount(testAccountTwo).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
         def testTransactions = [Transaction.fromRequest(createTransactionRequest),
                                 Transaction.fromRequest(createTransactionRequest),
                                 Transaction.fromRequest(createTransactionRequest)]
-        testTransactions.forEach({ transaction -> redisDao.createTransaction(transaction).toBlocking().value() })
+        testTransactions.forEach({ transaction -> storage.createTransaction(transaction, null).toBlocking().value() })
         testTransactions = testTransactions.collect {TransactionDTO.fromTransaction(it)}
 
         when:
@@ -232,10 +599,66 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
                 JSONCompareMode.LENIENT)
     }
 
+    def "Filter accounts transactions by creation time and limit"() {
+        setup:
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        List<Transaction> testTransactions = [1000, 2000, 3000].collect {
+            new Transaction(newTransactionId(testAccountOne.id), it, 100, "USD", testAccountOne.id, testAccountTwo.id)
+        }
+        testTransactions.forEach({ transaction -> storage.createTransaction(transaction, null).toBlocking().value() })
+        List<TransactionDTO> expected = testTransactions.collect { TransactionDTO.fromTransaction(it) }
+
+        when:
+        HttpResponse range = httpClient.execute(new HttpGet("${getAccountsTransactionsUrl(testAccountTwo.id)}?from=1500&to=3000"), null).get()
+        HttpResponse limited = httpClient.execute(new HttpGet("${getAccountsTransactionsUrl(testAccountOne.id)}?limit=2"), null).get()
+        HttpResponse rangeLimited = httpClient.execute(new HttpGet("${getAccountsTransactionsUrl(testAccountOne.id)}?from=1500&limit=1"), null).get()
+        HttpResponse malformed = httpClient.execute(new HttpGet("${getAccountsTransactionsUrl(testAccountOne.id)}?from=yesterday"), null).get()
+
+        then:
+        JSONAssert.assertEquals(objectMapper.writeValueAsString(expected[1..2]), EntityUtils.toString(range.getEntity()), JSONCompareMode.STRICT)
+        JSONAssert.assertEquals(objectMapper.writeValueAsString(expected[0..1]), EntityUtils.toString(limited.getEntity()), JSONCompareMode.STRICT)
+        JSONAssert.assertEquals(objectMapper.writeValueAsString(expected[1..1]), EntityUtils.toString(rangeLimited.getEntity()), JSONCompareMode.STRICT)
+        assert malformed.getStatusLine().getStatusCode() == 400
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Backfill account transactions indexes for transactions written without them"() {
+        setup:
+        RedisDao backfillDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions().setAccountCacheEnabled(false))
+        RedisClient client = RedisClient.create(RedisURI.create(LOCALHOST, REDIS_PORT))
+        StatefulRedisConnection<String, String> connection = client.connect()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        // Written the way versions without the index did
+        connection.sync().hmset(getTransactionKey(testTransaction.id), testTransaction.toHash())
+        Transaction indexed = storage.createTransaction(Transaction.fromRequest(createTransactionRequest), null).toBlocking().value()
+        List<TransactionDTO> expected = [testTransaction, indexed].collect { TransactionDTO.fromTransaction(it) }
+
+        when:
+        String before = EntityUtils.toString(httpClient.execute(new HttpGet(getAccountsTransactionsUrl(testAccountTwo.id)), null).get().getEntity())
+        int processed = backfillDao.backfillAccountTransactionIndexes().toBlocking().value()
+        int reprocessed = backfillDao.backfillAccountTransactionIndexes().toBlocking().value()
+        String sender = EntityUtils.toString(httpClient.execute(new HttpGet(getAccountsTransactionsUrl(testAccountOne.id)), null).get().getEntity())
+        String recipient = EntityUtils.toString(httpClient.execute(new HttpGet(getAccountsTransactionsUrl(testAccountTwo.id)), null).get().getEntity())
+
+        then:
+        JSONAssert.assertEquals(objectMapper.writeValueAsString(expected[1..1]), before, JSONCompareMode.STRICT)
+        assert processed == 2
+        assert reprocessed == 2
+        JSONAssert.assertEquals(objectMapper.writeValueAsString(expected), sender, JSONCompareMode.STRICT)
+        JSONAssert.assertEquals(objectMapper.writeValueAsString(expected), recipient, JSONCompareMode.STRICT)
+
+        cleanup:
+        connection.close()
+        client.shutdown()
+        backfillDao.close()
+    }
+
     def "Execute concurrent transaction's requests on the same account correctly"() {
         setup:
-        redisDao.createAccount(testAccountOne).toBlocking().value()
-        redisDao.createAccount(testAccountTwo).toBlocking().value()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
 
         List<CreateTransactionRequest> transactionRequests = new ArrayList<>()
         for (int i; i < 20; i++) {
@@ -250,4 +673,398 @@ class TransactionsIntegrationSpec extends BaseIntegrationSpec {
         then:
         assert senderAccount.getBalance() == 0
     }
-}
\ No newline at end of file
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Execute concurrent optimistic transactions on the same account correctly"() {
+        setup:
+        RedisDao optimisticDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions()
+                .setTransferMode(TransferMode.OPTIMISTIC)
+                .setTransferMaxRetries(100))
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+
+        when:
+        List<Transaction> transactions = (1..20).collect { Transaction.fromRequest(createTransactionRequest) }
+        Observable.from(transactions)
+                // Only half of transfers fit into sender's balance, the rest fail with insufficient funds
+                .flatMap({ transaction -> optimisticDao.createTransaction(transaction).toObservable().onErrorResumeNext(Observable.empty()) })
+                .toList()
+                .toBlocking()
+                .single()
+        Account sender = storage.getAccount(testAccountOne.id, ReadConsistency.STRONG).toBlocking().value()
+        Account recipient = storage.getAccount(testAccountTwo.id, ReadConsistency.STRONG).toBlocking().value()
+
+        then:
+        assert sender.getBalance() == 0
+        assert recipient.getBalance() == 20000
+
+        cleanup:
+        optimisticDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Execute cross-slot transfer in two phases"() {
+        setup:
+        // Two-phase transfers are chosen only for accounts of different cluster slots, scripts themselves run on any Redis
+        RedisDao twoPhaseDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions().setAccountCacheEnabled(false))
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+
+        when:
+        TransferStatus status = twoPhaseDao.transferTwoPhase(testTransaction, null).toBlocking().value()
+        Transaction transaction = twoPhaseDao.getTransaction(testTransaction.id).toBlocking().value()
+
+        then:
+        assert status == TransferStatus.OK
+        assert transaction == testTransaction
+        assert Account.fromHash(twoPhaseDao.getAccountHash(testAccountOne.id).toBlocking().value()).balance == 10000 - 1000
+        assert Account.fromHash(twoPhaseDao.getAccountHash(testAccountTwo.id).toBlocking().value()).balance == 10000 + 1000
+        assert twoPhaseDao.recoverPendingTransfers(0).toBlocking().value() == 0
+
+        cleanup:
+        twoPhaseDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Refund cross-slot transfer declined by recipient and accept retry with the same idempotency key"() {
+        setup:
+        RedisDao twoPhaseDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions().setAccountCacheEnabled(false))
+        storage.createAccount(testAccountOne).toBlocking().value()
+
+        when:
+        TransferStatus declined = twoPhaseDao.transferTwoPhase(testTransaction, "refunded-key").toBlocking().value()
+        Account refunded = Account.fromHash(twoPhaseDao.getAccountHash(testAccountOne.id).toBlocking().value())
+        List<Transaction> removed = twoPhaseDao.getTransactions([getTransactionKey(testTransaction.id)], ReadConsistency.STRONG)
+                .toList().toBlocking().single()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        TransferStatus retried = twoPhaseDao.transferTwoPhase(Transaction.fromRequest(createTransactionRequest), "refunded-key").toBlocking().value()
+
+        then:
+        assert declined == TransferStatus.UNKNOWN_ACCOUNT
+        assert refunded.balance == 10000
+        assert removed.isEmpty()
+        assert retried == TransferStatus.OK
+
+        cleanup:
+        twoPhaseDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Recover pending transfers interrupted between debit and credit"() {
+        setup:
+        RedisDao twoPhaseDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions().setAccountCacheEnabled(false))
+        storage.createAccount(testAccountOne).toBlocking().value()
+        Transaction credited = Transaction.fromRequest(createTransactionRequest)
+        Transaction declined = new Transaction(getShortId(), System.currentTimeMillis(), 1000, "USD", testAccountOne.id, "missing")
+        // Only the first phase is executed, as if the instance has died right after it
+        [credited, declined].each { transaction ->
+            assert twoPhaseDao.connections.execute({ commands -> twoPhaseDao.debit(commands, transaction, transaction.id) } as Func1)
+                    .toBlocking().single() == TransferStatus.OK
+        }
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        List<Transaction> committed = Collections.synchronizedList([])
+        twoPhaseDao.addTransactionListener({ committed << it } as TransactionListener)
+
+        when:
+        int recovered = twoPhaseDao.recoverPendingTransfers(0).toBlocking().value()
+        TransferStatus retried = twoPhaseDao.transferTwoPhase(Transaction.fromRequest(createTransactionRequest), declined.id).toBlocking().value()
+
+        then:
+        assert recovered == 2
+        assert twoPhaseDao.recoverPendingTransfers(0).toBlocking().value() == 0
+        assert Account.fromHash(twoPhaseDao.getAccountHash(testAccountOne.id).toBlocking().value()).balance == 10000 - 2000
+        assert Account.fromHash(twoPhaseDao.getAccountHash(testAccountTwo.id).toBlocking().value()).balance == 10000 + 2000
+        assert twoPhaseDao.getTransaction(credited.id).toBlocking().value() == credited
+        // Journal and other listeners see the recovered transfer, but not the refunded one
+        assert committed == [credited]
+        // Refunded transfer has released it's idempotency key
+        assert retried == TransferStatus.OK
+
+        cleanup:
+        twoPhaseDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Credit pending transfer once even if indexes are backfilled while it's pending"() {
+        setup:
+        RedisDao twoPhaseDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT),
+                                            new RedisDaoOptions().setAccountCacheEnabled(false).setTransactionTtlSeconds(60))
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        assert twoPhaseDao.connections.execute({ commands -> twoPhaseDao.debit(commands, testTransaction, null) } as Func1)
+                .toBlocking().single() == TransferStatus.OK
+
+        when:
+        int backfilled = twoPhaseDao.backfillAccountTransactionIndexes().toBlocking().value()
+        long pendingTtl = twoPhaseDao.connections.execute({ commands -> commands.ttl(getTransactionKey(testTransaction.id)) } as Func1)
+                .toBlocking().single()
+        int recovered = twoPhaseDao.recoverPendingTransfers(0).toBlocking().value()
+        long completedTtl = twoPhaseDao.connections.execute({ commands -> commands.ttl(getTransactionKey(testTransaction.id)) } as Func1)
+                .toBlocking().single()
+
+        then:
+        assert backfilled == 0
+        // Pending record doesn't expire, so it's always found by recovery
+        assert pendingTtl == -1
+        assert recovered == 1
+        assert completedTtl > 0
+        assert Account.fromHash(twoPhaseDao.getAccountHash(testAccountOne.id).toBlocking().value()).balance == 10000 - 1000
+        assert Account.fromHash(twoPhaseDao.getAccountHash(testAccountTwo.id).toBlocking().value()).balance == 10000 + 1000
+
+        cleanup:
+        twoPhaseDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Ask to retry transfer while cross-slot transfer of the same idempotency key is pending"() {
+        setup:
+        RedisDao twoPhaseDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions().setAccountCacheEnabled(false))
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        assert twoPhaseDao.connections.execute({ commands -> twoPhaseDao.debit(commands, testTransaction, "pending-key") } as Func1)
+                .toBlocking().single() == TransferStatus.OK
+
+        when:
+        TransferStatus pending = twoPhaseDao.transferTwoPhase(Transaction.fromRequest(createTransactionRequest), "pending-key").toBlocking().value()
+        twoPhaseDao.recoverPendingTransfers(0).toBlocking().value()
+        Transaction replayed = twoPhaseDao.createTransaction(Transaction.fromRequest(createTransactionRequest), "pending-key").toBlocking().value()
+
+        then:
+        assert pending == TransferStatus.IN_PROGRESS
+        assert replayed == testTransaction
+
+        cleanup:
+        twoPhaseDao.close()
+    }
+
+    def "Encode transaction record"() {
+        when:
+        byte[] record = TransactionRecord.encode(testTransaction)
+
+        then:
+        assert TransactionRecord.decode(record) == testTransaction
+        assert record.length == 24 + testTransaction.id.length() + testTransaction.senderId.length() + testTransaction.recipientId.length()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Read and migrate transactions of both record formats"() {
+        setup:
+        RedisDao binaryDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions()
+                .setAccountCacheEnabled(false)
+                .setRecordFormat(RecordFormat.BINARY))
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        Transaction hashTransaction = storage.createTransaction(testTransaction, null).toBlocking().value()
+        Transaction binaryTransaction = binaryDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+
+        when:
+        Transaction binaryReadByHashDao = storage.getTransaction(binaryTransaction.id, ReadConsistency.STRONG).toBlocking().value()
+        Transaction hashReadByBinaryDao = binaryDao.getTransaction(hashTransaction.id).toBlocking().value()
+        List<Transaction> history = storage.getAccountTransactions(testAccountOne.id, 0, Long.MAX_VALUE, -1, ReadConsistency.STRONG)
+                .toList().toBlocking().single()
+        int converted = binaryDao.migrateTransactionRecords().toBlocking().value()
+        List<Transaction> migrated = binaryDao.getTransactions([hashTransaction.id, binaryTransaction.id].collect { getTransactionKey(it) },
+                                                               ReadConsistency.STRONG).toList().toBlocking().single()
+
+        then:
+        assert binaryReadByHashDao == binaryTransaction
+        assert hashReadByBinaryDao == hashTransaction
+        assert history == [hashTransaction, binaryTransaction]
+        assert converted == 1
+        assert migrated == [hashTransaction, binaryTransaction]
+
+        cleanup:
+        binaryDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Tail transaction feed from offset and live"() {
+        setup:
+        RedisDao feedDao = new RedisDao(RedisURI.create(LOCALHOST, REDIS_PORT), new RedisDaoOptions()
+                .setAccountCacheEnabled(false)
+                .setTransactionFeedEnabled(true))
+        TransactionFeed feed = feedDao.transactionFeed
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        Transaction first = feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+        Transaction second = feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest), "key").toBlocking().value()
+        TestSubscriber<FeedEntry> live = new TestSubscriber<>()
+
+        when:
+        List<FeedEntry> replayed = feed.tail(0).take(2).toList().toBlocking().single()
+        feed.tail(feed.currentOffset().toBlocking().value()).take(1).subscribe(live)
+        Transaction third = feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+        live.awaitTerminalEvent(5, TimeUnit.SECONDS)
+
+        then:
+        assert replayed == [new FeedEntry(1, first), new FeedEntry(2, second)]
+        assert live.onNextEvents == [new FeedEntry(3, third)]
+        assert feed.tail(1).take(1).toBlocking().single() == new FeedEntry(2, second)
+
+        cleanup:
+        feedDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Replay feed pages overlapping live entries in offset order"() {
+        setup:
+        RedisDao feedDao = newFeedDao()
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        CreateTransactionRequest request = new CreateTransactionRequest()
+                .setAmount(1)
+                .setCurrencyCode("USD")
+                .setSenderAccountId(testAccountOne.id)
+                .setRecipientAccountId(testAccountTwo.id)
+        // Replay takes a few pages of 500 entries
+        feedDao.createTransactions((1..1200).collect { Transaction.fromRequest(request) }).toList().toBlocking().single()
+        TestSubscriber<FeedEntry> subscriber = new TestSubscriber<>()
+
+        when:
+        feedDao.transactionFeed.tail(0).take(1500).subscribe(subscriber)
+        // Committed while pages are replayed, so they are both replayed and received live
+        feedDao.createTransactions((1..300).collect { Transaction.fromRequest(request) }).toList().toBlocking().single()
+        subscriber.awaitTerminalEvent(10, TimeUnit.SECONDS)
+
+        then:
+        subscriber.assertNoErrors()
+        assert subscriber.onNextEvents*.offset == (1L..1500L).toList()
+
+        cleanup:
+        feedDao.close()
+    }
+
+    def "Return 501 for transaction feed if it is disabled"() {
+        when:
+        HttpResponse all = httpClient.execute(new HttpGet("${TRANSACTIONS_URL}/feed"), null).get()
+        HttpResponse account = httpClient.execute(new HttpGet("${getAccountsTransactionsUrl(testAccountOne.id)}/feed"), null).get()
+
+        then:
+        assert all.getStatusLine().getStatusCode() == 501
+        assert account.getStatusLine().getStatusCode() == 501
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Return 400 for malformed feed offset"() {
+        setup:
+        RedisDao feedDao = newFeedDao()
+        Vertx feedVertx = startFeedServer(feedDao)
+        HttpGet lastEventId = new HttpGet("http://${LOCALHOST}:${FEED_PORT}/transactions/feed")
+        lastEventId.addHeader("Last-Event-ID", "last")
+
+        when:
+        HttpResponse offset = httpClient.execute(new HttpGet("http://${LOCALHOST}:${FEED_PORT}/accounts/${testAccountOne.id}/transactions/feed?offset=first"), null).get()
+        HttpResponse header = httpClient.execute(lastEventId, null).get()
+
+        then:
+        assert offset.getStatusLine().getStatusCode() == 400
+        assert header.getStatusLine().getStatusCode() == 400
+
+        cleanup:
+        // Port of the feed server is reused by the next feature
+        feedVertx.rxClose().toBlocking().value()
+        feedDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Stream transactions committed after subscription as server-sent events"() {
+        setup:
+        RedisDao feedDao = newFeedDao()
+        Vertx feedVertx = startFeedServer(feedDao)
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+        HttpURLConnection connection = openFeed("/transactions/feed")
+
+        when:
+        BufferedReader events = readEvents(connection)
+        // Stream starts once the current offset is known, so the next transaction is the first event
+        Map<String, String> retry = readEvent(events)
+        Transaction live = feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+        Map<String, String> event = readEvent(events)
+
+        then:
+        assert connection.getResponseCode() == 200
+        assert connection.getContentType() == "text/event-stream"
+        assert connection.getHeaderField("Cache-Control") == "no-cache"
+        assert retry == [retry: "1000"]
+        assert event.keySet().toList() == ["id", "event", "data"]
+        assert event.id == "2"
+        assert event.event == "transaction"
+        assert readTransaction(event) == TransactionDTO.fromTransaction(live)
+
+        cleanup:
+        connection.disconnect()
+        feedVertx.rxClose().toBlocking().value()
+        feedDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Resume transaction feed from Last-Event-ID over offset parameter"() {
+        setup:
+        RedisDao feedDao = newFeedDao()
+        Vertx feedVertx = startFeedServer(feedDao)
+        storage.createAccount(testAccountOne).toBlocking().value()
+        storage.createAccount(testAccountTwo).toBlocking().value()
+        List<Transaction> transactions = (1..3).collect {
+            feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+        }
+        HttpURLConnection offset = openFeed("/transactions/feed?offset=1")
+        HttpURLConnection reconnected = openFeed("/transactions/feed?offset=1", ["Last-Event-ID": "2"])
+
+        when:
+        BufferedReader offsetEvents = readEvents(offset)
+        BufferedReader reconnectedEvents = readEvents(reconnected)
+        List<Map<String, String>> fromOffset = (0..2).collect { readEvent(offsetEvents) }
+        List<Map<String, String>> fromLastEventId = (0..1).collect { readEvent(reconnectedEvents) }
+
+        then:
+        assert fromOffset.tail()*.id == ["2", "3"]
+        assert fromOffset.tail().collect { readTransaction(it) } == transactions.tail().collect { TransactionDTO.fromTransaction(it) }
+        assert fromLastEventId[1].id == "3"
+        assert readTransaction(fromLastEventId[1]) == TransactionDTO.fromTransaction(transactions[2])
+
+        cleanup:
+        offset.disconnect()
+        reconnected.disconnect()
+        feedVertx.rxClose().toBlocking().value()
+        feedDao.close()
+    }
+
+    @Requires({ BaseIntegrationSpec.isRedisEngine() })
+    def "Stream only transactions of the account from account feed"() {
+        setup:
+        RedisDao feedDao = newFeedDao()
+        Vertx feedVertx = startFeedServer(feedDao)
+        Account testAccountThree = Account.fromRequest(createAccountRequest)
+        [testAccountOne, testAccountTwo, testAccountThree].each { storage.createAccount(it).toBlocking().value() }
+        CreateTransactionRequest toThree = new CreateTransactionRequest()
+                .setAmount(100)
+                .setCurrencyCode("USD")
+                .setSenderAccountId(testAccountOne.id)
+                .setRecipientAccountId(testAccountThree.id)
+        feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+        Transaction replayed = feedDao.createTransaction(Transaction.fromRequest(toThree)).toBlocking().value()
+        feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+        HttpURLConnection connection = openFeed("/accounts/${testAccountThree.id}/transactions/feed?offset=0")
+
+        when:
+        BufferedReader events = readEvents(connection)
+        readEvent(events)
+        Map<String, String> first = readEvent(events)
+        feedDao.createTransaction(Transaction.fromRequest(createTransactionRequest)).toBlocking().value()
+        Transaction live = feedDao.createTransaction(Transaction.fromRequest(toThree)).toBlocking().value()
+        Map<String, String> second = readEvent(events)
+
+        then:
+        assert first.id == "2"
+        assert readTransaction(first) == TransactionDTO.fromTransaction(replayed)
+        assert second.id == "5"
+        assert readTransaction(second) == TransactionDTO.fromTransaction(live)
+
+        cleanup:
+        connection.disconnect()
+        feedVertx.rxClose().toBlocking().value()
+        feedDao.close()
+    }
+}